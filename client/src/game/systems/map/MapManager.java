@@ -28,11 +28,10 @@ public class MapManager extends BaseSystem {
     private void drawLayer(Map map, float delta, int layer, boolean drawExit, boolean drawBlock, boolean flip) {
         for (int x = 0; x < map.getWidth(); x++) {
             for (int y = map.getHeight() - 1; y >= 0; y--) {
-                Tile tile = map.getTile(x, y);
-                if (tile == null) {
+                if (!map.hasTile(x, y)) {
                     continue;
                 }
-                int graphic = tile.getGraphic(layer);
+                int graphic = map.getGraphic(x, y, layer);
                 if (graphic == 0) {
                     continue;
                 }
@@ -41,11 +40,12 @@ public class MapManager extends BaseSystem {
                 } else {
                     doTileDraw(delta, x, y, graphic);
                 }
-                if (drawBlock && tile.isBlocked()) {
+                if (drawBlock && map.isBlocked(x, y)) {
                     // draw block
                     doTileDraw(delta, x, y, 4);
                 }
-                if (drawExit && tile.getTileExit() != null && !(new WorldPosition().equals(tile.getTileExit()))) {
+                WorldPosition tileExit = drawExit ? map.getTileExit(x, y) : null;
+                if (tileExit != null && !(new WorldPosition().equals(tileExit))) {
                     // draw exit
                     doTileDraw(delta, x, y, 3);
                 }
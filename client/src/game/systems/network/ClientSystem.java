@@ -6,11 +6,20 @@ import com.esotericsoftware.minlog.Log;
 import game.screens.GameScreen;
 import game.screens.ScreenEnum;
 import game.screens.ScreenManager;
+import game.systems.world.NetworkedEntitySystem;
 import net.mostlyoriginal.api.network.marshal.common.MarshalState;
 import net.mostlyoriginal.api.network.system.MarshalSystem;
 import shared.network.init.NetworkDictionary;
 import shared.network.interfaces.INotification;
 import shared.network.interfaces.IResponse;
+import shared.network.notifications.Datagram;
+import shared.network.notifications.Frame;
+import shared.network.notifications.RemoveEntity;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 @Wire
 public class ClientSystem extends MarshalSystem {
@@ -19,6 +28,18 @@ public class ClientSystem extends MarshalSystem {
     private GameNotificationProcessor notificationProcessor;
     private ScreenManager screenManager;
 
+    // datagramas mas viejos que esto respecto del ultimo recibido se descartan
+    private static final int SEQUENCE_WINDOW = 1024;
+
+    private NetworkedEntitySystem networkedEntitySystem;
+
+    // ultimo datagrama aplicado por entidad y tipo de actualizacion
+    private final Map<Long, Integer> lastSequences = new HashMap<>();
+    // ultimo datagrama recibido cuando se borro cada entidad
+    private final Map<Integer, Integer> removedAt = new HashMap<>();
+    private int latestSequence;
+    private boolean anySequence;
+
     public ClientSystem() {
         super(new NetworkDictionary(), new KryonetClientMarshalStrategy());
     }
@@ -35,19 +56,77 @@ public class ClientSystem extends MarshalSystem {
      */
     @Override
     public void received(int connectionId, Object object) {
-        Gdx.app.postRunnable(() -> {
-            Log.debug(object.toString());
-            if (object instanceof IResponse) {
-                ((IResponse) object).accept(responseProcessor);
-            } else if (object instanceof INotification) {
-                ((INotification) object).accept(notificationProcessor);
-            } else if (object instanceof INotification[]) {
-                INotification[] notifications = (INotification[]) object;
-                for (INotification notification : notifications) {
-                    notification.accept(notificationProcessor);
-                }
+        Gdx.app.postRunnable(() -> process(object));
+    }
+
+    private void process(Object object) {
+        Log.debug(object.toString());
+        if (object instanceof IResponse) {
+            ((IResponse) object).accept(responseProcessor);
+        } else if (object instanceof INotification) {
+            if (object instanceof RemoveEntity) {
+                removed(((RemoveEntity) object).entityId);
+            }
+            ((INotification) object).accept(notificationProcessor);
+        } else if (object instanceof INotification[]) {
+            INotification[] notifications = (INotification[]) object;
+            for (INotification notification : notifications) {
+                notification.accept(notificationProcessor);
+            }
+        } else if (object instanceof Frame) {
+            // todo lo que el servidor envio en un tick, en orden
+            for (Object message : ((Frame) object).messages) {
+                process(message);
+            }
+        } else if (object instanceof Datagram) {
+            process((Datagram) object);
+        }
+    }
+
+    /**
+     * Los datagramas pueden llegar tarde o repetidos: descartamos cada mensaje si ya aplicamos uno mas nuevo de la
+     * misma entidad y tipo. Tampoco crean entidades: si no conocemos la entidad, o se borro despues de que se envio el
+     * datagrama, el mensaje se descarta (las entidades llegan siempre por TCP).
+     */
+    private void process(Datagram datagram) {
+        if (!anySequence || Datagram.isNewer(datagram.sequence, latestSequence)) {
+            latestSequence = datagram.sequence;
+            anySequence = true;
+        } else if (latestSequence - datagram.sequence > SEQUENCE_WINDOW) {
+            Log.debug("Discarding old " + datagram);
+            return;
+        }
+        // un mismo datagrama puede traer varios pasos de la misma entidad
+        Set<Long> applied = new HashSet<>();
+        for (Object message : datagram.messages) {
+            long key = Datagram.key(message);
+            int entity = Datagram.entity(key);
+            Integer removed = removedAt.get(entity);
+            if (!networkedEntitySystem.exists(entity) || (removed != null && !Datagram.isNewer(datagram.sequence, removed))) {
+                Log.debug("Discarding update of a removed entity " + message);
+                continue;
+            }
+            Integer last = lastSequences.get(key);
+            if (last != null && !Datagram.isNewer(datagram.sequence, last) && !applied.contains(key)) {
+                Log.debug("Discarding stale " + message);
+                continue;
             }
-        });
+            applied.add(key);
+            lastSequences.put(key, datagram.sequence);
+            process(message);
+        }
+    }
+
+    /**
+     * La entidad deja de existir: olvidamos sus secuencias, y los datagramas enviados antes de borrarla se descartan.
+     * Los borrados mas viejos que {@link #SEQUENCE_WINDOW} ya no hacen falta, esos datagramas se descartan igual.
+     */
+    private void removed(int entity) {
+        for (long key : Datagram.keys(entity)) {
+            lastSequences.remove(key);
+        }
+        removedAt.values().removeIf(sequence -> latestSequence - sequence > SEQUENCE_WINDOW);
+        removedAt.put(entity, latestSequence);
     }
 
     /**
@@ -64,7 +143,10 @@ public class ClientSystem extends MarshalSystem {
     }
 
     public boolean connect() {
-        // Inicializamos la conexion.
+        // Inicializamos la conexion. El servidor numera los datagramas desde cero en cada conexion
+        lastSequences.clear();
+        removedAt.clear();
+        anySequence = false;
         start();
         return (getState() == MarshalState.STARTED);
     }
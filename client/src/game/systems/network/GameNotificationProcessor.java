@@ -16,6 +16,7 @@ import game.systems.world.NetworkedEntitySystem;
 import shared.network.interfaces.DefaultNotificationProcessor;
 import shared.network.inventory.InventoryUpdate;
 import shared.network.movement.MovementNotification;
+import shared.network.notifications.ComponentDelta;
 import shared.network.notifications.EntityUpdate;
 import shared.network.notifications.RemoveEntity;
 
@@ -87,15 +88,36 @@ public class GameNotificationProcessor extends DefaultNotificationProcessor {
         if (components != null) {
             addComponents(edit, components);
         }
+        applyDeltas(newEntity, edit, entityUpdate.deltas);
     }
 
     private void updateEntity(EntityUpdate entityUpdate) {
         int entityId = networkedEntitySystem.getLocalId(entityUpdate.entityId);
         Entity entity = world.getEntity(entityId);
         EntityEdit edit = entity.edit();
-        addComponents(edit, entityUpdate.components);
-        for (Class remove : entityUpdate.toRemove) {
-            edit.remove(remove);
+        if (entityUpdate.components != null) {
+            addComponents(edit, entityUpdate.components);
+        }
+        applyDeltas(entity, edit, entityUpdate.deltas);
+        if (entityUpdate.toRemove != null) {
+            for (Class remove : entityUpdate.toRemove) {
+                edit.remove(remove);
+            }
+        }
+    }
+
+    private void applyDeltas(Entity entity, EntityEdit edit, ComponentDelta[] deltas) {
+        if (deltas == null) {
+            return;
+        }
+        for (ComponentDelta delta : deltas) {
+            // update the fields in place
+            Component component = entity.getComponent(delta.type);
+            if (component == null) {
+                Log.debug("Received changes of a missing component: " + delta);
+                component = edit.create(delta.type);
+            }
+            delta.apply(component);
         }
     }
 
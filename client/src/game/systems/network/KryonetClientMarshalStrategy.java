@@ -4,6 +4,7 @@ import com.esotericsoftware.kryonet.Client;
 import com.esotericsoftware.minlog.Log;
 import net.mostlyoriginal.api.network.marshal.common.MarshalState;
 import net.mostlyoriginal.api.network.marshal.kryonet.KryonetMarshalStrategy;
+import shared.network.serialization.NetworkSerializers;
 
 import java.io.IOException;
 
@@ -14,7 +15,8 @@ public class KryonetClientMarshalStrategy extends KryonetMarshalStrategy {
     private int port;
 
     public KryonetClientMarshalStrategy() {
-        endpoint = new Client(8192, 8291);
+        endpoint = new Client(8192, 16384);
+        NetworkSerializers.install(((Client) endpoint).getKryo());
         Log.set(Log.LEVEL_DEBUG);
     }
 
@@ -105,7 +105,7 @@ public class MovementProcessorSystem extends IteratingSystem {
                         player.hasImmobile());
                 boolean tileExit = MapSystem.getHelper().hasTileExit(map, expectedPos);
                 if (tileExit) {
-                    WorldPosition tileExitPos = map.getTile(expectedPos.x, expectedPos.y).getTileExit();
+                    WorldPosition tileExitPos = map.getTileExit(expectedPos.x, expectedPos.y);
                     expectedPos = new WorldPos(tileExitPos.getX(), tileExitPos.getY(), tileExitPos.getMap());
                 }
                 MovementRequest request = new MovementRequest(++requestNumber, valid ? expectedPos : pos, movement.ordinal(), valid);
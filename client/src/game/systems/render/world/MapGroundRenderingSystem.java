@@ -99,12 +99,8 @@ public class MapGroundRenderingSystem extends MapLayerRenderingSystem {
     private void renderLayer(Map map, Batch mapBatch, int layer) {
         for (int x = 0; x < map.getWidth(); x++) {
             for (int y = map.getHeight() - 1; y >= 0; y--) {
-                Tile tile = map.getTile(x, y);
-                if (tile == null) {
-                    continue;
-                }
-                int graphic = tile.getGraphic(layer);
-                if (graphic == 0) {
+                int graphic = map.getGraphic(x, y, layer);
+                if (graphic == 0 || !map.hasTile(x, y)) {
                     continue;
                 }
                 doTileDraw(mapBatch, x, y, graphic);
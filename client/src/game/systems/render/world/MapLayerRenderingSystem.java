@@ -13,7 +13,6 @@ import shared.model.map.Map;
 import shared.util.MapHelper;
 
 import java.util.List;
-import java.util.Optional;
 
 @Wire(injectInherited = true)
 public class MapLayerRenderingSystem extends RenderingSystem {
@@ -52,13 +51,14 @@ public class MapLayerRenderingSystem extends RenderingSystem {
     }
 
     private void drawGraphicInLayer(int layer, int x, int y, Map map, WorldPos pos) {
-        Optional.ofNullable(MapHelper.getTile(map, pos)).ifPresent(tile -> {
-            int graphic = tile.getGraphic(layer);
-            if (graphic == 0) {
-                return;
-            }
-            mapManager.doTileDraw(world.getDelta(), x, y, graphic);
-        });
+        if (!MapHelper.hasTile(map, pos)) {
+            return;
+        }
+        int graphic = map.getGraphic(pos.x, pos.y, layer);
+        if (graphic == 0) {
+            return;
+        }
+        mapManager.doTileDraw(world.getDelta(), x, y, graphic);
     }
 
     @Override
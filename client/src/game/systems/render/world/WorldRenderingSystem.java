@@ -13,7 +13,9 @@ import game.systems.map.MapManager;
 import game.systems.map.TiledMapSystem;
 import game.systems.resources.MapSystem;
 import game.systems.world.NetworkedEntitySystem;
+import shared.model.map.Map;
 import shared.model.map.Tile;
+import shared.util.MapHelper;
 
 import java.util.HashSet;
 import java.util.Optional;
@@ -106,9 +108,9 @@ public class WorldRenderingSystem extends BaseSystem {
     private Optional<Integer> getMapElement(WorldPos pos) {
         Optional<Integer> result = Optional.empty();
 
-        Tile tile = MapSystem.getTile(pos);
-        if (tile != null) {
-            int element = tile.getGraphic(2);
+        Map map = MapSystem.get(pos.map);
+        if (MapHelper.hasTile(map, pos)) {
+            int element = map.getGraphic(pos.x, pos.y, 2);
             if (element != 0) {
                 result = Optional.of(element);
             }
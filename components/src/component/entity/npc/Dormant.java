@@ -0,0 +1,21 @@
+package component.entity.npc;
+
+import com.artemis.Component;
+import com.artemis.annotations.PooledWeaver;
+
+/**
+ * NPC in a map far from every player: the AI systems skip it until a player comes close
+ */
+@PooledWeaver
+public class Dormant extends Component {
+
+    // when it fell asleep, in ms
+    public long since;
+
+    public Dormant() {
+    }
+
+    public Dormant(long since) {
+        this.since = since;
+    }
+}
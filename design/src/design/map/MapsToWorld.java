@@ -6,6 +6,7 @@ import com.badlogic.gdx.utils.JsonWriter;
 import com.esotericsoftware.minlog.Log;
 import shared.model.map.Map;
 import shared.model.map.Tile;
+import shared.util.MapHelper;
 
 import java.util.HashMap;
 import java.util.HashSet;
@@ -19,9 +20,10 @@ public class MapsToWorld {
     public static void createWorld() {
         excluded.add(237);
         excluded.add(162);
-        // load maps
-        HashMap<Integer, Map> maps = new HashMap<>();
-//        MapHelper.instance().getAlkonMaps(maps);
+        // load maps, in parallel like the server
+        MapHelper helper = MapHelper.instance(MapHelper.CacheStrategy.NEVER_EXPIRE);
+        helper.loadAll().join();
+        HashMap<Integer, Map> maps = new HashMap<>(helper.getMaps());
         WorldMap world = new WorldMap();
         // visit maps
         visitMap(maps, 1, 0, 0, world, new HashSet<>());
@@ -43,7 +43,6 @@ import shared.util.MapHelper;
 import shared.util.WorldPosConversion;
 
 import java.util.ArrayDeque;
-import java.util.Arrays;
 import java.util.Deque;
 import java.util.Optional;
 
@@ -207,6 +206,10 @@ public class MapEditor extends DesignScreen {
                 }
                 break;
         }
+        // the map keeps a copy of the tile values, tile sets already wrote theirs
+        if (selection != Selection.TILE_SET) {
+            map.setTile(pos.x, pos.y, tile);
+        }
         if (saveUndo) {
             undoableActions.push(undo);
         }
@@ -218,6 +221,7 @@ public class MapEditor extends DesignScreen {
         if (tile != null) {
             undoableActions.push(new Undo(new Tile(tile), new WorldPos(x, y, mapId)));
             tile.getGraphic()[mapPalette.getLayer()] = image;
+            map.setTile(x, y, tile);
         }
     }
 
@@ -289,11 +293,11 @@ public class MapEditor extends DesignScreen {
 
         menus.add(createButton("New", "default", () -> {
             Map map = new Map();
-            Arrays.stream(map.getTiles()).forEach(tiles -> {
-                for (int i = 0; i < tiles.length; i++) {
-                    tiles[i] = new Tile();
+            for (int x = 0; x < map.getWidth(); x++) {
+                for (int y = 0; y < map.getHeight(); y++) {
+                    map.createTile(x, y);
                 }
-            });
+            }
             world.getSystem(MapDesignRenderingSystem.class).setMap(map);
             mapProperties.show(map);
         }, "Create new empty map")).spaceLeft(5);
@@ -0,0 +1,57 @@
+package json;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.esotericsoftware.minlog.Log;
+import shared.model.loaders.BinaryMapFormat;
+import shared.model.map.Map;
+import shared.util.AOJson;
+import shared.util.SharedResources;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Converts every MapN.json of a folder to {@link BinaryMapFormat}, next to the json unless another folder is given.
+ * Run it again after editing maps.
+ * <p>
+ * Usage: MapsToBinary [maps folder] [output folder]
+ */
+public class MapsToBinary {
+
+    private static final String DEFAULT_FOLDER = "../shared/resources/" + SharedResources.MAPS_FOLDER;
+
+    public static void main(String[] args) throws IOException {
+        FileHandle input = new FileHandle(args.length > 0 ? args[0] : DEFAULT_FOLDER);
+        FileHandle output = args.length > 1 ? new FileHandle(args[1]) : input;
+        transformToBinary(input, output);
+    }
+
+    public static void transformToBinary(FileHandle input, FileHandle output) throws IOException {
+        AOJson json = new AOJson();
+        output.mkdirs();
+        int converted = 0;
+        long jsonBytes = 0;
+        long binaryBytes = 0;
+        for (FileHandle file : input.list(SharedResources.JSON_EXT)) {
+            if (!file.nameWithoutExtension().startsWith("Map")) {
+                continue;
+            }
+            Map map = json.fromJson(Map.class, file);
+            ByteBuffer buffer = BinaryMapFormat.write(map);
+            File target = output.child(file.nameWithoutExtension() + SharedResources.BINARY_MAP_EXT).file();
+            try (RandomAccessFile out = new RandomAccessFile(target, "rw"); FileChannel channel = out.getChannel()) {
+                channel.truncate(0);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            converted++;
+            jsonBytes += file.length();
+            binaryBytes += target.length();
+        }
+        Log.info("Maps", "Converted " + converted + " maps: " + jsonBytes / 1024 + "KB of json to " + binaryBytes / 1024 + "KB");
+    }
+}
@@ -10,9 +10,14 @@ public class ServerConfiguration extends BaseConfiguration {
     private static final String API_URL = "https://localhost";
     private static final int API_PORT = 1337;
     private static final int ROOM_LIMIT = 1;
+    private static final String DATABASE_TYPE = "files";
+    private static final String DATABASE_PATH = "";
+    private static final int AWAKE_RING = 1;
 
     private Network network;
     private Rooms rooms;
+    private Database database;
+    private Npcs npcs;
 
     public ServerConfiguration() {
         super(PATH);
@@ -40,6 +45,15 @@ public class ServerConfiguration extends BaseConfiguration {
         // Default values for room creation
         setRooms(new ServerConfiguration.Rooms());
         getRooms().setLimitCreation(ROOM_LIMIT);
+
+        // Default values of `Database`
+        setDatabase(new Database());
+        getDatabase().setType(DATABASE_TYPE);
+        getDatabase().setPath(DATABASE_PATH);
+
+        // Default values of `Npcs`
+        setNpcs(new Npcs());
+        getNpcs().setAwakeRing(AWAKE_RING);
     }
 
     public Network getNetwork() {
@@ -58,11 +72,36 @@ public class ServerConfiguration extends BaseConfiguration {
         this.rooms = rooms;
     }
 
+    /**
+     * @return null in old configuration files, use the defaults
+     */
+    public Database getDatabase() {
+        return database;
+    }
+
+    private void setDatabase(Database database) {
+        this.database = database;
+    }
+
+    /**
+     * @return null in old configuration files, use the defaults
+     */
+    public Npcs getNpcs() {
+        return npcs;
+    }
+
+    private void setNpcs(Npcs npcs) {
+        this.npcs = npcs;
+    }
+
     public static class Network {
 
         private boolean useLocalHost;
         private Ports ports;
         private Api api;
+        // solo para pruebas: probabilidad (0 a 1) de perder o desordenar cada datagrama UDP
+        private float packetLoss;
+        private float packetReorder;
 
         public boolean getuseLocalHost() {
             return this.useLocalHost;
@@ -72,6 +111,22 @@ public class ServerConfiguration extends BaseConfiguration {
             this.useLocalHost = useLocalHost;
         }
 
+        public float getPacketLoss() {
+            return packetLoss;
+        }
+
+        private void setPacketLoss(float packetLoss) {
+            this.packetLoss = packetLoss;
+        }
+
+        public float getPacketReorder() {
+            return packetReorder;
+        }
+
+        private void setPacketReorder(float packetReorder) {
+            this.packetReorder = packetReorder;
+        }
+
         public Ports getPorts() {
             return ports;
         }
@@ -155,4 +210,42 @@ public class ServerConfiguration extends BaseConfiguration {
         }
 
     }
-}
\ No newline at end of file
+
+    public static class Database {
+
+        // "files" (one json per account and character) or "log" (log structured store)
+        private String type;
+        // folder, the files storage uses Accounts/ and Charfile/ inside it
+        private String path;
+
+        public String getType() {
+            return type;
+        }
+
+        private void setType(String type) {
+            this.type = type;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        private void setPath(String path) {
+            this.path = path;
+        }
+    }
+
+    public static class Npcs {
+
+        // NPCs sleep in maps with no player this many neighbour maps around
+        private int awakeRing;
+
+        public int getAwakeRing() {
+            return awakeRing;
+        }
+
+        private void setAwakeRing(int awakeRing) {
+            this.awakeRing = awakeRing;
+        }
+    }
+}
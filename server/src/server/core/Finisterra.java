@@ -14,7 +14,6 @@ import server.systems.config.NPCSystem;
 import server.systems.config.ObjectSystem;
 import server.systems.config.SpellSystem;
 import server.systems.world.entity.factory.*;
-import server.systems.world.entity.movement.FootprintSystem;
 import server.systems.world.entity.movement.MovementSystem;
 import server.systems.world.entity.npc.NPCActionSystem;
 import server.systems.world.entity.user.*;
@@ -23,7 +22,11 @@ import server.systems.world.entity.item.ItemSystem;
 import server.systems.world.entity.item.ItemUsageSystem;
 import server.systems.network.*;
 import server.systems.account.AccountSystem;
+import server.systems.account.LoginPipelineSystem;
+import server.systems.account.StorageSystem;
+import server.systems.world.entity.ai.DormancySystem;
 import server.systems.world.entity.ai.NPCAttackSystem;
+import server.systems.world.entity.ai.NPCPopulationSystem;
 import server.systems.world.entity.ai.PathFindingSystem;
 import server.systems.world.entity.ai.RespawnSystem;
 import server.systems.world.entity.combat.MagicCombatSystem;
@@ -36,6 +39,7 @@ import shared.systems.IntervalSystem;
 import shared.util.LogSystem;
 import shared.util.MapHelper;
 
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import static server.utils.Intervals.*;
@@ -43,8 +47,14 @@ import static shared.util.MapHelper.CacheStrategy.NEVER_EXPIRE;
 
 public class Finisterra extends ApplicationAdapter {
 
+    private static final long SHUTDOWN_HOOK_TIMEOUT = ShutdownSystem.DEFAULT_DEADLINE + TimeUnit.SECONDS.toMillis(10);
+
     private World world;
     private float currentTick = 0;
+    private final ShutdownSystem shutdownSystem = new ShutdownSystem();
+    // the JVM is already exiting (signal), System.exit would block
+    private volatile boolean exiting;
+    private final CountDownLatch disposed = new CountDownLatch(1);
 
     @Override
     public void create() {
@@ -55,18 +65,15 @@ public class Finisterra extends ApplicationAdapter {
 
         loadAsync();
         createWorld();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdownHook, "shutdown"));
 
         Log.info("Server initialization", "Elapsed time: " + TimeUnit.MILLISECONDS.toSeconds(Math.abs(start - System.currentTimeMillis())) + " seconds.");
         Log.info("Server initialization", "Finisterra OK");
     }
 
     private void loadAsync() {
-        Thread thread = new Thread(() -> {
-            MapHelper helper = MapHelper.instance(NEVER_EXPIRE);
-            helper.loadAll();
-        });
-        thread.setDaemon(true);
-        thread.start();
+        // maps load in their own threads, MapSystem waits for them
+        MapHelper.instance(NEVER_EXPIRE).loadAll();
     }
 
     private void createWorld() {
@@ -80,6 +87,7 @@ public class Finisterra extends ApplicationAdapter {
                 .with(new EntityJsonSerializer())
                 .with(new UserSystem())
                 .with(new AccountSystem())
+                .with(new LoginPipelineSystem())
                 .with(new ServerNotificationProcessor())
                 .with(new FluidEntityPlugin())
                 .with(new ComponentSystem())
@@ -100,11 +108,12 @@ public class Finisterra extends ApplicationAdapter {
                 .with(new RangedCombatSystem())
                 .with(new CharacterTrainingSystem())
                 .with(new MagicCombatSystem())
+                .with(new DormancySystem(DORMANCY_INTERVAL))
+                .with(new NPCPopulationSystem(DORMANCY_INTERVAL))
                 .with(new PathFindingSystem(PATH_FINDING_INTERVAL))
                 .with(new NPCAttackSystem(NPC_ATTACK_INTERVAL))
                 .with(new EnergyRegenerationSystem(ENERGY_REGENERATION_INTERVAL))
                 .with(new MeditateSystem(MEDITATE_INTERVAL))
-                .with(new FootprintSystem(FOOTPRINT_LIVE_TIME))
                 .with(new EffectEntitySystem())
                 .with(new SoundEntitySystem())
                 .with(new RandomMovementSystem())
@@ -112,12 +121,16 @@ public class Finisterra extends ApplicationAdapter {
                 .with(new BuffSystem())
                 .with(new CommandSystem())
                 .with(new EntityUpdateSystem())
+                .with(new ReplicationSystem())
                 .with(new MessageSystem())
                 .with(new TagManager())
                 .with(new MovementSystem())
                 .with(new PlayerActionSystem())
                 .with(new ItemActionSystem())
-                .with(new WorldSaveSystem(5*60*1000)); // 5 minutes
+                .with(new WorldSaveSystem(15*60*1000)) // 15 minutes, exp, gold and items are in the journal
+                .with(new StorageSystem())
+                .with(new FlushSystem())
+                .with(shutdownSystem);
         world = new World(builder.build());
 
         Log.info("World created successfully!");
@@ -125,12 +138,33 @@ public class Finisterra extends ApplicationAdapter {
 
     @Override
     public void render() {
+        if (shutdownSystem.isStopped()) {
+            return;
+        }
         world.setDelta(Gdx.graphics.getDeltaTime());
         world.process();
     }
 
+    // SIGTERM or ctrl+c: the game thread runs the shutdown and this waits for it
+    private void shutdownHook() {
+        exiting = true;
+        shutdownSystem.request("signal");
+        try {
+            if (!disposed.await(SHUTDOWN_HOOK_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                Log.error("Shutdown", "The game thread didn't finish the shutdown in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     @Override
     public void dispose() {
-        System.exit(0);
+        world.dispose();
+        disposed.countDown();
+        if (!exiting) {
+            ShutdownSystem.Report report = shutdownSystem.getReport();
+            System.exit(report == null || report.isComplete() ? 0 : 1);
+        }
     }
 }
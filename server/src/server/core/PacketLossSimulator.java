@@ -0,0 +1,77 @@
+package server.core;
+
+import com.badlogic.gdx.utils.IntMap;
+import shared.network.notifications.Datagram;
+import shared.network.notifications.EncodedMessage;
+import shared.network.notifications.Frame;
+
+import java.util.Random;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Simulates a bad network for UDP packets, so unreliable updates can be tested locally: each packet may be lost, or
+ * held back and sent after the next packet of the same connection.
+ * Encoded messages are pooled and reused after each tick, so a held packet keeps a copy of their bytes.
+ */
+public class PacketLossSimulator {
+
+    private final float loss;
+    private final float reorder;
+    private final Random random;
+    private final IntMap<Object> held = new IntMap<>();
+
+    public PacketLossSimulator(float loss, float reorder) {
+        this(loss, reorder, new Random());
+    }
+
+    public PacketLossSimulator(float loss, float reorder, Random random) {
+        this.loss = loss;
+        this.reorder = reorder;
+        this.random = random;
+    }
+
+    /**
+     * @param send what actually sends the packet to the connection
+     */
+    public synchronized void send(int connectionId, Object packet, ObjIntConsumer<Object> send) {
+        if (random.nextFloat() < loss) {
+            return;
+        }
+        Object previous = held.remove(connectionId);
+        if (previous == null && random.nextFloat() < reorder) {
+            held.put(connectionId, detach(packet));
+            return;
+        }
+        send.accept(packet, connectionId);
+        if (previous != null) {
+            send.accept(previous, connectionId);
+        }
+    }
+
+    // the same packet with its encoded messages copied out of the pool
+    private static Object detach(Object packet) {
+        if (packet instanceof EncodedMessage) {
+            EncodedMessage encoded = (EncodedMessage) packet;
+            EncodedMessage copy = new EncodedMessage();
+            copy.set(encoded.bytes, encoded.length);
+            return copy;
+        } else if (packet instanceof Datagram) {
+            Datagram datagram = (Datagram) packet;
+            return new Datagram(datagram.sequence, detach(datagram.messages));
+        } else if (packet instanceof Frame) {
+            return new Frame(detach(((Frame) packet).messages));
+        }
+        return packet;
+    }
+
+    private static Object[] detach(Object[] messages) {
+        if (messages == null) {
+            return null;
+        }
+        Object[] copies = new Object[messages.length];
+        for (int i = 0; i < messages.length; i++) {
+            copies[i] = detach(messages[i]);
+        }
+        return copies;
+    }
+}
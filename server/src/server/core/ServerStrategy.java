@@ -1,19 +1,58 @@
 package server.core;
 
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Pool;
+import com.badlogic.gdx.utils.Pools;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryonet.Connection;
+import com.esotericsoftware.kryonet.Listener;
 import com.esotericsoftware.kryonet.Server;
 import com.esotericsoftware.minlog.Log;
 import net.mostlyoriginal.api.network.marshal.common.MarshalState;
 import net.mostlyoriginal.api.network.marshal.kryonet.KryonetMarshalStrategy;
+import shared.network.notifications.EncodedMessage;
+import shared.network.serialization.NetworkSerializers;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ServerStrategy extends KryonetMarshalStrategy {
 
+    private static final int WRITE_BUFFER_SIZE = 16384;
+    private static final int OBJECT_BUFFER_SIZE = 2048;
+
     private int tcpPort;
     private int udpPort;
+    private final ByteBuffer encodeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+    private final Pool<EncodedMessage> encodedPool = Pools.get(EncodedMessage.class);
+    private final Array<EncodedMessage> encoded = new Array<>();
+    private PacketLossSimulator simulator;
+    private volatile boolean accepting = true;
+    // open connections by id, so sending to one doesn't go through all of them
+    private final Map<Integer, Connection> connections = new ConcurrentHashMap<>();
 
     public ServerStrategy() {
-        endpoint = new Server();
+        endpoint = new Server(WRITE_BUFFER_SIZE, OBJECT_BUFFER_SIZE);
+        NetworkSerializers.install(((Server) endpoint).getKryo());
+        // added before the marshal listener, so refused connections are closed before anyone sees them
+        ((Server) endpoint).addListener(new Listener() {
+            @Override
+            public void connected(Connection connection) {
+                if (!accepting) {
+                    Log.info("Network", "Server is shutting down, connection " + connection.getID() + " refused");
+                    connection.close();
+                    return;
+                }
+                connections.put(connection.getID(), connection);
+            }
+
+            @Override
+            public void disconnected(Connection connection) {
+                connections.remove(connection.getID());
+            }
+        });
         Log.set(Log.LEVEL_DEBUG);
     }
 
@@ -43,4 +82,74 @@ public class ServerStrategy extends KryonetMarshalStrategy {
         ((Server) endpoint).sendToTCP(connectionId, o);
     }
 
+    /**
+     * Send over UDP, or over TCP if the connection has no UDP (kryonet closes the connection otherwise)
+     */
+    public void sendUnreliable(int connectionId, Object o) {
+        if (simulator != null) {
+            simulator.send(connectionId, o, (packet, id) -> sendDatagram(id, packet));
+        } else {
+            sendDatagram(connectionId, o);
+        }
+    }
+
+    /**
+     * New connections are closed as soon as they connect, the ones already open go on
+     */
+    public void stopAccepting() {
+        accepting = false;
+    }
+
+    public boolean isConnected(int connectionId) {
+        Connection connection = connections.get(connectionId);
+        return connection != null && connection.isConnected();
+    }
+
+    private void sendDatagram(int connectionId, Object o) {
+        Connection connection = connections.get(connectionId);
+        if (connection == null) {
+            return;
+        }
+        if (connection.getRemoteAddressUDP() != null) {
+            connection.sendUDP(o);
+        } else {
+            connection.sendTCP(o);
+        }
+    }
+
+    /**
+     * Drop and reorder UDP packets on purpose, to test the game under a bad network
+     */
+    public void simulate(PacketLossSimulator simulator) {
+        this.simulator = simulator;
+    }
+
+    /**
+     * Serialize the object once, so it can be sent to many connections without serializing it again.
+     * The message is only valid until {@link #freeEncoded()}.
+     *
+     * @return the encoded message, or the same object if it doesn't fit the buffer
+     */
+    public Object encode(Object o) {
+        encodeBuffer.clear();
+        try {
+            ((Server) endpoint).getSerialization().write(null, encodeBuffer, o);
+        } catch (KryoException e) {
+            Log.warn("Network", "Couldn't encode " + o + ", it will be serialized for each connection", e);
+            return o;
+        }
+        EncodedMessage message = encodedPool.obtain();
+        message.set(encodeBuffer.array(), encodeBuffer.position());
+        encoded.add(message);
+        return message;
+    }
+
+    /**
+     * Return encoded messages to the pool once they were written to the connections
+     */
+    public void freeEncoded() {
+        encodedPool.freeAll(encoded);
+        encoded.clear();
+    }
+
 }
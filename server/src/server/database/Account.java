@@ -1,18 +1,23 @@
 package server.database;
 
+import com.badlogic.gdx.utils.Json;
 import com.esotericsoftware.minlog.Log;
-import shared.objects.factory.POJO;
+import server.database.storage.Storage;
+import shared.util.AOJson;
 
 import java.util.ArrayList;
 
-public class Account extends POJO {
+public class Account {
 
     /**
      * Fields excluidos de la serializacion.
      *
      * Para excluir un field tenes que declararlo como "transient".
      */
-    public static transient final String DIR_CUENTAS = "Accounts/";
+    // Json no es thread safe y las cuentas se leen desde varios threads
+    private static transient final ThreadLocal<Json> json = ThreadLocal.withInitial(AOJson::new);
+    // donde se guarda, la que se uso para leerla o guardarla
+    private transient Storage storage;
 
     /**
      * Fields que serán serializados.
@@ -48,20 +53,42 @@ public class Account extends POJO {
         update();
     }
 
-    public static boolean exists(String email){
-        return POJO.exists(DIR_CUENTAS + email + POJO.EXTENSION);
+    public static boolean exists(Storage storage, String email){
+        return storage.exists(Storage.ACCOUNTS, email);
     }
 
-    public static Account load(String email){
-        return POJO.load(Account.class, DIR_CUENTAS + email + POJO.EXTENSION);
+    /**
+     * @return the account, or null if it doesn't exist or can't be read
+     */
+    public static Account load(Storage storage, String email){
+        if (email == null) {
+            return null;
+        }
+        try {
+            String value = storage.get(Storage.ACCOUNTS, email);
+            if (value == null) {
+                return null;
+            }
+            Account account = json.get().fromJson(Account.class, value);
+            account.storage = storage;
+            return account;
+        } catch (Exception ex) {
+            Log.info("Error al LEER la cuenta: " + email, ex);
+            return null;
+        }
     }
 
-    public void save() {
-        super.save(this, DIR_CUENTAS + this.email + POJO.EXTENSION);
+    public void save(Storage storage) {
+        this.storage = storage;
+        update();
     }
 
     public void update() {
         // Misma cosa, distinto nombre para que se entienda mejor.
-        super.save(this, DIR_CUENTAS + this.email + POJO.EXTENSION);
+        try {
+            storage.put(Storage.ACCOUNTS, this.email, json.get().toJson(this));
+        } catch (Exception ex) {
+            Log.info("Error al GUARDAR la cuenta: " + email, ex);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,424 @@
+package server.database;
+
+import com.esotericsoftware.jsonbeans.JsonReader;
+import com.esotericsoftware.jsonbeans.JsonValue;
+import com.esotericsoftware.jsonbeans.OutputType;
+import com.esotericsoftware.minlog.Log;
+import server.database.storage.Storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append only journal of the important changes of each character since its last saved snapshot (exp, level ups,
+ * items, gold), so they are not lost if the server dies between saves.
+ * <p>
+ * An event is part of a charfile: the components that changed, with their whole value, so only the last event of each
+ * component matters. When a snapshot of the character is saved, a mark with the sequence of the last event it includes
+ * is added. {@link #replay(Storage)} merges the events after the last mark of each character into its charfile.
+ * When the file grows over {@link #MAX_SIZE} it is rewritten with only the events not saved yet.
+ * <p>
+ * Events are called from the game thread, so records are only added to a buffer in memory. The journal-sync thread
+ * appends the buffer to the file and forces it to disk once per second, and does the rewrites, so up to a second of
+ * events is lost if the server dies. Record: crc32, length, sequence, type, name, component and value (UTF-8).
+ */
+public class CharacterJournal {
+
+    public static final String FILE = "journal.log";
+    public static final long MAX_SIZE = 4 * 1024 * 1024;
+
+    private static final byte EVENT = 1;
+    private static final byte SNAPSHOT = 2;
+    private static final int HEADER_SIZE = 4 + 4;
+    private static final int MIN_LENGTH = 8 + 1 + 4 + 4;
+    private static final long SYNC_MILLIS = 1000;
+    private static final long CLOSE_SECONDS = 10;
+
+    private final File file;
+    // bytes of the journal, buffered ones included
+    private long size;
+    private long sequence;
+    private boolean rewriting;
+    // records not appended to the file yet
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    // last event of each component of each character, not included in a saved snapshot yet
+    private final Map<String, Map<String, Event>> unsaved = new LinkedHashMap<>();
+    private ScheduledExecutorService sync;
+    // only used by the journal-sync thread once replayed
+    private FileChannel channel;
+    private long written;
+    private boolean unsynced;
+
+    public CharacterJournal(File dir) {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new UncheckedIOException(new IOException("Can't create " + dir));
+        }
+        this.file = new File(dir, FILE);
+    }
+
+    /**
+     * Merge what the journal has since the last snapshot of each character into the storage, then start a new
+     * journal. Must be called once, before any event.
+     *
+     * @return how many characters were recovered
+     */
+    public synchronized int replay(Storage storage) {
+        read();
+        int recovered = 0;
+        for (Map.Entry<String, Map<String, Event>> entry : unsaved.entrySet()) {
+            String name = entry.getKey();
+            String charfile = storage.get(Storage.CHARACTERS, name);
+            if (charfile == null) {
+                Log.warn("Journal", "Character " + name + " has journal events but no charfile, they are ignored");
+                continue;
+            }
+            Map<String, String> components = new LinkedHashMap<>();
+            entry.getValue().forEach((component, event) -> components.put(component, event.value));
+            charfile = merge(charfile, components);
+            storage.put(Storage.CHARACTERS, name, charfile);
+            storage.put(Storage.SUMMARIES, name, CharacterSummary.fromCharfile(name, charfile).write());
+            Log.info("Journal", String.format("Recovered %s: %s", name, components.keySet()));
+            recovered++;
+        }
+        unsaved.clear();
+        rewrite();
+        sync = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sync.scheduleWithFixedDelay(this::sync, SYNC_MILLIS, SYNC_MILLIS, TimeUnit.MILLISECONDS);
+        return recovered;
+    }
+
+    /**
+     * @param components part of a charfile with the components that changed
+     */
+    public synchronized void event(String name, String components) {
+        for (JsonValue component : new JsonReader().parse(components)) {
+            sequence++;
+            Event event = new Event(sequence, component.prettyPrint(OutputType.json, 0));
+            append(EVENT, sequence, name, component.name, event.value);
+            unsaved.computeIfAbsent(name, n -> new LinkedHashMap<>()).put(component.name, event);
+        }
+        if (size > MAX_SIZE && !rewriting) {
+            rewriting = true;
+            sync.execute(() -> {
+                try {
+                    rewrite();
+                } catch (UncheckedIOException e) {
+                    Log.error("Journal", "Failed to rewrite the journal", e);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return sequence of the last event, a snapshot taken now includes every event up to it
+     */
+    public synchronized long sequence() {
+        return sequence;
+    }
+
+    /**
+     * The snapshot of the character taken at that sequence was saved
+     */
+    public synchronized void saved(String name, long snapshotSequence) {
+        Map<String, Event> events = unsaved.get(name);
+        if (events == null) {
+            return;
+        }
+        append(SNAPSHOT, snapshotSequence, name, "", "");
+        events.values().removeIf(event -> event.sequence <= snapshotSequence);
+        if (events.isEmpty()) {
+            unsaved.remove(name);
+        }
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Append the buffered records to the file without forcing them, and wait for it
+     */
+    public void flush() {
+        if (sync == null) {
+            return;
+        }
+        try {
+            sync.submit(this::writeBuffer).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Log.error("Journal", "Failed to flush the journal", e.getCause());
+        }
+    }
+
+    public void close() {
+        if (sync != null) {
+            sync.shutdown();
+            try {
+                if (!sync.awaitTermination(CLOSE_SECONDS, TimeUnit.SECONDS)) {
+                    Log.warn("Journal", "The journal is still being rewritten, closing anyway");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (channel == null) {
+                return;
+            }
+            writeBuffer();
+            try {
+                channel.force(false);
+                channel.close();
+            } catch (IOException e) {
+                Log.error("Journal", "Failed to close the journal", e);
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * Write the events not saved yet to a new file and replace the journal with it. Events journaled meanwhile stay
+     * in the buffer and are appended to the new file.
+     */
+    private void rewrite() {
+        List<ByteBuffer> records = new ArrayList<>();
+        int buffered;
+        synchronized (this) {
+            for (Map.Entry<String, Map<String, Event>> entry : unsaved.entrySet()) {
+                for (Map.Entry<String, Event> component : entry.getValue().entrySet()) {
+                    Event event = component.getValue();
+                    records.add(record(EVENT, event.sequence, entry.getKey(), component.getKey(), event.value));
+                }
+            }
+            // already in the records
+            buffered = buffer.size();
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        long rewritten = 0;
+        try {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+            try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (ByteBuffer record : records) {
+                    rewritten += write(out, record, rewritten);
+                }
+                out.force(true);
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+            written = rewritten;
+            unsynced = false;
+            synchronized (this) {
+                byte[] rest = buffer.toByteArray();
+                buffer.reset();
+                buffer.write(rest, buffered, rest.length - buffered);
+                size = written + buffer.size();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to rewrite journal " + file, e);
+        } finally {
+            synchronized (this) {
+                rewriting = false;
+            }
+            if (channel == null && file.exists()) {
+                // keep appending to the old journal
+                try {
+                    channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+                } catch (IOException e) {
+                    Log.error("Journal", "Failed to reopen journal " + file, e);
+                }
+            }
+        }
+    }
+
+    private void append(byte type, long sequence, String name, String component, String value) {
+        if (sync == null) {
+            throw new IllegalStateException("Journal not replayed");
+        }
+        ByteBuffer record = record(type, sequence, name, component, value);
+        buffer.write(record.array(), 0, record.limit());
+        size += record.limit();
+    }
+
+    private static ByteBuffer record(byte type, long sequence, String name, String component, String value) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        byte[] componentBytes = component.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = MIN_LENGTH + nameBytes.length + componentBytes.length + valueBytes.length;
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + length);
+        record.putInt(0);
+        record.putInt(length);
+        record.putLong(sequence);
+        record.put(type);
+        record.putInt(nameBytes.length);
+        record.put(nameBytes);
+        record.putInt(componentBytes.length);
+        record.put(componentBytes);
+        record.put(valueBytes);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, record.capacity() - 4);
+        record.putInt(0, (int) crc.getValue());
+        record.flip();
+        return record;
+    }
+
+    private static int write(FileChannel channel, ByteBuffer record, long position) throws IOException {
+        int length = 0;
+        while (record.hasRemaining()) {
+            length += channel.write(record, position + length);
+        }
+        return length;
+    }
+
+    // the buffered records go to the end of the file
+    private void writeBuffer() {
+        byte[] records;
+        synchronized (this) {
+            if (buffer.size() == 0 || channel == null) {
+                return;
+            }
+            records = buffer.toByteArray();
+            buffer.reset();
+        }
+        try {
+            written += write(channel, ByteBuffer.wrap(records), written);
+            unsynced = true;
+        } catch (IOException e) {
+            Log.error("Journal", "Failed to write " + records.length + " bytes of journal events", e);
+        }
+    }
+
+    private void sync() {
+        writeBuffer();
+        if (!unsynced || channel == null) {
+            return;
+        }
+        try {
+            channel.force(false);
+            unsynced = false;
+        } catch (IOException e) {
+            Log.error("Journal", "Failed to sync the journal", e);
+        }
+    }
+
+    // the events after the last snapshot of each character go to unsaved
+    private void read() {
+        if (!file.exists()) {
+            return;
+        }
+        try (FileChannel read = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long fileSize = read.size();
+            long position = 0;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (position + HEADER_SIZE <= fileSize) {
+                header.clear();
+                read(read, header, position);
+                int crc = header.getInt(0);
+                int length = header.getInt(4);
+                if (length < MIN_LENGTH || position + HEADER_SIZE + length > fileSize) {
+                    break;
+                }
+                ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + length);
+                read(read, record, position);
+                CRC32 check = new CRC32();
+                check.update(record.array(), 4, record.capacity() - 4);
+                if ((int) check.getValue() != crc) {
+                    break;
+                }
+                record.position(HEADER_SIZE);
+                long recordSequence = record.getLong();
+                byte type = record.get();
+                String name = string(record, record.getInt());
+                String component = string(record, record.getInt());
+                String value = string(record, record.remaining());
+                sequence = Math.max(sequence, recordSequence);
+                if (type == EVENT) {
+                    unsaved.computeIfAbsent(name, n -> new LinkedHashMap<>()).put(component, new Event(recordSequence, value));
+                } else {
+                    Map<String, Event> events = unsaved.get(name);
+                    if (events != null) {
+                        events.values().removeIf(event -> event.sequence <= recordSequence);
+                        if (events.isEmpty()) {
+                            unsaved.remove(name);
+                        }
+                    }
+                }
+                position += HEADER_SIZE + length;
+            }
+            if (position < fileSize) {
+                Log.warn("Journal", String.format("Journal has %d bytes of an incomplete record, ignored", fileSize - position));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read journal " + file, e);
+        }
+    }
+
+    private static void read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of journal");
+            }
+        }
+        buffer.flip();
+    }
+
+    private static String string(ByteBuffer record, int length) {
+        String value = new String(record.array(), record.position(), length, StandardCharsets.UTF_8);
+        record.position(record.position() + length);
+        return value;
+    }
+
+    /**
+     * Replace the components of the charfile
+     *
+     * @param components json value of each component, by component name
+     */
+    public static String merge(String charfile, Map<String, String> components) {
+        Map<String, String> merged = new LinkedHashMap<>();
+        for (JsonValue component : new JsonReader().parse(charfile)) {
+            merged.put(component.name, component.prettyPrint(OutputType.json, 0));
+        }
+        merged.putAll(components);
+        StringBuilder json = new StringBuilder("{");
+        merged.forEach((name, value) -> {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('"').append(name).append("\":").append(value);
+        });
+        return json.append('}').toString();
+    }
+
+    private static class Event {
+        private final long sequence;
+        private final String value;
+
+        private Event(long sequence, String value) {
+            this.sequence = sequence;
+            this.value = value;
+        }
+    }
+}
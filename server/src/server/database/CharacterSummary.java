@@ -0,0 +1,92 @@
+package server.database;
+
+import com.artemis.E;
+import com.badlogic.gdx.utils.Json;
+import com.esotericsoftware.jsonbeans.JsonReader;
+import com.esotericsoftware.jsonbeans.JsonValue;
+import server.database.storage.Storage;
+import shared.util.AOJson;
+
+/**
+ * Lo que se muestra de cada personaje en la seleccion de personajes. Se guarda junto con el charfile en
+ * {@link Storage#SUMMARIES}, asi el login de la cuenta no tiene que leer los charfiles enteros.
+ */
+public class CharacterSummary {
+
+    private static transient final ThreadLocal<Json> json = ThreadLocal.withInitial(AOJson::new);
+
+    private String name;
+    private int heroId;
+    private int level;
+    private int hpMin;
+    private int hpMax;
+    private int mpMin;
+    private int mpMax;
+    private int map;
+
+    public CharacterSummary() {
+    }
+
+    /**
+     * Only in the game thread
+     */
+    public static CharacterSummary of(String name, E e) {
+        CharacterSummary summary = new CharacterSummary();
+        summary.name = name;
+        summary.heroId = e.hasCharHero() ? e.getCharHero().heroId : -1;
+        summary.level = e.hasLevel() ? e.getLevel().level : 0;
+        if (e.hasHealth()) {
+            summary.hpMin = e.getHealth().min;
+            summary.hpMax = e.getHealth().max;
+        }
+        if (e.hasMana()) {
+            summary.mpMin = e.getMana().min;
+            summary.mpMax = e.getMana().max;
+        }
+        summary.map = e.hasWorldPos() ? e.getWorldPos().map : 0;
+        return summary;
+    }
+
+    /**
+     * Read the summary from a whole charfile, for characters saved before there were summaries
+     */
+    public static CharacterSummary fromCharfile(String name, String charfile) {
+        JsonValue jsonData = new JsonReader().parse(charfile);
+        CharacterSummary summary = new CharacterSummary();
+        summary.name = name;
+        JsonValue hero = jsonData.get("component.entity.character.info.CharHero");
+        JsonValue level = jsonData.get("component.entity.character.status.Level");
+        JsonValue health = jsonData.get("component.entity.character.status.Health");
+        JsonValue mana = jsonData.get("component.entity.character.status.Mana");
+        JsonValue position = jsonData.get("component.position.WorldPos");
+        summary.heroId = hero == null ? -1 : hero.getInt("heroId", -1);
+        summary.level = level == null ? 0 : level.getInt("level", 0);
+        if (health != null) {
+            summary.hpMin = health.getInt("min", 0);
+            summary.hpMax = health.getInt("max", 0);
+        }
+        if (mana != null) {
+            summary.mpMin = mana.getInt("min", 0);
+            summary.mpMax = mana.getInt("max", 0);
+        }
+        summary.map = position == null ? 0 : position.getInt("map", 0);
+        return summary;
+    }
+
+    public static CharacterSummary read(String value) {
+        return json.get().fromJson(CharacterSummary.class, value);
+    }
+
+    public String write() {
+        return json.get().toJson(this);
+    }
+
+    public String getName() { return name; }
+    public int getHeroId() { return heroId; }
+    public int getLevel() { return level; }
+    public int getHpMin() { return hpMin; }
+    public int getHpMax() { return hpMax; }
+    public int getMpMin() { return mpMin; }
+    public int getMpMax() { return mpMax; }
+    public int getMap() { return map; }
+}
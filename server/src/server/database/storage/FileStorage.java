@@ -0,0 +1,118 @@
+package server.database.storage;
+
+import com.esotericsoftware.minlog.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * One json file per value: {@code <path><collection>/<key>.json}, like Accounts/email.json and Charfile/name.json.
+ * Values are written to a temporary file, forced to disk and renamed over the old file, so a crash while writing
+ * leaves the old value or the new one, never part of it.
+ */
+public class FileStorage implements Storage {
+
+    public static final String TYPE = "files";
+    public static final String EXTENSION = ".json";
+    public static final String TEMP_EXTENSION = ".tmp";
+
+    private final String path;
+
+    public FileStorage(String path) {
+        this.path = path == null ? "" : path;
+    }
+
+    public File file(String collection, String key) {
+        return new File(path + collection + File.separator + key + EXTENSION);
+    }
+
+    @Override
+    public String get(String collection, String key) {
+        try {
+            return new String(Files.readAllBytes(file(collection, key).toPath()), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + collection + "/" + key, e);
+        }
+    }
+
+    @Override
+    public void put(String collection, String key, String value) {
+        File file = file(collection, key);
+        try {
+            Path dir = Files.createDirectories(file.getParentFile().toPath());
+            // unique per put, so concurrent puts of the same key don't write the same file
+            Path temp = Files.createTempFile(dir, key, TEMP_EXTENSION);
+            try {
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    ByteBuffer buffer = ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    channel.force(true);
+                }
+                Files.move(temp, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            forceDirectory(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write " + collection + "/" + key, e);
+        }
+    }
+
+    /**
+     * Force the directory entry of the renamed file to disk, otherwise a crash can still lose the rename.
+     * Directories can't be opened on some platforms (Windows), there the rename is all we can do.
+     */
+    private void forceDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            Log.debug("Storage", "Failed to force directory " + dir, e);
+        }
+    }
+
+    @Override
+    public boolean exists(String collection, String key) {
+        File file = file(collection, key);
+        return file.isFile() && file.canRead();
+    }
+
+    @Override
+    public void delete(String collection, String key) {
+        File file = file(collection, key);
+        if (file.exists() && !file.delete()) {
+            Log.warn("Storage", "Failed to delete " + file);
+        }
+    }
+
+    @Override
+    public Collection<String> keys(String collection) {
+        List<String> keys = new ArrayList<>();
+        File[] files = new File(path + collection).listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (files != null) {
+            for (File file : files) {
+                keys.add(file.getName().substring(0, file.getName().length() - EXTENSION.length()));
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    public void close() {
+    }
+}
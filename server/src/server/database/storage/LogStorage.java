@@ -0,0 +1,487 @@
+package server.database.storage;
+
+import com.esotericsoftware.minlog.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append only, log structured store: every put or delete is a record appended to the last segment file, and an index
+ * in memory has where the last record of each key is. Overwritten values stay in the segments as garbage until
+ * {@link #compact()} copies the live records to new segments and deletes the old ones, which is done periodically when
+ * there is enough garbage.
+ * <p>
+ * Record: crc32 of the rest of the record, type (put or delete), key length, value length, key and value in UTF-8
+ * (the key is collection/key). When opening, the segments are read in order to build the index. A record with a bad
+ * crc at the end of the last segment was cut by a crash and is truncated.
+ */
+public class LogStorage implements Storage {
+
+    public static final String TYPE = "log";
+    public static final String EXTENSION = ".log";
+    public static final String DEFAULT_PATH = "Database";
+    public static final long DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final int HEADER_SIZE = 4 + 1 + 4 + 4;
+    private static final char SEPARATOR = '/';
+    // compact when this part of the segments is garbage, and at least MIN_GARBAGE bytes
+    private static final double GARBAGE_RATIO = 0.5;
+    private static final long MIN_GARBAGE = 4 * 1024 * 1024;
+    private static final long COMPACTION_CHECK_MINUTES = 1;
+
+    private final File dir;
+    private final long segmentSize;
+    private final boolean sync;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Map<String, Location>> index = new HashMap<>();
+    private final List<Segment> segments = new ArrayList<>();
+    private long totalBytes;
+    private long liveBytes;
+    private ScheduledExecutorService compaction;
+
+    public LogStorage(String path) {
+        this(path, DEFAULT_SEGMENT_SIZE, true);
+        compaction = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "storage-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compaction.scheduleWithFixedDelay(this::compactIfNeeded, COMPACTION_CHECK_MINUTES, COMPACTION_CHECK_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Without periodic compaction. {@link #LogStorage(String)} forces every record, the journal of the characters is
+     * checkpointed once the storage returns.
+     *
+     * @param sync force every record to disk before returning
+     */
+    public LogStorage(String path, long segmentSize, boolean sync) {
+        this.dir = new File(path);
+        this.segmentSize = segmentSize;
+        this.sync = sync;
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new UncheckedIOException(new IOException("Can't create " + dir));
+        }
+        try {
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open storage " + dir, e);
+        }
+    }
+
+    private void recover() throws IOException {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(EXTENSION));
+        long[] ids = files == null ? new long[0] : Arrays.stream(files)
+                .mapToLong(file -> Long.parseLong(file.getName().substring(0, file.getName().length() - EXTENSION.length())))
+                .sorted()
+                .toArray();
+        for (int i = 0; i < ids.length; i++) {
+            Segment segment = new Segment(ids[i]);
+            segments.add(segment);
+            long valid = replay(segment);
+            if (valid < segment.size) {
+                if (i == ids.length - 1) {
+                    Log.warn("Storage", String.format("Segment %s has %d bytes of an incomplete record, truncating", segment.file, segment.size - valid));
+                    segment.channel.truncate(valid);
+                    segment.size = valid;
+                } else {
+                    Log.error("Storage", String.format("Segment %s is corrupt after byte %d, the rest is ignored", segment.file, valid));
+                    totalBytes += segment.size - valid;
+                }
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.add(new Segment(1));
+        }
+        Log.info("Storage", String.format("Opened %s: %d segments, %d keys, %d of %d bytes live", dir, segments.size(),
+                index.values().stream().mapToInt(Map::size).sum(), liveBytes, totalBytes));
+    }
+
+    /**
+     * @return bytes of valid records from the start
+     */
+    private long replay(Segment segment) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        long position = 0;
+        while (position + HEADER_SIZE <= segment.size) {
+            header.clear();
+            read(segment.channel, header, position);
+            header.flip();
+            header.getInt();
+            header.get();
+            int keyLength = header.getInt();
+            int valueLength = header.getInt();
+            if (keyLength < 0 || valueLength < 0 || position + HEADER_SIZE + keyLength + valueLength > segment.size) {
+                break;
+            }
+            int length = HEADER_SIZE + keyLength + valueLength;
+            ByteBuffer record = ByteBuffer.allocate(length);
+            read(segment.channel, record, position);
+            record.flip();
+            if (!checksum(record)) {
+                break;
+            }
+            byte type = record.get(4);
+            String key = new String(record.array(), HEADER_SIZE, keyLength, StandardCharsets.UTF_8);
+            int separator = key.indexOf(SEPARATOR);
+            String collection = key.substring(0, separator);
+            String name = key.substring(separator + 1);
+            totalBytes += length;
+            if (type == PUT) {
+                set(collection, name, new Location(segment, position, length));
+            } else {
+                remove(collection, name);
+            }
+            position += length;
+        }
+        return position;
+    }
+
+    @Override
+    public String get(String collection, String key) {
+        lock.readLock().lock();
+        try {
+            Location location = location(collection, key);
+            if (location == null) {
+                return null;
+            }
+            ByteBuffer record = readRecord(location);
+            int keyLength = record.getInt(5);
+            int valueLength = record.getInt(9);
+            return new String(record.array(), HEADER_SIZE + keyLength, valueLength, StandardCharsets.UTF_8);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void put(String collection, String key, String value) {
+        append(PUT, collection, key, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public boolean exists(String collection, String key) {
+        lock.readLock().lock();
+        try {
+            return location(collection, key) != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(String collection, String key) {
+        lock.writeLock().lock();
+        try {
+            if (location(collection, key) != null) {
+                append(DELETE, collection, key, new byte[0]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Collection<String> keys(String collection) {
+        lock.readLock().lock();
+        try {
+            Map<String, Location> keys = index.get(collection);
+            return keys == null ? Collections.emptyList() : new ArrayList<>(keys.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void append(byte type, String collection, String key, byte[] value) {
+        if (collection.indexOf(SEPARATOR) >= 0) {
+            throw new IllegalArgumentException("Invalid collection " + collection);
+        }
+        byte[] fullKey = (collection + SEPARATOR + key).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + fullKey.length + value.length);
+        record.putInt(0);
+        record.put(type);
+        record.putInt(fullKey.length);
+        record.putInt(value.length);
+        record.put(fullKey);
+        record.put(value);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, record.capacity() - 4);
+        record.putInt(0, (int) crc.getValue());
+        record.flip();
+
+        lock.writeLock().lock();
+        try {
+            Segment segment = active(record.remaining());
+            long position = segment.size;
+            write(segment, record);
+            totalBytes += record.capacity();
+            if (type == PUT) {
+                set(collection, key, new Location(segment, position, record.capacity()));
+            } else {
+                remove(collection, key);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write " + collection + "/" + key, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // the segment to append a record, a new one if the last is full
+    private Segment active(int length) throws IOException {
+        Segment last = segments.get(segments.size() - 1);
+        if (last.size > 0 && last.size + length > segmentSize) {
+            last.channel.force(false);
+            last = new Segment(last.id + 1);
+            segments.add(last);
+        }
+        return last;
+    }
+
+    private void write(Segment segment, ByteBuffer record) throws IOException {
+        long position = segment.size;
+        while (record.hasRemaining()) {
+            position += segment.channel.write(record, position);
+        }
+        segment.size = position;
+        if (sync) {
+            segment.channel.force(false);
+        }
+    }
+
+    private void set(String collection, String key, Location location) {
+        Location previous = index.computeIfAbsent(collection, c -> new HashMap<>()).put(key, location);
+        liveBytes += location.length - (previous == null ? 0 : previous.length);
+    }
+
+    private void remove(String collection, String key) {
+        Map<String, Location> keys = index.get(collection);
+        Location previous = keys == null ? null : keys.remove(key);
+        if (previous != null) {
+            liveBytes -= previous.length;
+        }
+    }
+
+    private Location location(String collection, String key) {
+        Map<String, Location> keys = index.get(collection);
+        return keys == null ? null : keys.get(key);
+    }
+
+    private ByteBuffer readRecord(Location location) {
+        ByteBuffer record = ByteBuffer.allocate(location.length);
+        try {
+            read(location.segment.channel, record, location.position);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + location.segment.file, e);
+        }
+        record.flip();
+        if (!checksum(record)) {
+            throw new UncheckedIOException(new IOException("Corrupt record in " + location.segment.file + " at " + location.position));
+        }
+        return record;
+    }
+
+    private static void read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of segment");
+            }
+        }
+    }
+
+    private static boolean checksum(ByteBuffer record) {
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, record.limit() - 4);
+        return record.getInt(0) == (int) crc.getValue();
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getLiveBytes() {
+        return liveBytes;
+    }
+
+    private void compactIfNeeded() {
+        long garbage;
+        lock.readLock().lock();
+        try {
+            garbage = totalBytes - liveBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (garbage >= MIN_GARBAGE && garbage >= totalBytes * GARBAGE_RATIO) {
+            try {
+                compact();
+            } catch (RuntimeException e) {
+                Log.error("Storage", "Compaction failed", e);
+            }
+        }
+    }
+
+    /**
+     * Copy the live records to new segments and delete the old ones. Writes go on while the records are copied: under
+     * the write lock the active segment is closed for writing and the next one is created leaving room for the ids of
+     * the copies, so the copies are always replayed after the old segments and before anything written meanwhile. The
+     * write lock is taken again only to point the index to the copies and delete the old segments, oldest first, so a
+     * crash in the middle never brings back a deleted key.
+     */
+    public synchronized void compact() {
+        long start = System.currentTimeMillis();
+        List<Segment> old;
+        List<Map.Entry<String, Location>> live = new ArrayList<>();
+        List<String> collections = new ArrayList<>();
+        long before;
+        long lastId;
+        lock.writeLock().lock();
+        try {
+            before = totalBytes;
+            old = new ArrayList<>(segments);
+            Segment last = old.get(old.size() - 1);
+            last.channel.force(false);
+            // next-fit: two consecutive copies hold more than a segment
+            lastId = last.id + 2 * (liveBytes / segmentSize) + 2;
+            segments.add(new Segment(lastId + 1));
+            for (Map.Entry<String, Map<String, Location>> keys : index.entrySet()) {
+                for (Map.Entry<String, Location> entry : keys.getValue().entrySet()) {
+                    live.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue()));
+                    collections.add(keys.getKey());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compact " + dir, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        // the old segments are not written anymore, reading them needs no lock
+        List<Segment> copies = new ArrayList<>();
+        List<Location> copied = new ArrayList<>(live.size());
+        long copiedBytes = 0;
+        boolean done = false;
+        try {
+            Segment copy = new Segment(old.get(old.size() - 1).id + 1);
+            copies.add(copy);
+            for (Map.Entry<String, Location> entry : live) {
+                Location location = entry.getValue();
+                ByteBuffer record = readRecord(location);
+                if (copy.size > 0 && copy.size + record.remaining() > segmentSize) {
+                    copy.channel.force(false);
+                    if (copy.id == lastId) {
+                        throw new IOException("Out of segment ids for the copies");
+                    }
+                    copy = new Segment(copy.id + 1);
+                    copies.add(copy);
+                }
+                long position = copy.size;
+                write(copy, record);
+                copiedBytes += location.length;
+                copied.add(new Location(copy, position, location.length));
+            }
+            copy.channel.force(false);
+            done = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compact " + dir, e);
+        } finally {
+            if (!done) {
+                for (Segment copy : copies) {
+                    close(copy);
+                    copy.file.delete();
+                }
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            // keys written or deleted while copying keep their newer location
+            for (int i = 0; i < live.size(); i++) {
+                Map<String, Location> keys = index.get(collections.get(i));
+                Map.Entry<String, Location> entry = live.get(i);
+                if (keys != null && keys.get(entry.getKey()) == entry.getValue()) {
+                    keys.put(entry.getKey(), copied.get(i));
+                }
+            }
+            segments.addAll(old.size(), copies);
+            totalBytes += copiedBytes;
+            for (Segment segment : old) {
+                totalBytes -= segment.size;
+                segment.channel.close();
+                if (!segment.file.delete()) {
+                    throw new IOException("Failed to delete " + segment.file);
+                }
+                segments.remove(segment);
+            }
+            Log.info("Storage", String.format("Compacted %s from %d to %d bytes in %dms", dir, before, totalBytes, System.currentTimeMillis() - start));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compact " + dir, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void close(Segment segment) {
+        try {
+            segment.channel.close();
+        } catch (IOException e) {
+            Log.error("Storage", "Failed to close " + segment.file, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (compaction != null) {
+            compaction.shutdown();
+        }
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments) {
+                segment.channel.force(false);
+                segment.channel.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private class Segment {
+        private final long id;
+        private final File file;
+        private final FileChannel channel;
+        private long size;
+
+        private Segment(long id) throws IOException {
+            this.id = id;
+            this.file = new File(dir, String.format("%08d%s", id, EXTENSION));
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.size = channel.size();
+        }
+    }
+
+    private static class Location {
+        private final Segment segment;
+        private final long position;
+        private final int length;
+
+        private Location(Segment segment, long position, int length) {
+            this.segment = segment;
+            this.position = position;
+            this.length = length;
+        }
+    }
+}
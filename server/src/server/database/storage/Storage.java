@@ -0,0 +1,46 @@
+package server.database.storage;
+
+import java.io.Closeable;
+import java.util.Collection;
+
+/**
+ * Where accounts and characters are persisted. Values are json documents saved by collection and key, for example
+ * the account of an email in {@link #ACCOUNTS}.
+ * Implementations must be thread safe, they are used from the login pipeline and the charfile writer.
+ *
+ * @see FileStorage
+ * @see LogStorage
+ */
+public interface Storage extends Closeable {
+
+    String ACCOUNTS = "Accounts";
+    String CHARACTERS = "Charfile";
+    // small summary of each character, see server.database.CharacterSummary
+    String SUMMARIES = "Summaries";
+
+    /**
+     * @return the value, or null if there is none
+     */
+    String get(String collection, String key);
+
+    void put(String collection, String key, String value);
+
+    boolean exists(String collection, String key);
+
+    void delete(String collection, String key);
+
+    Collection<String> keys(String collection);
+
+    /**
+     * @param type {@link FileStorage#TYPE} or {@link LogStorage#TYPE}
+     * @param path folder of the storage
+     */
+    static Storage open(String type, String path) {
+        if (LogStorage.TYPE.equals(type)) {
+            return new LogStorage(path == null || path.isEmpty() ? LogStorage.DEFAULT_PATH : path);
+        } else if (type == null || FileStorage.TYPE.equals(type)) {
+            return new FileStorage(path);
+        }
+        throw new IllegalArgumentException("Unknown storage type: " + type);
+    }
+}
@@ -0,0 +1,47 @@
+package server.database.storage;
+
+import com.esotericsoftware.minlog.Log;
+
+import java.io.IOException;
+
+/**
+ * Copies every account and character from one storage to another, for example from the json files to the log store:
+ * <pre>StorageMigration files "" log Database</pre>
+ * Run it with the server stopped, then change the database type in Server.json.
+ */
+public class StorageMigration {
+
+    private static final String[] COLLECTIONS = {Storage.ACCOUNTS, Storage.CHARACTERS, Storage.SUMMARIES};
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 4) {
+            Log.error("Usage: StorageMigration <from type> <from path> <to type> <to path>");
+            return;
+        }
+        try (Storage from = Storage.open(args[0], args[1]); Storage to = Storage.open(args[2], args[3])) {
+            migrate(from, to);
+        }
+    }
+
+    /**
+     * @return how many values were copied
+     */
+    public static int migrate(Storage from, Storage to) {
+        long start = System.currentTimeMillis();
+        int total = 0;
+        for (String collection : COLLECTIONS) {
+            int copied = 0;
+            for (String key : from.keys(collection)) {
+                String value = from.get(collection, key);
+                if (value != null) {
+                    to.put(collection, key, value);
+                    copied++;
+                }
+            }
+            Log.info("Storage", String.format("Migrated %d %s", copied, collection));
+            total += copied;
+        }
+        Log.info("Storage", String.format("Migrated %d values in %dms", total, System.currentTimeMillis() - start));
+        return total;
+    }
+}
@@ -1,55 +1,88 @@
 package server.systems.account;
 
 import com.artemis.annotations.Wire;
-import com.esotericsoftware.jsonbeans.JsonReader;
-import com.esotericsoftware.jsonbeans.JsonValue;
 import com.esotericsoftware.minlog.Log;
 import net.mostlyoriginal.api.system.core.PassiveSystem;
 import server.database.Account;
+import server.database.CharacterSummary;
 import server.systems.network.ServerSystem;
 import shared.network.account.AccountCreationResponse;
 import shared.network.account.AccountLoginResponse;
 import shared.util.AccountSystemUtilities;
 
-import java.io.File;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 @Wire
 public class AccountSystem extends PassiveSystem {
 
     private ServerSystem serverSystem;
     private UserSystem userSystem;
+    private LoginPipelineSystem loginPipelineSystem;
+    private StorageSystem storageSystem;
+    // emails with a creation in progress, so the same account can't be created twice at once
+    private final Set<String> creating = new HashSet<>();
 
     public void createAccount(int connectionId, String username, String email, String password) {
-
-        // Hasheamos la contraseña.
-        String hashedPassword = AccountSystemUtilities.hashPassword(password);
-
-        // Resultado de la operacion.
-        boolean successful = false; //@todo todos los requests podrían llevar un flag de exito/error
-
-        if (!Account.exists(email)) {
-            // Guardamos la cuenta.
-            try {
-                Account account = new Account(username, email, hashedPassword);
-                account.save();
-                successful = true;
-            } catch (Exception ex) {
-                Log.info("Creacion de cuentas", "No se pudo crear la cuenta: " + email, ex);
-            }
+        if (!creating.add(email)) {
+            serverSystem.sendTo(connectionId, new AccountCreationResponse(false));
+            return;
         }
+        // Hasheamos la contraseña y guardamos la cuenta fuera del game thread.
+        CompletableFuture<Boolean> created = loginPipelineSystem.credentials(() -> AccountSystemUtilities.hashPassword(password))
+                .thenApplyAsync(hashedPassword -> save(username, email, hashedPassword), loginPipelineSystem.getStorageExecutor());
+        loginPipelineSystem.complete(created, successful -> {
+            creating.remove(email);
+            serverSystem.sendTo(connectionId, new AccountCreationResponse(successful));
+        }, error -> {
+            creating.remove(email);
+            Log.error("Creacion de cuentas", "No se pudo crear la cuenta: " + email, error);
+            serverSystem.sendTo(connectionId, new AccountCreationResponse(false));
+        });
+    }
 
-        serverSystem.sendTo(connectionId, new AccountCreationResponse(successful));
+    /**
+     * Runs in the storage pool
+     */
+    private boolean save(String username, String email, String hashedPassword) {
+        //@todo todos los requests podrían llevar un flag de exito/error
+        if (Account.exists(storageSystem.getStorage(), email)) {
+            return false;
+        }
+        // Guardamos la cuenta.
+        try {
+            Account account = new Account(username, email, hashedPassword);
+            account.save(storageSystem.getStorage());
+            return true;
+        } catch (Exception ex) {
+            Log.info("Creacion de cuentas", "No se pudo crear la cuenta: " + email, ex);
+            return false;
+        }
     }
 
     public void login(int connectionId, String email, String password) {
-        // Obtenemos la cuenta de la carpeta Accounts.
-        Account requestedAccount = Account.load(email);
+        // Obtenemos la cuenta de la carpeta Accounts, chequeamos la contraseña y leemos los personajes.
+        CompletableFuture<AccountLoginResponse> response = loginPipelineSystem.storage(() -> Account.load(storageSystem.getStorage(), email))
+                .thenApplyAsync(account -> account != null && AccountSystemUtilities.checkPassword(password, account.getPassword()) ? account : null,
+                        loginPipelineSystem.getCredentialsExecutor())
+                .thenApplyAsync(account -> loginResponse(email, account), loginPipelineSystem.getStorageExecutor());
+        loginPipelineSystem.complete(response, loginResponse -> serverSystem.sendTo(connectionId, loginResponse), error -> {
+            Log.error("Login", "Failed to login account " + email, error);
+            serverSystem.sendTo(connectionId, new AccountLoginResponse(email, false, null, emptyCharactersData()));
+        });
+    }
 
-        boolean successful = (requestedAccount != null) && (AccountSystemUtilities.checkPassword(password, requestedAccount.getPassword()));
+    /**
+     * Runs in the storage pool
+     *
+     * @param requestedAccount null if it doesn't exist or the password is wrong
+     */
+    private AccountLoginResponse loginResponse(String email, Account requestedAccount) {
+        boolean successful = requestedAccount != null;
 
-        String username = successful ? requestedAccount.getUsername() : null;
-        ArrayList<String> characters = new ArrayList<>();
+        ArrayList<String> characters;
         if (successful){
             if(requestedAccount.getCharacters().isEmpty()) {
                 Log.info("********la cuenta " +requestedAccount.getUsername() +"no tiene pj creando lista" );
@@ -63,50 +96,48 @@ public class AccountSystem extends PassiveSystem {
         }
 
         // todo recuperar el heroID
-        ArrayList< Integer > charactersData = new ArrayList<>();
-        for (int i = 0; i < 30; i++){
-            charactersData.add( -1 );
-        }
+        ArrayList< Integer > charactersData = emptyCharactersData();
 
-        if (!characters.isEmpty()) {
+        if (characters != null && !characters.isEmpty()) {
             for (int i = 0; i < 6; i++) {
                 if (!characters.get( i ).isBlank()) {
                     String name = characters.get( i );
-                    File file = new File("Charfile/" + name + ".json");
-                    Log.info( "*** obteniendo hero id del pj " + name );
-                    if (file.isFile() && file.canRead()) {
-                        // leer los datos del archivo
-                        try {
-                            JsonValue jsonData = new JsonReader().parse( file );
-                            JsonValue heroIdData = jsonData.get( "component.entity.character.info.CharHero" );
-                            JsonValue hpData = jsonData.get("component.entity.character.status.Health");
-                            JsonValue mpData = jsonData.get("component.entity.character.status.Mana");
-                            int heroid = heroIdData.getInt( "heroId" );
-                            int hpMin = hpData.getInt( "min" );
-                            int hpMax = hpData.getInt( "max" );
-                            int mpMin = mpData.getInt( "min" );
-                            int mpMax = mpData.getInt( "min" );
+                    // solo leemos el resumen, el charfile se lee cuando elige el personaje
+                    try {
+                        CharacterSummary summary = userSystem.getSummary( name );
+                        if (summary != null) {
                             // asigna los valores
-                            charactersData.set( i, heroid );
-                            charactersData.set( i + 6, hpMin );
-                            charactersData.set( i + 12, hpMax );
-                            charactersData.set( i + 18, mpMin );
-                            charactersData.set( i + 24, mpMax );
-                        } catch (Exception ex) {
+                            charactersData.set( i, summary.getHeroId() );
+                            charactersData.set( i + 6, summary.getHpMin() );
+                            charactersData.set( i + 12, summary.getHpMax() );
+                            charactersData.set( i + 18, summary.getMpMin() );
+                            charactersData.set( i + 24, summary.getMpMax() );
+                        } else {
                             Log.info( "error al tratar de leer el personaje " + name );
                         }
-
-                    } else {
+                    } catch (Exception ex) {
                         Log.info( "error al tratar de leer el personaje " + name );
                     }
                 }
             }
         }
 
-        serverSystem.sendTo(connectionId, new AccountLoginResponse(email, successful,characters, charactersData ));
+        return new AccountLoginResponse(email, successful, characters, charactersData);
+    }
+
+    private ArrayList<Integer> emptyCharactersData() {
+        ArrayList< Integer > charactersData = new ArrayList<>();
+        for (int i = 0; i < 30; i++){
+            charactersData.add( -1 );
+        }
+        return charactersData;
     }
+
+    /**
+     * Runs in the storage pool
+     */
     public Account getAccount(String email){
-        Account requestedAccount = Account.load(email);
+        Account requestedAccount = Account.load(storageSystem.getStorage(), email);
         Log.info("***** enviando datos de la cuenta " + requestedAccount.getUsername());
         return requestedAccount;
     }
@@ -0,0 +1,119 @@
+package server.systems.account;
+
+import com.artemis.BaseSystem;
+import com.esotericsoftware.minlog.Log;
+
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs the slow parts of account and character requests out of the game thread, in stages:
+ * password hashing on a CPU pool ({@link #credentials(Supplier)}), account and charfile reads on an I/O pool
+ * ({@link #storage(Supplier)}), and the result goes back to the game thread through a completion queue
+ * ({@link #complete(CompletableFuture, Consumer, Consumer)}) that is drained each tick within a time budget.
+ * Anything that touches the world (creating the entity, sending the response) must go in the completion.
+ */
+public class LoginPipelineSystem extends BaseSystem {
+
+    public static final long DEFAULT_TICK_BUDGET = TimeUnit.MILLISECONDS.toNanos(4);
+
+    private final ExecutorService credentials;
+    private final ExecutorService storage;
+    private final Queue<Runnable> completions = new ConcurrentLinkedQueue<>();
+    private final long tickBudget;
+
+    public LoginPipelineSystem() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), 4, DEFAULT_TICK_BUDGET);
+    }
+
+    /**
+     * @param tickBudget nanoseconds of completions to run in each tick, at least one is run
+     */
+    public LoginPipelineSystem(int cpuThreads, int ioThreads, long tickBudget) {
+        this.credentials = Executors.newFixedThreadPool(cpuThreads, threads("login-credentials"));
+        this.storage = Executors.newFixedThreadPool(ioThreads, threads("login-storage"));
+        this.tickBudget = tickBudget;
+    }
+
+    private static ThreadFactory threads(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * CPU bound work, like hashing or checking a password
+     */
+    public <T> CompletableFuture<T> credentials(Supplier<T> work) {
+        return CompletableFuture.supplyAsync(work, credentials);
+    }
+
+    /**
+     * Blocking reads or writes of accounts and charfiles
+     */
+    public <T> CompletableFuture<T> storage(Supplier<T> work) {
+        return CompletableFuture.supplyAsync(work, storage);
+    }
+
+    public Executor getCredentialsExecutor() {
+        return credentials;
+    }
+
+    public Executor getStorageExecutor() {
+        return storage;
+    }
+
+    /**
+     * When the future completes, run the result or the error in the game thread
+     */
+    public <T> void complete(CompletableFuture<T> future, Consumer<T> onResult, Consumer<Throwable> onError) {
+        future.whenComplete((result, error) -> completions.add(() -> {
+            if (error == null) {
+                onResult.accept(result);
+            } else {
+                onError.accept(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            }
+        }));
+    }
+
+    @Override
+    protected void processSystem() {
+        drain(tickBudget);
+    }
+
+    /**
+     * Run completions until the queue is empty or the budget is spent
+     *
+     * @return how many completions were run
+     */
+    public int drain(long budget) {
+        long start = System.nanoTime();
+        int count = 0;
+        Runnable completion;
+        while ((count == 0 || System.nanoTime() - start < budget) && (completion = completions.poll()) != null) {
+            try {
+                completion.run();
+            } catch (RuntimeException e) {
+                Log.error("Login", "Failed to complete a login request", e);
+            }
+            count++;
+        }
+        return count;
+    }
+
+    public int pending() {
+        return completions.size();
+    }
+
+    @Override
+    protected void dispose() {
+        credentials.shutdown();
+        storage.shutdown();
+    }
+}
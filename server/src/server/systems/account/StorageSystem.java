@@ -0,0 +1,67 @@
+package server.systems.account;
+
+import com.artemis.annotations.Wire;
+import com.esotericsoftware.minlog.Log;
+import net.mostlyoriginal.api.system.core.PassiveSystem;
+import server.configs.ServerConfiguration;
+import server.database.CharacterJournal;
+import server.database.storage.Storage;
+import server.systems.config.ConfigurationSystem;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Opens the {@link Storage} of accounts and characters chosen in the server configuration, the first time it is used,
+ * and replays the {@link CharacterJournal} left by the last run into it.
+ * It goes after the systems that save on dispose, so it is closed after them.
+ */
+@Wire
+public class StorageSystem extends PassiveSystem {
+
+    private static final String JOURNAL_DIR = "Journal";
+
+    private ConfigurationSystem configurationSystem;
+    private Storage storage;
+    private CharacterJournal journal;
+
+    public synchronized Storage getStorage() {
+        if (storage == null) {
+            open();
+        }
+        return storage;
+    }
+
+    public synchronized CharacterJournal getJournal() {
+        if (storage == null) {
+            open();
+        }
+        return journal;
+    }
+
+    private void open() {
+        ServerConfiguration.Database database = configurationSystem.getServerConfig().getDatabase();
+        String type = database == null ? null : database.getType();
+        String path = database == null ? null : database.getPath();
+        storage = Storage.open(type, path);
+        Log.info("Storage", "Using " + storage.getClass().getSimpleName());
+        journal = new CharacterJournal(new File(path == null ? "" : path, JOURNAL_DIR).getAbsoluteFile());
+        int recovered = journal.replay(storage);
+        if (recovered > 0) {
+            Log.warn("Storage", "The server didn't stop cleanly, recovered " + recovered + " characters from the journal");
+        }
+    }
+
+    @Override
+    protected synchronized void dispose() {
+        if (storage == null) {
+            return;
+        }
+        journal.close();
+        try {
+            storage.close();
+        } catch (IOException e) {
+            Log.error("Storage", "Failed to close the storage", e);
+        }
+    }
+}
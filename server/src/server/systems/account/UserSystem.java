@@ -1,5 +1,6 @@
 package server.systems.account;
 
+import com.artemis.Aspect;
 import com.artemis.Component;
 import com.artemis.E;
 import com.artemis.annotations.Wire;
@@ -8,106 +9,300 @@ import com.esotericsoftware.jsonbeans.JsonReader;
 import com.esotericsoftware.jsonbeans.JsonValue;
 import com.esotericsoftware.jsonbeans.OutputType;
 import com.esotericsoftware.minlog.Log;
+import component.entity.character.Character;
+import component.entity.character.info.Bag;
+import component.entity.character.info.Gold;
+import component.entity.character.status.Level;
 import net.mostlyoriginal.api.system.core.PassiveSystem;
 import server.database.Account;
+import server.database.CharacterJournal;
+import server.database.CharacterSummary;
+import server.database.storage.Storage;
 import server.systems.network.ServerSystem;
 import server.systems.world.WorldEntitiesSystem;
 import server.systems.world.entity.factory.ComponentSystem;
 import server.systems.world.entity.factory.EntityFactorySystem;
+import server.utils.CharfileWriter;
 import server.utils.EntityJsonSerializer;
 import shared.network.user.UserCreateResponse;
 import shared.network.user.UserLoginResponse;
 
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.concurrent.*;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
 @Wire
 public class UserSystem extends PassiveSystem {
 
+    // about 8mb of charfiles waiting to be written (java chars are 2 bytes)
+    private static final long MAX_PENDING_CHARS = 4 * 1024 * 1024;
+    // changes that can't wait for the next save, they go to the journal right away
+    private static final Set<Class<? extends Component>> JOURNALED = Set.of(Level.class, Gold.class, Bag.class);
+
     private EntityJsonSerializer entityJsonSerializer;
     private ServerSystem serverSystem;
     private WorldEntitiesSystem worldEntitiesSystem;
     private EntityFactorySystem entityFactorySystem;
     private AccountSystem accountSystem;
     private ComponentSystem componentSystem;
+    private LoginPipelineSystem loginPipelineSystem;
+    private StorageSystem storageSystem;
     private Json json;
-    private ExecutorService executor = Executors.newFixedThreadPool(10);
+    // json is not thread safe, each storage thread reads charfiles with its own
+    private final ThreadLocal<Json> readJson = ThreadLocal.withInitial(UserSystem::createJson);
+    // characters with a login in progress
+    private final Set<String> loggingIn = new HashSet<>();
+    // characters being created, so the same name can't be created twice at once
+    private final Set<String> creating = new HashSet<>();
+    // characters waiting to be saved and since when, oldest first
+    private final LinkedHashMap<Integer, Long> dirtySince = new LinkedHashMap<>();
+    private final Set<Class<? extends Component>> persisted = new HashSet<>();
+    private CharfileWriter charfileWriter;
+    private CharacterJournal journal;
 
 
     @Override
     protected void initialize() {
-        json = new Json();
+        json = createJson();
+        persisted.addAll(componentSystem.getBy(ComponentSystem.Visibility.SERVER));
+        journal = storageSystem.getJournal();
+        charfileWriter = new CharfileWriter(storageSystem.getStorage(), journal, MAX_PENDING_CHARS);
+    }
+
+    @Override
+    protected void dispose() {
+        try {
+            charfileWriter.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Json createJson() {
+        Json json = new Json();
         json.setOutputType(OutputType.minimal);
         json.setUsePrototypes(false);
+        return json;
     }
 
     public void login(int connectionId, String userName) {
-        if (userExists(userName)) {
-            // login
-            try {
-                Integer entityId = loadUser(userName).get(250, TimeUnit.MILLISECONDS);
-                if (entityId != -1) {
-                    serverSystem.sendTo(connectionId, UserLoginResponse.ok());
-                    worldEntitiesSystem.login(connectionId, entityId);
-                } else {
-                    serverSystem.sendTo(connectionId,
-                            UserLoginResponse.failed("No se pudo leer el personaje " + userName + ". Por favor contactate con soporte."));
-                }
-            } catch (InterruptedException | ExecutionException | TimeoutException e) {
-                Log.info("Failed to retrieve user from JSON file");
-                e.printStackTrace();
+        if (!loggingIn.add(userName)) {
+            serverSystem.sendTo(connectionId,
+                    UserLoginResponse.failed("El personaje " + userName + " ya esta ingresando"));
+            return;
+        }
+        // login: the charfile is read in the storage pool and the entity is created in the game thread
+        loginPipelineSystem.complete(loginPipelineSystem.storage(() -> loadUser(userName)), components -> {
+            loggingIn.remove(userName);
+            if (components == null) {
+                // don't exist (should never happen)
+                // TODO remove from Account ?
                 serverSystem.sendTo(connectionId,
-                        UserLoginResponse.failed("Hubo un problema al leer el personaje " + userName));
+                        UserLoginResponse.failed("Este personaje " + userName + " no existe!"));
+                return;
             }
-
-        } else {
-            // don't exist (should never happen)
-            // TODO remove from Account ?
+            if (!serverSystem.isConnected(connectionId) || !serverSystem.connectionHasNoPlayer(connectionId)) {
+                // the client left or is already playing
+                return;
+            }
+            int entityId = entityFactorySystem.create(components);
+            serverSystem.sendTo(connectionId, UserLoginResponse.ok());
+            worldEntitiesSystem.login(connectionId, entityId);
+        }, error -> {
+            loggingIn.remove(userName);
+            Log.error("Failed to retrieve user from json charfile " + userName, error);
             serverSystem.sendTo(connectionId,
-                    UserLoginResponse.failed("Este personaje " + userName + " no existe!"));
-        }
+                    UserLoginResponse.failed("No se pudo leer el personaje " + userName + ". Por favor contactate con soporte."));
+        });
     }
 
     public void create(int connectionId, String name, int heroId, String userAcc, int index) {
-        if (userExists(name)) {
-            // send user exists
+        if (!creating.add(name)) {
             serverSystem.sendTo(connectionId,
                     UserCreateResponse.failed("Este personaje ya existe!"));
-        } else {
-            // create and add to account
+            return;
+        }
+        // the name and the account are checked in the storage pool, the entity is created in the game thread
+        loginPipelineSystem.complete(loginPipelineSystem.storage(() -> !userExists(name)), available -> {
+            if (!available) {
+                creating.remove(name);
+                // send user exists
+                serverSystem.sendTo(connectionId,
+                        UserCreateResponse.failed("Este personaje ya existe!"));
+                return;
+            }
+            if (!serverSystem.isConnected(connectionId) || !serverSystem.connectionHasNoPlayer(connectionId)) {
+                // the client left or is already playing
+                creating.remove(name);
+                return;
+            }
             int entityId = entityFactorySystem.create(name, heroId);
             saveUser(name);
+            addToAccount(connectionId, entityId, name, userAcc, index);
+        }, error -> {
+            creating.remove(name);
+            Log.error("Failed to create user " + name, error);
+            serverSystem.sendTo(connectionId,
+                    UserCreateResponse.failed("No se pudo crear el personaje " + name + ". Por favor contactate con soporte."));
+        });
+    }
+
+    // the charfile is already saved, the account gets the character in the storage pool and then the user logs in
+    private void addToAccount(int connectionId, int entityId, String name, String userAcc, int index) {
+        loginPipelineSystem.complete(loginPipelineSystem.storage(() -> {
             Account account = accountSystem.getAccount(userAcc);
-            if (!account.getCharacters().get( index ).isBlank()) {
+            String old = account.getCharacters().get(index);
+            if (!old.isBlank()) {
                 try {
-                    File oldUserFile = new File( "Charfile/" + account.getCharacters().get( index ) + ".json" );
-                    oldUserFile.delete();
-                    Log.info( "old file deleted " +account.getCharacters().get( index ) + ".json");
-                }catch (Exception e){
+                    storageSystem.getStorage().delete(Storage.CHARACTERS, old);
+                    storageSystem.getStorage().delete(Storage.SUMMARIES, old);
+                    Log.info("old file deleted " + old);
+                } catch (Exception e) {
                     e.printStackTrace();
                 }
             }
-            account.addCharacter( name, index );
+            account.addCharacter(name, index);
+            return account;
+        }), account -> {
+            creating.remove(name);
+            if (!serverSystem.isConnected(connectionId) || !serverSystem.connectionHasNoPlayer(connectionId)) {
+                // the client left, the character is in its account for the next login
+                E.E(entityId).deleteFromWorld();
+                return;
+            }
             // send ok and login
             serverSystem.sendTo(connectionId,
                     UserCreateResponse.ok());
             worldEntitiesSystem.login(connectionId, entityId);
-        }
+        }, error -> {
+            creating.remove(name);
+            Log.error("Failed to add user " + name + " to account " + userAcc, error);
+            E.E(entityId).deleteFromWorld();
+            serverSystem.sendTo(connectionId,
+                    UserCreateResponse.failed("No se pudo crear el personaje " + name + ". Por favor contactate con soporte."));
+        });
     }
 
+    /**
+     * Runs in the storage pool
+     */
     private boolean userExists(String userName) {
-        File file = new File("Charfile/" + userName + ".json");
-        return file.isFile() && file.canRead();
+        if (charfileWriter.pending(userName) != null) {
+            return true;
+        }
+        return storageSystem.getStorage().exists(Storage.CHARACTERS, userName);
+    }
+
+    /**
+     * Components of the entity changed: the character will be saved by {@link #saveChanged(long, int)}, and exp, level,
+     * gold and items are written to the journal now. Systems call it where they change a character, after the change.
+     * Components sent to clients in an update are marked by the {@link server.systems.network.EntityUpdateSystem} too.
+     */
+    public void changed(int entityId, Component... components) {
+        Collection<Component> journaled = new ArrayList<>();
+        for (Component component : components) {
+            changed(entityId, component.getClass());
+            if (JOURNALED.contains(component.getClass())) {
+                journaled.add(component);
+            }
+        }
+        journal(entityId, journaled);
+    }
+
+    /**
+     * Items of the bag changed, the bag and the gold are written to the journal now
+     */
+    public void bagChanged(int entityId) {
+        changed(entityId, Bag.class);
+        E e = E.E(entityId);
+        Collection<Component> journaled = new ArrayList<>();
+        if (e.hasBag()) {
+            journaled.add(e.getBag());
+        }
+        if (e.hasGold()) {
+            journaled.add(e.getGold());
+        }
+        journal(entityId, journaled);
+    }
+
+    private void journal(int entityId, Collection<Component> components) {
+        if (components.isEmpty() || !dirtySince.containsKey(entityId)) {
+            // only characters, changed() already checked it
+            return;
+        }
+        journal.event(E.E(entityId).getName().text, serialize(components));
+    }
+
+    /**
+     * Remember that a component of the entity changed, the character will be saved by {@link #saveChanged(long, int)}.
+     * Only components saved in the charfile of characters count.
+     */
+    public void changed(int entityId, Class<? extends Component> type) {
+        if (!persisted.contains(type) || dirtySince.containsKey(entityId)) {
+            return;
+        }
+        E e = E.E(entityId);
+        if (e.hasCharacter() && e.hasName()) {
+            dirtySince.put(entityId, System.currentTimeMillis());
+        }
     }
 
+    /**
+     * Mark every character as changed, a safety net for the changes no one reported
+     */
+    public void changedAll() {
+        long now = System.currentTimeMillis();
+        E.withAspect(Aspect.all(Character.class)).forEach(e -> {
+            if (e.hasName()) {
+                dirtySince.putIfAbsent(e.id(), now);
+            }
+        });
+    }
+
+    /**
+     * Save characters that changed at least delay ms ago, oldest first, so many changes to a character become one write
+     *
+     * @param max characters to save in this call
+     */
+    public void saveChanged(long delay, int max) {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Integer, Long>> iterator = dirtySince.entrySet().iterator();
+        int saved = 0;
+        while (saved < max && iterator.hasNext()) {
+            Map.Entry<Integer, Long> entry = iterator.next();
+            if (now - entry.getValue() < delay) {
+                return;
+            }
+            E e = E.E(entry.getKey());
+            if (!e.hasCharacter() || !e.hasName()) {
+                iterator.remove();
+                continue;
+            }
+            String name = e.getName().text;
+            long sequence = journal.sequence();
+            if (!charfileWriter.offer(name, snapshot(e), CharacterSummary.of(name, e).write(), sequence)) {
+                // the writer is behind, try again later
+                return;
+            }
+            iterator.remove();
+            saved++;
+        }
+    }
+
+    /**
+     * Save now, for example when the user logs out
+     */
     public void save(E e) {
         boolean canSave = e.hasCharacter() && e.hasName();
         if (canSave) {
+            dirtySince.remove(e.id());
             String name = e.getName().text;
-            saveUser(name, e);
+            charfileWriter.put(name, snapshot(e), CharacterSummary.of(name, e).write(), journal.sequence());
         }
     }
 
@@ -116,39 +311,93 @@ public class UserSystem extends PassiveSystem {
         save(e);
     }
 
-    private void saveUser(String name) {
-        E user = E.withTag(name);
-        saveUser(name, user);
-    }
-
-    private void saveUser(String name, E user) {
-        executor.submit(() -> {
-            Collection<Component> components = componentSystem.getComponents(user.id(), ComponentSystem.Visibility.SERVER);
-            File userFile = new File("Charfile/" + name + ".json");
-            try (FileWriter writer = new FileWriter(userFile)) {
-                json.setWriter(writer);
-                entityJsonSerializer.write(json, components, null);
-            } catch (IOException e) {
-                e.printStackTrace();
-                Log.info("Failed to write charfile " + name);
-            }
-        });
+    /**
+     * Runs in the storage pool. Characters saved before there were summaries get one from the charfile, written by the
+     * {@link CharfileWriter} so it never overwrites the summary of a newer save.
+     *
+     * @return the summary of the character, or null if it doesn't exist
+     */
+    public CharacterSummary getSummary(String name) {
+        String pending = charfileWriter.pendingSummary(name);
+        if (pending != null) {
+            return CharacterSummary.read(pending);
+        }
+        Storage storage = storageSystem.getStorage();
+        String summary = storage.get(Storage.SUMMARIES, name);
+        if (summary != null) {
+            return CharacterSummary.read(summary);
+        }
+        String charfile = storage.get(Storage.CHARACTERS, name);
+        if (charfile == null) {
+            return null;
+        }
+        CharacterSummary fromCharfile = CharacterSummary.fromCharfile(name, charfile);
+        charfileWriter.putSummaryIfAbsent(name, fromCharfile.write());
+        return fromCharfile;
     }
 
-    private Future<Integer> loadUser(String name) {
-        return executor.submit(() -> {
-            File userFile = new File("Charfile/" + name + ".json");
-            // read components
-            try {
-                JsonValue jsonData = new JsonReader().parse(userFile);
-                Collection<? extends Component> components = entityJsonSerializer.read(json, jsonData, null);
-                // create user character in world
-                return entityFactorySystem.create(components);
-            } catch (Exception e) {
-                e.printStackTrace();
-                Log.info("Failed to retrieve user from json charfile");
-                return -1;
+    /**
+     * Wait until every saved character is written
+     */
+    public void flush() throws InterruptedException {
+        charfileWriter.flush();
+    }
+
+    /**
+     * Snapshot every character in the world, for the shutdown
+     *
+     * @return how many characters were saved
+     */
+    public int saveAll() {
+        int[] saved = {0};
+        E.withAspect(Aspect.all(Character.class)).forEach(e -> {
+            if (e.hasName()) {
+                save(e);
+                saved[0]++;
             }
         });
+        return saved[0];
+    }
+
+    /**
+     * Write everything saved in parallel on the storage pool, for the shutdown. Nothing can be saved after this.
+     *
+     * @return characters that weren't written in time or failed
+     */
+    public Collection<String> drain(long timeoutMillis) throws InterruptedException {
+        return charfileWriter.drain(loginPipelineSystem.getStorageExecutor(), timeoutMillis);
+    }
+
+    private void saveUser(String name) {
+        save(E.withTag(name));
+    }
+
+    // the components are serialized in the game thread, they can change as soon as it goes on
+    private String snapshot(E user) {
+        return serialize(componentSystem.getComponents(user.id(), ComponentSystem.Visibility.SERVER));
+    }
+
+    private String serialize(Collection<Component> components) {
+        StringWriter writer = new StringWriter();
+        json.setWriter(writer);
+        entityJsonSerializer.write(json, components, null);
+        return writer.toString();
+    }
+
+    /**
+     * Runs in the storage pool, the components are added to a new entity in the game thread
+     *
+     * @return null if the character doesn't exist
+     */
+    private Collection<? extends Component> loadUser(String name) {
+        // the last save may not be written yet
+        String pending = charfileWriter.pending(name);
+        String content = pending != null ? pending : storageSystem.getStorage().get(Storage.CHARACTERS, name);
+        if (content == null) {
+            return null;
+        }
+        // read components
+        JsonValue jsonData = new JsonReader().parse(content);
+        return entityJsonSerializer.read(readJson.get(), jsonData, null);
     }
 }
@@ -5,11 +5,14 @@ import com.artemis.annotations.Wire;
 import com.badlogic.gdx.utils.Array;
 import com.esotericsoftware.minlog.Log;
 import component.console.ConsoleMessage;
+import component.entity.npc.OriginPos;
 import component.position.WorldPos;
 import net.mostlyoriginal.api.system.core.PassiveSystem;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import server.systems.account.UserSystem;
 import server.systems.world.MapSystem;
+import server.systems.world.ShutdownSystem;
 import server.utils.CityMapsNumbers;
 import server.systems.world.WorldEntitiesSystem;
 import shared.network.interaction.TalkRequest;
@@ -18,6 +21,7 @@ import shared.util.Messages;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 import java.util.function.Consumer;
 
 @Wire
@@ -28,6 +32,8 @@ public class CommandSystem extends PassiveSystem {
     private MapSystem mapSystem;
     private WorldEntitiesSystem worldEntitiesSystem;
     private MessageSystem messageSystem;
+    private ShutdownSystem shutdownSystem;
+    private UserSystem userSystem;
 
     private final Map<String, Consumer<Command>> commands = new HashMap<>();
 
@@ -76,6 +82,7 @@ public class CommandSystem extends PassiveSystem {
             while ((i < capacity) && !homeSet) {
                 if (playerMap == cityMaps.get( i )){
                     player.originPosMap( playerMap ).originPosX( playerX ).originPosY( playerY );
+                    userSystem.changed( senderId, OriginPos.class );
                     messageSystem.add(senderId, ConsoleMessage.info("HOME_SET"));
                     homeSet = true;
                 }
@@ -100,6 +107,12 @@ public class CommandSystem extends PassiveSystem {
                 messageSystem.add( senderId, ConsoleMessage.info( "YOU_ARE_ALIVE" ) );
             }
         });
+        commands.put("shutdown", (command) -> {
+            E player = E.E(command.senderID);
+            if (player.isGM()) {
+                shutdownSystem.request("command from " + player.nameText());
+            }
+        });
         commands.put("tp", (command) -> {
             int senderID  = command.senderID;
             E player = E.E(senderID);
@@ -107,7 +120,10 @@ public class CommandSystem extends PassiveSystem {
             int x = Integer.parseInt(command.params[2]);
             int y = Integer.parseInt(command.params[3]);
             if (mapSystem.getHelper().isValid(new WorldPos(x, y, map))) {
+                WorldPos oldPos = new WorldPos(player.getWorldPos());
                 player.worldPosMap(map).worldPosX(x).worldPosY(y);
+                mapSystem.movePlayer(senderID, Optional.of(oldPos));
+                userSystem.changed(senderID, WorldPos.class);
                 EntityUpdateBuilder resetUpdate = EntityUpdateBuilder.of(senderID);
                 resetUpdate.withComponents(player.getWorldPos());
                 worldEntitiesSystem.notifyUpdate(senderID, resetUpdate.build());
@@ -4,6 +4,7 @@ import com.artemis.BaseSystem;
 import com.artemis.Component;
 import com.artemis.annotations.Wire;
 import com.esotericsoftware.minlog.Log;
+import server.systems.account.UserSystem;
 import server.systems.world.entity.factory.ComponentSystem;
 import server.systems.world.WorldEntitiesSystem;
 import server.utils.UpdateTo;
@@ -24,6 +25,7 @@ public class EntityUpdateSystem extends BaseSystem {
 
     private WorldEntitiesSystem worldEntitiesSystem;
     private ComponentSystem componentSystem;
+    private UserSystem userSystem;
 
     private final Map<Integer, Deque<EntityUpdate>> entityUpdates;
     private final Map<Integer, Deque<EntityUpdate>> publicUpdates;
@@ -55,6 +57,7 @@ public class EntityUpdateSystem extends BaseSystem {
 
     public void add(int entity, EntityUpdate update, UpdateTo updateTo) {
         Log.debug("Will add update: " + update.toString() + " " + updateTo.name());
+        changed(update);
         // search all updates of this update component.entity and remove them
         if (update instanceof RemoveEntity) {
             if (entityUpdates.containsKey(entity)) {
@@ -79,6 +82,23 @@ public class EntityUpdateSystem extends BaseSystem {
         }
     }
 
+    // every change sent to clients marks the character to be saved, even if the system that made it didn't
+    private void changed(EntityUpdate update) {
+        if (update.entityId == NO_ENTITY) {
+            return;
+        }
+        if (update.components != null) {
+            for (Component component : update.components) {
+                userSystem.changed(update.entityId, component.getClass());
+            }
+        }
+        if (update.toRemove != null) {
+            for (Class<? extends Component> type : update.toRemove) {
+                userSystem.changed(update.entityId, type);
+            }
+        }
+    }
+
     private void addUpdate(int entity, EntityUpdate update, Map<Integer, Deque<EntityUpdate>> updates) {
         updates.putIfAbsent(entity, new ConcurrentLinkedDeque<>());
         updates.computeIfPresent(entity, (id, idUpdates) -> {
@@ -0,0 +1,18 @@
+package server.systems.network;
+
+import com.artemis.BaseSystem;
+import com.artemis.annotations.Wire;
+
+/**
+ * Last system of the tick: writes everything queued for each connection as one packet.
+ */
+@Wire
+public class FlushSystem extends BaseSystem {
+
+    private ServerSystem serverSystem;
+
+    @Override
+    protected void processSystem() {
+        serverSystem.flush();
+    }
+}
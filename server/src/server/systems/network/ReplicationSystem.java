@@ -0,0 +1,132 @@
+package server.systems.network;
+
+import com.artemis.Component;
+import com.google.common.collect.Sets;
+import component.entity.character.states.Heading;
+import component.entity.world.CombatMessage;
+import component.entity.world.Dialog;
+import component.physics.AttackAnimation;
+import component.position.WorldPos;
+import component.position.WorldPosOffsets;
+import net.mostlyoriginal.api.system.core.PassiveSystem;
+import shared.network.notifications.ComponentDelta;
+import shared.network.notifications.EntityUpdate;
+import shared.network.notifications.RemoveEntity;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static shared.network.notifications.EntityUpdate.NO_ENTITY;
+
+/**
+ * Remembers the last state of each component sent to each player, so following updates only carry the fields that
+ * changed ({@link ComponentDelta}). Updates travel over TCP in order, so the last state sent is the state the client
+ * has.
+ */
+public class ReplicationSystem extends PassiveSystem {
+
+    // the client changes them while predicting movement, so they are always sent whole
+    private static final Set<Class<? extends Component>> PREDICTED = Sets.newHashSet(WorldPos.class, WorldPosOffsets.class, Heading.class);
+    // events, not state: the same one can happen twice, and the client runs their timers and removes them on its own
+    private static final Set<Class<? extends Component>> TRANSIENT = Sets.newHashSet(AttackAnimation.class, CombatMessage.class, Dialog.class);
+
+    private final Map<Integer, Map<Integer, Map<Class<? extends Component>, Component>>> baselines = new ConcurrentHashMap<>();
+
+    /**
+     * @param player receiver
+     * @param packet anything to send
+     * @return what to send instead of the packet, or null if the player already has everything in it
+     */
+    public Object compress(int player, Object packet) {
+        if (packet instanceof EntityUpdate) {
+            return compress(player, (EntityUpdate) packet);
+        } else if (packet instanceof EntityUpdate[]) {
+            List<EntityUpdate> updates = new ArrayList<>();
+            for (EntityUpdate update : (EntityUpdate[]) packet) {
+                EntityUpdate compressed = compress(player, update);
+                if (compressed != null) {
+                    updates.add(compressed);
+                }
+            }
+            return updates.isEmpty() ? null : updates.toArray(new EntityUpdate[0]);
+        }
+        return packet;
+    }
+
+    /**
+     * Forget everything sent to the player
+     */
+    public void forget(int player) {
+        baselines.remove(player);
+    }
+
+    private EntityUpdate compress(int player, EntityUpdate update) {
+        if (update.entityId == NO_ENTITY) {
+            return update;
+        }
+        Map<Integer, Map<Class<? extends Component>, Component>> entities = baselines.computeIfAbsent(player, id -> new HashMap<>());
+        if (update instanceof RemoveEntity) {
+            entities.remove(update.entityId);
+            return update;
+        }
+        Map<Class<? extends Component>, Component> known = entities.computeIfAbsent(update.entityId, id -> new HashMap<>());
+        List<Component> components = new ArrayList<>();
+        List<ComponentDelta> deltas = new ArrayList<>();
+        if (update.components != null) {
+            for (Component component : update.components) {
+                Class<? extends Component> type = component.getClass();
+                if (PREDICTED.contains(type) || TRANSIENT.contains(type) || !ComponentDelta.supports(type)) {
+                    components.add(component);
+                    continue;
+                }
+                Component baseline = known.get(type);
+                if (baseline == null) {
+                    components.add(component);
+                    known.put(type, ComponentDelta.copy(component));
+                    continue;
+                }
+                ComponentDelta delta = ComponentDelta.diff(baseline, component);
+                if (delta != null) {
+                    deltas.add(delta);
+                    delta.apply(baseline);
+                }
+            }
+        }
+        boolean removes = update.toRemove != null && update.toRemove.length > 0;
+        if (removes) {
+            for (Class<? extends Component> type : update.toRemove) {
+                known.remove(type);
+            }
+        }
+        if (components.isEmpty() && deltas.isEmpty() && !removes) {
+            return null;
+        }
+        // empty arrays are sent as null, it's cheaper
+        EntityUpdate compressed = new EntityUpdate(update.entityId, components.isEmpty() ? null : components.toArray(new Component[0]), removes ? update.toRemove : null);
+        compressed.deltas = deltas.isEmpty() ? null : deltas.toArray(new ComponentDelta[0]);
+        return compressed;
+    }
+
+    /**
+     * Two compressed packets with the same key are the same bytes: full components are shared instances and deltas
+     * compare by value.
+     */
+    public static Object key(Object packet) {
+        if (packet instanceof EntityUpdate) {
+            EntityUpdate update = (EntityUpdate) packet;
+            return Arrays.asList(update.getClass(), update.entityId, nullableList(update.components),
+                    nullableList(update.toRemove), nullableList(update.deltas));
+        } else if (packet instanceof EntityUpdate[]) {
+            List<Object> keys = new ArrayList<>();
+            for (EntityUpdate update : (EntityUpdate[]) packet) {
+                keys.add(key(update));
+            }
+            return keys;
+        }
+        return packet;
+    }
+
+    private static List<Object> nullableList(Object[] array) {
+        return array == null ? Collections.emptyList() : Arrays.asList(array);
+    }
+}
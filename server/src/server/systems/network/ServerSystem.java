@@ -6,6 +6,7 @@ import com.esotericsoftware.minlog.Log;
 import net.mostlyoriginal.api.network.marshal.common.MarshalStrategy;
 import net.mostlyoriginal.api.network.system.MarshalSystem;
 import server.configs.ServerConfiguration;
+import server.core.PacketLossSimulator;
 import server.core.ServerStrategy;
 import server.systems.config.ConfigurationSystem;
 import server.systems.world.MapSystem;
@@ -13,15 +14,29 @@ import server.systems.world.WorldEntitiesSystem;
 import shared.network.init.NetworkDictionary;
 import shared.network.interfaces.INotification;
 import shared.network.interfaces.IRequest;
+import shared.network.notifications.Datagram;
+import shared.network.notifications.EncodedMessage;
+import shared.network.notifications.Frame;
+import shared.network.user.UserContinueRequest;
+import shared.network.user.UserCreateRequest;
+import shared.network.user.UserLoginRequest;
 
-import java.util.Deque;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
 
 @Wire
 public class ServerSystem extends MarshalSystem {
 
+    // serialized bytes per frame, so a few frames fit the kryonet write buffer
+    private static final int MAX_FRAME_BYTES = 4096;
+    // keeps datagrams far below the kryonet object buffer and the usual MTU
+    private static final int MAX_DATAGRAM_BYTES = 1024;
+    // class id of each message inside a frame or datagram
+    private static final int MESSAGE_OVERHEAD = 2;
+
     // Injected Systems
     private MapSystem mapSystem;
     private ServerNotificationProcessor notificationProcessor;
@@ -30,8 +45,12 @@ public class ServerSystem extends MarshalSystem {
     private ConfigurationSystem configurationSystem;
 
     private Deque<NetworkJob> netQueue = new ConcurrentLinkedDeque<>();
+    // requests that put a user in the world, held until it is ready
+    private Deque<NetworkJob> waitingWorld = new ArrayDeque<>();
     private Map<Integer, Integer> playerByConnection = new ConcurrentHashMap<>();
     private Map<Integer, Integer> connectionByPlayer = new ConcurrentHashMap<>();
+    private Map<Integer, Queue<Object>> outboxes = new ConcurrentHashMap<>();
+    private Map<Integer, UnreliableOutbox> unreliableOutboxes = new ConcurrentHashMap<>();
 
     public ServerSystem() {
         super(new NetworkDictionary(), new ServerStrategy());
@@ -41,8 +60,13 @@ public class ServerSystem extends MarshalSystem {
     protected void initialize() {
         MarshalStrategy marshal = getMarshal();
         if (marshal instanceof ServerStrategy) {
-            ServerConfiguration.Network.Ports ports = configurationSystem.getServerConfig().getNetwork().getPorts();
+            ServerConfiguration.Network network = configurationSystem.getServerConfig().getNetwork();
+            ServerConfiguration.Network.Ports ports = network.getPorts();
             ((ServerStrategy) marshal).prepare(ports.getTcpPort(), ports.getUdpPort());
+            if (network.getPacketLoss() > 0 || network.getPacketReorder() > 0) {
+                Log.warn("Network", "Simulating UDP packet loss: " + network.getPacketLoss() + ", reorder: " + network.getPacketReorder());
+                ((ServerStrategy) marshal).simulate(new PacketLossSimulator(network.getPacketLoss(), network.getPacketReorder()));
+            }
         }
         start();
     }
@@ -69,14 +93,37 @@ public class ServerSystem extends MarshalSystem {
     @Override
     protected void processSystem() {
         super.processSystem();
+        boolean worldReady = mapSystem.isReady();
+        while (worldReady && !waitingWorld.isEmpty()) {
+            processJob(waitingWorld.poll());
+        }
         while (netQueue.peek() != null) {
-            processJob(netQueue.poll());
+            NetworkJob job = netQueue.poll();
+            if (!worldReady && entersWorld(job.receivedObject)) {
+                Log.info("Network", "World is loading, connection " + job.connectionId + " will enter when it is ready");
+                waitingWorld.add(job);
+            } else {
+                processJob(job);
+            }
         }
     }
 
+    private boolean entersWorld(Object request) {
+        return request instanceof UserLoginRequest || request instanceof UserContinueRequest || request instanceof UserCreateRequest;
+    }
+
+    @Override
+    public void connected(int connectionId) {
+        super.connected(connectionId);
+        outboxes.put(connectionId, new ConcurrentLinkedQueue<>());
+        unreliableOutboxes.put(connectionId, new UnreliableOutbox());
+    }
+
     @Override
     public void disconnected(int connectionId) {
         super.disconnected(connectionId);
+        outboxes.remove(connectionId);
+        unreliableOutboxes.remove(connectionId);
         if (connectionHasNoPlayer(connectionId)) {
             return;
         }
@@ -86,16 +133,107 @@ public class ServerSystem extends MarshalSystem {
     }
 
     /**
-     * Object will be serialized and sent using kryo
+     * Object will be queued for the connection and sent with everything else queued in this tick, see {@link #flush()}.
+     * It is serialized now, so changes to it later in the tick are not sent. Connections that already left are skipped.
      *
      * @param id     connection ID
      * @param packet Object to send
      */
     public void sendTo(int id, Object packet) {
+        Queue<Object> outbox = outboxes.get(id);
+        if (outbox == null) {
+            Log.debug("Network", "Connection " + id + " is gone, dropping " + packet);
+            return;
+        }
+        if (packet instanceof INotification[]) {
+            for (INotification notification : (INotification[]) packet) {
+                outbox.add(snapshot(notification));
+            }
+        } else {
+            outbox.add(snapshot(packet));
+        }
+    }
+
+    /**
+     * Object will be sent over UDP in the next {@link #flush()}, in a {@link Datagram}. It may never arrive, so only use
+     * it for updates that replace the previous one (see {@link Datagram#isUnreliable(Object)}).
+     *
+     * @param id     connection ID
+     * @param packet Object to send
+     */
+    public void sendUnreliable(int id, Object packet) {
+        UnreliableOutbox outbox = unreliableOutboxes.get(id);
+        if (outbox != null) {
+            outbox.queue.add(snapshot(packet));
+        }
+    }
+
+    // serialized as it is now, see encode
+    private Object snapshot(Object packet) {
+        return packet instanceof EncodedMessage ? packet : encode(packet);
+    }
+
+    // bytes of the message in a frame, messages that couldn't be encoded go alone
+    private static int size(Object message, int max) {
+        return message instanceof EncodedMessage ? ((EncodedMessage) message).length + MESSAGE_OVERHEAD : max;
+    }
+
+    /**
+     * Object will be serialized and sent using kryo right away
+     *
+     * @param id     connection ID
+     * @param packet Object to send
+     */
+    public void sendNow(int id, Object packet) {
         ServerStrategy marshal = (ServerStrategy) getMarshal();
         marshal.sendTo(id, packet);
     }
 
+    /**
+     * Send one packet per connection with everything queued since last flush (split every {@link #MAX_FRAME_BYTES}
+     * so it fits kryonet buffers)
+     */
+    public void flush() {
+        List<Object> messages = new ArrayList<>();
+        outboxes.forEach((connection, outbox) -> {
+            drain(outbox, messages, MAX_FRAME_BYTES, frame ->
+                    sendNow(connection, frame.size() == 1 ? frame.get(0) : new Frame(frame.toArray())));
+        });
+        ServerStrategy marshal = (ServerStrategy) getMarshal();
+        unreliableOutboxes.forEach((connection, outbox) -> {
+            drain(outbox.queue, messages, MAX_DATAGRAM_BYTES, datagram ->
+                    marshal.sendUnreliable(connection, new Datagram(++outbox.sequence, datagram.toArray())));
+        });
+        marshal.freeEncoded();
+    }
+
+    // group the queued messages in packets of up to max bytes
+    private static void drain(Queue<Object> outbox, List<Object> packet, int max, Consumer<List<Object>> send) {
+        packet.clear();
+        int bytes = 0;
+        Object message;
+        while ((message = outbox.poll()) != null) {
+            int size = size(message, max);
+            if (!packet.isEmpty() && bytes + size > max) {
+                send.accept(packet);
+                packet.clear();
+                bytes = 0;
+            }
+            packet.add(message);
+            bytes += size;
+        }
+        if (!packet.isEmpty()) {
+            send.accept(packet);
+        }
+    }
+
+    /**
+     * Serialize the packet once to send it to many connections, see {@link ServerStrategy#encode(Object)}
+     */
+    public Object encode(Object packet) {
+        return ((ServerStrategy) getMarshal()).encode(packet);
+    }
+
     public void registerUserConnection(int playerId, int connectionId) {
         playerByConnection.put(connectionId, playerId);
         connectionByPlayer.put(playerId, connectionId);
@@ -108,6 +246,17 @@ public class ServerSystem extends MarshalSystem {
         }
     }
 
+    /**
+     * @return false if the client left, for example while its login was being processed
+     */
+    public boolean isConnected(int connectionId) {
+        return ((ServerStrategy) getMarshal()).isConnected(connectionId);
+    }
+
+    public void stopAccepting() {
+        ((ServerStrategy) getMarshal()).stopAccepting();
+    }
+
     public boolean connectionHasNoPlayer(int connectionId) {
         return !playerByConnection.containsKey(connectionId);
     }
@@ -130,6 +279,12 @@ public class ServerSystem extends MarshalSystem {
 
 }
 
+final class UnreliableOutbox {
+
+    final Queue<Object> queue = new ConcurrentLinkedQueue<>();
+    int sequence;
+}
+
 final class NetworkJob {
 
     final int connectionId;
@@ -2,22 +2,27 @@ package server.systems.world;
 
 import com.artemis.E;
 import com.artemis.annotations.Wire;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.IntSet;
 import com.badlogic.gdx.utils.TimeUtils;
+import com.esotericsoftware.minlog.Log;
 import component.position.WorldPos;
 import net.mostlyoriginal.api.system.core.PassiveSystem;
+import server.systems.world.entity.ai.DormancySystem;
 import server.systems.world.entity.factory.ComponentSystem;
 import server.systems.world.entity.factory.EntityFactorySystem;
 import server.systems.network.ServerSystem;
 import server.systems.network.EntityUpdateSystem;
 import server.utils.UpdateTo;
-import shared.model.map.Tile;
 import shared.network.notifications.EntityUpdate;
 import shared.util.EntityUpdateBuilder;
 import shared.util.MapHelper;
+import shared.util.WorldTopology;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
 
 import static com.artemis.E.E;
 import static shared.util.MapHelper.CacheStrategy.NEVER_EXPIRE;
@@ -33,11 +38,16 @@ public class MapSystem extends PassiveSystem {
     private EntityFactorySystem entityFactorySystem;
     private ComponentSystem componentSystem;
     private ServerSystem serverSystem;
+    private DormancySystem dormancySystem;
 
     private MapHelper helper;
     private Map<Integer, Set<Integer>> nearEntities = new ConcurrentHashMap<>();
-    private Map<Integer, Set<Integer>> entitiesByMap = new ConcurrentHashMap<>();
-    private Map<Integer, Set<Integer>> entitiesFootprints = new ConcurrentHashMap<>();
+    private SpatialIndex spatialIndex = new SpatialIndex();
+    private TileOccupancy occupancy = new TileOccupancy(spatialIndex, entity -> E(entity).hasObject());
+    private TargetAcquisition targets = new TargetAcquisition(spatialIndex, this::isTarget);
+    private IntMap<InterestCells> interestCells = new IntMap<>();
+    private PositionHistory positionHistory = new PositionHistory();
+    private volatile boolean ready;
 
     public MapSystem() {
         helper = MapHelper.instance(NEVER_EXPIRE);
@@ -54,31 +64,30 @@ public class MapSystem extends PassiveSystem {
     @Override
     public void initialize() {
         super.initialize();
-        // create NPCs
-        helper.getMaps().forEach(this::initTiles);
+        // ready once every map is loaded, in the game thread. NPCs are created by NPCPopulationSystem when players get close
+        helper.loadAll().whenComplete((result, error) -> {
+            if (error != null) {
+                Log.error("Server initialization", "Maps failed to load, the world will never be ready", error);
+                return;
+            }
+            Gdx.app.postRunnable(this::populate);
+        });
     }
 
-    private void initTiles(int num, shared.model.map.Map map) {
-        Tile[][] mapTiles = map.getTiles();
-        for (int x = 0; x < mapTiles.length; x++) {
-            for (int y = 0; y < mapTiles[x].length; y++) {
-                if (mapTiles[x][y] != null) {
-                    int npcIndex = mapTiles[x][y].getNpcIndex();
-                    WorldPos pos = new WorldPos(x, y, num);
-                    if (npcIndex > 0) {
-                        createNPC(npcIndex, pos);
-                    }
-                }
-            }
-        }
+    private void populate() {
+        ready = true;
+        Log.info("Server initialization", "World ready");
     }
 
-    private void createObject(int objIndex, int objCount, WorldPos pos) {
-        entityFactorySystem.createObject(objIndex, objCount, pos);
+    /**
+     * @return true once every map is loaded. Users can't enter the world before that
+     */
+    public boolean isReady() {
+        return ready;
     }
 
-    private void createNPC(int npcIndex, WorldPos pos) {
-        entityFactorySystem.createNPC(npcIndex, pos);
+    private void createObject(int objIndex, int objCount, WorldPos pos) {
+        entityFactorySystem.createObject(objIndex, objCount, pos);
     }
 
     public MapHelper getHelper() {
@@ -95,13 +104,9 @@ public class MapSystem extends PassiveSystem {
     }
 
     public Set<Integer> getEntities(WorldPos pos) {
-        return entitiesByMap.get(pos.map)
-                .stream()
-                .map(E::E)
-                .filter(E::hasWorldPos)
-                .filter(e -> e.getWorldPos().equals(pos))
-                .map(E::id)
-                .collect(Collectors.toSet());
+        Set<Integer> entities = new HashSet<>();
+        spatialIndex.query(pos.map, pos.x, pos.y, pos.x, pos.y, entities::add);
+        return entities;
     }
 
     /**
@@ -109,12 +114,40 @@ public class MapSystem extends PassiveSystem {
      * @return a set of entities in current map
      */
     public Set<Integer> getEntitiesInMap(int map) {
-        return entitiesByMap.computeIfAbsent(map, i -> new HashSet<>());
+        Set<Integer> entities = new HashSet<>();
+        spatialIndex.forEach(map, entities::add);
+        return entities;
     }
 
+    public SpatialIndex getSpatialIndex() {
+        return spatialIndex;
+    }
 
     /**
-     * Move entity to current position, leaving old relations if goes out of range
+     * @return which entity stands on each tile
+     */
+    public TileOccupancy getOccupancy() {
+        return occupancy;
+    }
+
+    /**
+     * @return target of each NPC, from the players around it
+     */
+    public TargetAcquisition getTargets() {
+        return targets;
+    }
+
+    // living characters can be chased and attacked by NPCs
+    private boolean isTarget(int entity) {
+        E e = E(entity);
+        return e != null && e.isCharacter() && e.hasWorldPos() && e.healthMin() != 0;
+    }
+
+
+    /**
+     * Move entity to current position, leaving old relations if goes out of range.
+     * A step of one tile only checks the entities standing in the cells at the edge of the near range, see
+     * {@link #updateEntity(int)}.
      *
      * @param player     player id
      * @param previusPos previus position in case its moving, empty if is a new position
@@ -125,22 +158,8 @@ public class MapSystem extends PassiveSystem {
             if (it.equals(actualPos)) {
                 return;
             }
-            //create footprint
-            final int footprintId = world.create();
-            E(footprintId).footprintEntityId(player);
-            E(footprintId).worldPosMap(it.map);
-            E(footprintId).worldPosX(it.x);
-            E(footprintId).worldPosY(it.y);
-            E(footprintId).footprintTimestamp(TimeUtils.millis());
-            entitiesFootprints.computeIfAbsent(player, (playerId) -> new HashSet<>()).add(footprintId);
-
-            if (it.map != actualPos.map) {
-                getEntitiesInMap(it.map).remove(player);
-            }
-            if (nearEntities.containsKey(player)) {
-                Set<Integer> near = new HashSet<>(nearEntities.get(player));
-                near.forEach(nearEntity -> removeNearEntity(player, nearEntity));
-            }
+            positionHistory.record(player, it, TimeUtils.millis());
+
         });
         updateEntity(player);
     }
@@ -155,98 +174,136 @@ public class MapSystem extends PassiveSystem {
         if (e == null || !e.hasWorldPos()) {
             return;
         }
-        final WorldPos worldPos = e.getWorldPos();
-        int map = worldPos.map;
         // remove from near entities
         nearEntities.computeIfPresent(entity, (player, removeFrom) -> {
             removeFrom.forEach(nearEntity -> unlinkEntities(nearEntity, entity));
             return null;
         });
-        entitiesByMap.get(map).remove(entity);
+        spatialIndex.remove(entity);
+        occupancy.remove(entity);
+        positionHistory.remove(entity);
+        targets.forget(entity);
     }
 
     /**
-     * Add component.entity to map and calculate near entities
+     * Add component.entity to map and calculate near entities.
+     * Two entities are near when {@link MapHelper#isNear(WorldPos, WorldPos)} (a symmetric relation), and only the
+     * entities in the cells seen from the cell of the entity ({@link #getInterestCells(int)}) can be near.
+     * A step of one tile in the same map changes the distance to everyone by one, so only the entities at the edge of
+     * the near range can become near or stop being near: we only check the cells that cross that edge. Any other move
+     * (a new entity, a teleport, another map) unlinks the ones that are not near anymore and checks every interest cell.
      *
      * @param player id
      */
     void updateEntity(int player) {
         WorldPos pos = E(player).getWorldPos();
-        int map = pos.map;
-        Set<Integer> entities = entitiesByMap.computeIfAbsent(map, (it) -> new HashSet<>());
-        Set<Integer> candidates = new HashSet<>(entities);
-        candidates.addAll(getNearMapsEntities(pos));
-        entities.add(player);
-        candidates.stream()
-                .filter(entity -> entity != player)
-                .forEach(entity -> addNearEntities(player, entity));
-    }
-
-    // TODO improve performance
-    private Collection<? extends Integer> getNearMapsEntities(WorldPos pos) {
-        Set<Integer> result = new HashSet<>();
-        shared.model.map.Map map = helper.getMap(pos.map);
-        if (pos.x > map.getWidth() / 2) {
-            int rightMap = helper.getMap(MapHelper.Dir.RIGHT, map);
-            result.addAll(getEntitiesInMap(rightMap));
-            addNearCorners(pos, result, rightMap);
-        } else {
-            int leftMap = helper.getMap(MapHelper.Dir.LEFT, map);
-            result.addAll(getEntitiesInMap(leftMap));
-            addNearCorners(pos, result, leftMap);
-        }
-        addNearUpOrDown(pos, result, map);
-        return result;
-    }
-
-    private void addNearUpOrDown(WorldPos pos, Set<Integer> result, shared.model.map.Map map) {
-        if (pos.y > map.getHeight() / 2) {
-            int bottom = helper.getMap(MapHelper.Dir.DOWN, map);
-            if (bottom > 0) {
-                result.addAll(getEntitiesInMap(bottom));
+        int oldMap = spatialIndex.getMap(player);
+        int steps = Math.abs(spatialIndex.getX(player) - pos.x) + Math.abs(spatialIndex.getY(player) - pos.y);
+        spatialIndex.update(player, pos.map, pos.x, pos.y);
+        occupancy.update(player, pos.map, pos.x, pos.y);
+        InterestCells interest = getInterestCells(spatialIndex.getCell(player));
+        if (oldMap == pos.map && steps <= 1) {
+            if (steps == 1) {
+                for (int i = 0; i < interest.cells.size; i++) {
+                    if (interest.atEdge(i, pos.x, pos.y)) {
+                        spatialIndex.forEachInCell(interest.cells.get(i), entity -> relink(player, pos, entity));
+                    }
+                }
             }
-        } else {
-            int top = helper.getMap(MapHelper.Dir.UP, map);
-            if (top > 0) {
-                result.addAll(getEntitiesInMap(top));
+            return;
+        }
+        Set<Integer> near = nearEntities.get(player);
+        if (near != null) {
+            for (Integer entity : new ArrayList<>(near)) {
+                if (!isNear(pos, entity)) {
+                    unlinkEntities(player, entity);
+                    unlinkEntities(entity, player);
+                }
             }
         }
+        for (int i = 0; i < interest.cells.size; i++) {
+            spatialIndex.forEachInCell(interest.cells.get(i), entity -> relink(player, pos, entity));
+        }
+        if (oldMap != pos.map && E(player).isCharacter()) {
+            dormancySystem.wake(pos.map);
+        }
     }
 
-    private void addNearCorners(WorldPos pos, Set<Integer> result, int mapNumber) {
-        if (mapNumber <= 0) {
+    // link or unlink the pair if it is not what their distance says
+    private void relink(int player, WorldPos pos, int entity) {
+        if (entity == player) {
             return;
         }
-        shared.model.map.Map map = helper.getMap(mapNumber);
-        addNearUpOrDown(pos, result, map);
+        Set<Integer> linked = nearEntities.get(player);
+        boolean wasNear = linked != null && linked.contains(entity);
+        boolean near = isNear(pos, entity);
+        if (near && !wasNear) {
+            linkEntities(player, entity);
+            linkEntities(entity, player);
+        } else if (!near && wasNear) {
+            unlinkEntities(player, entity);
+            unlinkEntities(entity, player);
+        }
     }
 
+    private boolean isNear(WorldPos pos, int entity) {
+        E e = E(entity);
+        return e != null && e.hasWorldPos() && helper.isNear(pos, e.getWorldPos());
+    }
 
     /**
-     * Link entity1 and entity2 if they are in near range
-     *
-     * @param entity1 id
-     * @param entity2 id
+     * Cells that can have entities near the given cell: the ones inside the cell grown by the near range in the same map and the ones
+     * inside the same area translated to the neighbour maps (including corners). Cached, since it only depends on the
+     * world layout.
      */
-    private void addNearEntities(int entity1, int entity2) {
-        WorldPos worldPos1 = E(entity2).getWorldPos();
-        WorldPos worldPos2 = E(entity1).getWorldPos();
-        if (helper.isNear(worldPos1, worldPos2)) {
-            linkEntities(entity1, entity2);
-            linkEntities(entity2, entity1);
+    private InterestCells getInterestCells(int cell) {
+        InterestCells cells = interestCells.get(cell);
+        if (cells != null) {
+            return cells;
         }
+        cells = new InterestCells();
+        final int range = MapHelper.NEAR_MAX_DISTNACE - 1;
+        final int mapWidth = WorldTopology.MAP_WIDTH;
+        final int mapHeight = WorldTopology.MAP_HEIGHT;
+        final int x0 = SpatialIndex.getCellX(cell) - range;
+        final int y0 = SpatialIndex.getCellY(cell) - range;
+        final int x1 = SpatialIndex.getCellX(cell) + SpatialIndex.CELL_SIZE - 1 + range;
+        final int y1 = SpatialIndex.getCellY(cell) + SpatialIndex.CELL_SIZE - 1 + range;
+        int mapNumber = SpatialIndex.getCellMap(cell);
+        addCells(cells, mapNumber, x0, y0, x1, y1, 0, 0);
+
+        shared.model.map.Map map = helper.getMap(mapNumber);
+        if (map != null) {
+            int left = helper.getMap(MapHelper.Dir.LEFT, map);
+            int right = helper.getMap(MapHelper.Dir.RIGHT, map);
+            addCells(cells, left, x0, y0, x1, y1, mapWidth, 0);
+            addCells(cells, right, x0, y0, x1, y1, -mapWidth, 0);
+            addCells(cells, helper.getMap(MapHelper.Dir.UP, map), x0, y0, x1, y1, 0, mapHeight);
+            addCells(cells, helper.getMap(MapHelper.Dir.DOWN, map), x0, y0, x1, y1, 0, -mapHeight);
+            // corners
+            if (left > 0) {
+                shared.model.map.Map leftMap = helper.getMap(left);
+                addCells(cells, helper.getMap(MapHelper.Dir.UP, leftMap), x0, y0, x1, y1, mapWidth, mapHeight);
+                addCells(cells, helper.getMap(MapHelper.Dir.DOWN, leftMap), x0, y0, x1, y1, mapWidth, -mapHeight);
+            }
+            if (right > 0) {
+                shared.model.map.Map rightMap = helper.getMap(right);
+                addCells(cells, helper.getMap(MapHelper.Dir.UP, rightMap), x0, y0, x1, y1, -mapWidth, mapHeight);
+                addCells(cells, helper.getMap(MapHelper.Dir.DOWN, rightMap), x0, y0, x1, y1, -mapWidth, -mapHeight);
+            }
+        }
+        interestCells.put(cell, cells);
+        return cells;
     }
 
     /**
-     * Unlink entities if they are out of range
+     * Add the cells of the map inside the area, given in tiles of the map of the entity
      *
-     * @param player1 id
-     * @param player2 id
+     * @param shiftX what to add to a tile of the map of the entity to get the same tile in the map
      */
-    private void removeNearEntity(int player1, int player2) {
-        if (!helper.isNear(E(player2).getWorldPos(), E(player1).getWorldPos())) {
-            unlinkEntities(player1, player2);
-            unlinkEntities(player2, player1);
+    private void addCells(InterestCells cells, int map, int x0, int y0, int x1, int y1, int shiftX, int shiftY) {
+        if (map > 0) {
+            SpatialIndex.forEachCell(map, x0 + shiftX, y0 + shiftY, x1 + shiftX, y1 + shiftY, added -> cells.add(added, shiftX, shiftY));
         }
     }
 
@@ -281,7 +338,44 @@ public class MapSystem extends PassiveSystem {
         }
     }
 
-    public Map<Integer, Set<Integer>> getEntitiesFootprints() {
-        return entitiesFootprints;
+    /**
+     * @return positions recently left by each entity
+     */
+    public PositionHistory getPositionHistory() {
+        return positionHistory;
+    }
+
+    /**
+     * Interest cells of a cell, with the shift from the map of that cell to the map of each one
+     */
+    private static class InterestCells {
+        private final IntSet added = new IntSet();
+        private final IntArray cells = new IntArray();
+        private final IntArray shiftX = new IntArray();
+        private final IntArray shiftY = new IntArray();
+
+        private void add(int cell, int x, int y) {
+            if (added.add(cell)) {
+                cells.add(cell);
+                shiftX.add(x);
+                shiftY.add(y);
+            }
+        }
+
+        /**
+         * @return true if the cell has tiles at the edge of the near range of the position: an entity there can become
+         * near or stop being near after a step of one tile. One tile of margin, distances across maps come from the
+         * topology.
+         */
+        private boolean atEdge(int i, int x, int y) {
+            int cell = cells.get(i);
+            int x0 = SpatialIndex.getCellX(cell) - shiftX.get(i);
+            int y0 = SpatialIndex.getCellY(cell) - shiftY.get(i);
+            int x1 = x0 + SpatialIndex.CELL_SIZE - 1;
+            int y1 = y0 + SpatialIndex.CELL_SIZE - 1;
+            int closest = Math.max(0, Math.max(x0 - x, x - x1)) + Math.max(0, Math.max(y0 - y, y - y1));
+            int farthest = Math.max(Math.abs(x - x0), Math.abs(x - x1)) + Math.max(Math.abs(y - y0), Math.abs(y - y1));
+            return closest <= MapHelper.NEAR_MAX_DISTNACE + 1 && farthest >= MapHelper.NEAR_MAX_DISTNACE - 2;
+        }
     }
 }
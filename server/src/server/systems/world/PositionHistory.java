@@ -0,0 +1,125 @@
+package server.systems.world;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntIntMap;
+import component.position.WorldPos;
+
+import java.util.Arrays;
+
+/**
+ * Last positions left by each moving entity and when it left them, kept in a fixed size ring per entity.
+ * All rings share the same primitive arrays, so recording a step doesn't allocate.
+ * Used to compensate latency when someone attacks the tile an entity just left.
+ */
+public class PositionHistory {
+
+    public static final int CAPACITY = 8;
+    private static final int NO_SLOT = -1;
+
+    private final IntIntMap slotByEntity = new IntIntMap();
+    private final IntArray freeSlots = new IntArray();
+    private int slots;
+    private int[] maps = new int[0];
+    private int[] xs = new int[0];
+    private int[] ys = new int[0];
+    private long[] timestamps = new long[0];
+    private int[] heads = new int[0];
+    private int[] sizes = new int[0];
+
+    /**
+     * Record that the entity left the position at the given time.
+     */
+    public void record(int entity, WorldPos left, long timestamp) {
+        int slot = slotByEntity.get(entity, NO_SLOT);
+        if (slot == NO_SLOT) {
+            slot = allocate();
+            slotByEntity.put(entity, slot);
+        }
+        int head = heads[slot];
+        int index = slot * CAPACITY + head;
+        maps[index] = left.map;
+        xs[index] = left.x;
+        ys[index] = left.y;
+        timestamps[index] = timestamp;
+        heads[slot] = (head + 1) % CAPACITY;
+        sizes[slot] = Math.min(sizes[slot] + 1, CAPACITY);
+    }
+
+    public void remove(int entity) {
+        int slot = slotByEntity.remove(entity, NO_SLOT);
+        if (slot != NO_SLOT) {
+            freeSlots.add(slot);
+        }
+    }
+
+    /**
+     * @return true if the entity left the position at since or later
+     */
+    public boolean wasAt(int entity, WorldPos pos, long since) {
+        int slot = slotByEntity.get(entity, NO_SLOT);
+        if (slot == NO_SLOT) {
+            return false;
+        }
+        for (int i = 1; i <= sizes[slot]; i++) {
+            int index = index(slot, i);
+            if (timestamps[index] < since) {
+                return false;
+            }
+            if (maps[index] == pos.map && xs[index] == pos.x && ys[index] == pos.y) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Where was the entity at the given time: the first position it left after that moment.
+     *
+     * @param current position of the entity now, returned if it didn't move since then
+     * @return the position, or null if the history doesn't go back that far
+     */
+    public WorldPos getPosition(int entity, long timestamp, WorldPos current) {
+        int slot = slotByEntity.get(entity, NO_SLOT);
+        if (slot == NO_SLOT) {
+            return current;
+        }
+        WorldPos position = current;
+        for (int i = 1; i <= sizes[slot]; i++) {
+            int index = index(slot, i);
+            if (timestamps[index] <= timestamp) {
+                return position;
+            }
+            position = new WorldPos(xs[index], ys[index], maps[index]);
+        }
+        // all the recorded moves happened after timestamp, only the oldest one is certain if the ring is not full
+        return sizes[slot] < CAPACITY ? position : null;
+    }
+
+    /**
+     * @param age 1 for the last position left, 2 for the one before...
+     */
+    private int index(int slot, int age) {
+        return slot * CAPACITY + (heads[slot] - age + CAPACITY) % CAPACITY;
+    }
+
+    private int allocate() {
+        int slot;
+        if (freeSlots.size > 0) {
+            slot = freeSlots.pop();
+        } else {
+            slot = slots++;
+            if (slot >= heads.length) {
+                int capacity = Math.max(16, heads.length * 2);
+                heads = Arrays.copyOf(heads, capacity);
+                sizes = Arrays.copyOf(sizes, capacity);
+                maps = Arrays.copyOf(maps, capacity * CAPACITY);
+                xs = Arrays.copyOf(xs, capacity * CAPACITY);
+                ys = Arrays.copyOf(ys, capacity * CAPACITY);
+                timestamps = Arrays.copyOf(timestamps, capacity * CAPACITY);
+            }
+        }
+        heads[slot] = 0;
+        sizes[slot] = 0;
+        return slot;
+    }
+}
@@ -0,0 +1,126 @@
+package server.systems.world;
+
+import com.artemis.BaseSystem;
+import com.artemis.annotations.Wire;
+import com.badlogic.gdx.Gdx;
+import com.esotericsoftware.minlog.Log;
+import server.systems.account.UserSystem;
+import server.systems.network.ServerSystem;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops the server in order: new connections are refused, the world stops ticking, every character is saved and
+ * written in parallel within a deadline, and then the sockets are closed. It can be requested from any thread
+ * ({@link #request(String)}), for example a shutdown hook or a command, and it runs in the next tick, on the game thread.
+ */
+@Wire
+public class ShutdownSystem extends BaseSystem {
+
+    public static final long DEFAULT_DEADLINE = TimeUnit.SECONDS.toMillis(20);
+
+    private ServerSystem serverSystem;
+    private UserSystem userSystem;
+    private final long deadline;
+    private volatile String reason;
+    private volatile Report report;
+
+    public ShutdownSystem() {
+        this(DEFAULT_DEADLINE);
+    }
+
+    /**
+     * @param deadline ms to wait for the characters to be written
+     */
+    public ShutdownSystem(long deadline) {
+        this.deadline = deadline;
+    }
+
+    public synchronized void request(String reason) {
+        if (this.reason == null) {
+            Log.info("Shutdown", "Shutdown requested: " + reason);
+            this.reason = reason;
+        }
+    }
+
+    /**
+     * @return true once the shutdown ran, the world must not be processed anymore
+     */
+    public boolean isStopped() {
+        return report != null;
+    }
+
+    /**
+     * @return what happened in the shutdown, or null if it didn't run yet
+     */
+    public Report getReport() {
+        return report;
+    }
+
+    @Override
+    protected boolean checkProcessing() {
+        return reason != null && report == null;
+    }
+
+    @Override
+    protected void processSystem() {
+        long start = System.currentTimeMillis();
+        serverSystem.stopAccepting();
+        int players = serverSystem.getAmountConnections();
+        int saved = userSystem.saveAll();
+        Collection<String> unwritten;
+        try {
+            unwritten = userSystem.drain(deadline);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            unwritten = Collections.singleton("(interrupted)");
+        }
+        serverSystem.stop();
+        report = new Report(reason, players, saved, unwritten, System.currentTimeMillis() - start);
+        if (report.isComplete()) {
+            Log.info("Shutdown", report.toString());
+        } else {
+            Log.error("Shutdown", report.toString());
+        }
+        Gdx.app.exit();
+    }
+
+    public static class Report {
+        private final String reason;
+        private final int players;
+        private final int saved;
+        private final Collection<String> unwritten;
+        private final long elapsed;
+
+        private Report(String reason, int players, int saved, Collection<String> unwritten, long elapsed) {
+            this.reason = reason;
+            this.players = players;
+            this.saved = saved;
+            this.unwritten = unwritten;
+            this.elapsed = elapsed;
+        }
+
+        /**
+         * @return true if every character was written
+         */
+        public boolean isComplete() {
+            return unwritten.isEmpty();
+        }
+
+        public Collection<String> getUnwritten() {
+            return unwritten;
+        }
+
+        @Override
+        public String toString() {
+            String result = String.format("Shutdown (%s) in %dms: %d players online, %d characters saved",
+                    reason, elapsed, players, saved);
+            if (!unwritten.isEmpty()) {
+                result += ", NOT written (only their journal events remain): " + unwritten;
+            }
+            return result;
+        }
+    }
+}
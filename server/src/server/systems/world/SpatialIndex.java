@@ -0,0 +1,194 @@
+package server.systems.world;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntIntMap;
+import com.badlogic.gdx.utils.IntMap;
+import shared.model.map.Map;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Spatial index of entities: every map is split in square cells of {@link #CELL_SIZE} tiles and each cell keeps the ids
+ * of the entities standing on it.
+ * Range queries only visit the cells overlapping the requested area, and moving an entity only touches the cells it
+ * leaves or enters.
+ */
+public class SpatialIndex {
+
+    public static final int CELL_SIZE = 10;
+    private static final int CELLS_X = (Map.MAX_MAP_SIZE_WIDTH + CELL_SIZE - 1) / CELL_SIZE;
+    private static final int CELLS_Y = (Map.MAX_MAP_SIZE_HEIGHT + CELL_SIZE - 1) / CELL_SIZE;
+    private static final int CELLS = CELLS_X * CELLS_Y;
+    private static final int NO_MAP = -1;
+    public static final int NO_CELL = -1;
+
+    private final IntMap<IntArray[]> cellsByMap = new IntMap<>();
+    private final IntIntMap mapByEntity = new IntIntMap();
+    private final IntIntMap tileByEntity = new IntIntMap();
+
+    /**
+     * Insert the entity in the index, or move it if it was already indexed.
+     */
+    public void update(int entity, int map, int x, int y) {
+        int tile = tile(x, y);
+        int oldMap = mapByEntity.get(entity, NO_MAP);
+        if (oldMap != NO_MAP) {
+            int oldTile = tileByEntity.get(entity, 0);
+            if (oldMap == map && cellOf(oldTile) == cellOf(tile)) {
+                // same cell, nothing to relink
+                tileByEntity.put(entity, tile);
+                return;
+            }
+            cells(oldMap)[cellOf(oldTile)].removeValue(entity);
+        }
+        cells(map)[cellOf(tile)].add(entity);
+        mapByEntity.put(entity, map);
+        tileByEntity.put(entity, tile);
+    }
+
+    public void remove(int entity) {
+        int map = mapByEntity.remove(entity, NO_MAP);
+        if (map != NO_MAP) {
+            int tile = tileByEntity.remove(entity, 0);
+            cells(map)[cellOf(tile)].removeValue(entity);
+        }
+    }
+
+    /**
+     * Visit every entity standing inside the given rectangle (inclusive bounds) of the map.
+     */
+    public void query(int map, int x0, int y0, int x1, int y1, IntConsumer consumer) {
+        IntArray[] cells = cellsByMap.get(map);
+        if (cells == null) {
+            return;
+        }
+        x0 = Math.max(x0, 0);
+        y0 = Math.max(y0, 0);
+        x1 = Math.min(x1, Map.MAX_MAP_SIZE_WIDTH - 1);
+        y1 = Math.min(y1, Map.MAX_MAP_SIZE_HEIGHT - 1);
+        if (x0 > x1 || y0 > y1) {
+            return;
+        }
+        for (int cx = x0 / CELL_SIZE; cx <= x1 / CELL_SIZE; cx++) {
+            for (int cy = y0 / CELL_SIZE; cy <= y1 / CELL_SIZE; cy++) {
+                IntArray cell = cells[cx * CELLS_Y + cy];
+                for (int i = 0; i < cell.size; i++) {
+                    int entity = cell.items[i];
+                    int tile = tileByEntity.get(entity, 0);
+                    int x = tile / Map.MAX_MAP_SIZE_HEIGHT;
+                    int y = tile % Map.MAX_MAP_SIZE_HEIGHT;
+                    if (x >= x0 && x <= x1 && y >= y0 && y <= y1) {
+                        consumer.accept(entity);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return map where the entity stands, or -1 if it isn't indexed
+     */
+    public int getMap(int entity) {
+        return mapByEntity.get(entity, NO_MAP);
+    }
+
+    public int getX(int entity) {
+        return tileByEntity.get(entity, 0) / Map.MAX_MAP_SIZE_HEIGHT;
+    }
+
+    public int getY(int entity) {
+        return tileByEntity.get(entity, 0) % Map.MAX_MAP_SIZE_HEIGHT;
+    }
+
+    /**
+     * @return key of the cell where the entity stands (unique across maps), or {@link #NO_CELL}
+     */
+    public int getCell(int entity) {
+        int map = mapByEntity.get(entity, NO_MAP);
+        return map == NO_MAP ? NO_CELL : map * CELLS + cellOf(tileByEntity.get(entity, 0));
+    }
+
+    /**
+     * Visit every entity standing on the cell.
+     */
+    public void forEachInCell(int cell, IntConsumer consumer) {
+        IntArray[] cells = cellsByMap.get(cell / CELLS);
+        if (cells == null) {
+            return;
+        }
+        IntArray entities = cells[cell % CELLS];
+        for (int i = 0; i < entities.size; i++) {
+            consumer.accept(entities.items[i]);
+        }
+    }
+
+    /**
+     * Visit the key of every cell overlapping the given rectangle (inclusive bounds) of the map.
+     */
+    public static void forEachCell(int map, int x0, int y0, int x1, int y1, IntConsumer consumer) {
+        x0 = Math.max(x0, 0);
+        y0 = Math.max(y0, 0);
+        x1 = Math.min(x1, Map.MAX_MAP_SIZE_WIDTH - 1);
+        y1 = Math.min(y1, Map.MAX_MAP_SIZE_HEIGHT - 1);
+        for (int cx = x0 / CELL_SIZE; x0 <= x1 && cx <= x1 / CELL_SIZE; cx++) {
+            for (int cy = y0 / CELL_SIZE; y0 <= y1 && cy <= y1 / CELL_SIZE; cy++) {
+                consumer.accept(map * CELLS + cx * CELLS_Y + cy);
+            }
+        }
+    }
+
+    public static int getCellMap(int cell) {
+        return cell / CELLS;
+    }
+
+    /**
+     * @return first tile x of the cell
+     */
+    public static int getCellX(int cell) {
+        return (cell % CELLS) / CELLS_Y * CELL_SIZE;
+    }
+
+    /**
+     * @return first tile y of the cell
+     */
+    public static int getCellY(int cell) {
+        return (cell % CELLS) % CELLS_Y * CELL_SIZE;
+    }
+
+    /**
+     * Visit every entity indexed in the map.
+     */
+    public void forEach(int map, IntConsumer consumer) {
+        IntArray[] cells = cellsByMap.get(map);
+        if (cells == null) {
+            return;
+        }
+        for (IntArray cell : cells) {
+            for (int i = 0; i < cell.size; i++) {
+                consumer.accept(cell.items[i]);
+            }
+        }
+    }
+
+    private IntArray[] cells(int map) {
+        IntArray[] cells = cellsByMap.get(map);
+        if (cells == null) {
+            cells = new IntArray[CELLS_X * CELLS_Y];
+            for (int i = 0; i < cells.length; i++) {
+                cells[i] = new IntArray(false, 8);
+            }
+            cellsByMap.put(map, cells);
+        }
+        return cells;
+    }
+
+    private static int tile(int x, int y) {
+        return x * Map.MAX_MAP_SIZE_HEIGHT + y;
+    }
+
+    private static int cellOf(int tile) {
+        int x = tile / Map.MAX_MAP_SIZE_HEIGHT;
+        int y = tile % Map.MAX_MAP_SIZE_HEIGHT;
+        return (x / CELL_SIZE) * CELLS_Y + y / CELL_SIZE;
+    }
+}
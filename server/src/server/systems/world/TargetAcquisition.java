@@ -0,0 +1,109 @@
+package server.systems.world;
+
+import com.badlogic.gdx.utils.IntMap;
+
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Target of each NPC: the closest player within range, looked up in the {@link SpatialIndex} cells around the NPC
+ * instead of among every character of the world. The target is kept until it stops being one (dies, logs out) or
+ * leaves the range, and an NPC without target searches again at most once per interval.
+ */
+public class TargetAcquisition {
+
+    public static final int NO_TARGET = -1;
+    public static final int DEFAULT_RANGE = 10;
+    public static final long DEFAULT_INTERVAL = 1000;
+
+    private final SpatialIndex spatialIndex;
+    private final IntPredicate isTarget;
+    private final int range;
+    private final long interval;
+    private final IntMap<Acquired> acquired = new IntMap<>();
+
+    // closest candidate of the current search
+    private final IntConsumer visitor = this::visit;
+    private int searchMap;
+    private int searchX;
+    private int searchY;
+    private int best;
+    private int bestDistance;
+
+    public TargetAcquisition(SpatialIndex spatialIndex, IntPredicate isTarget) {
+        this(spatialIndex, isTarget, DEFAULT_RANGE, DEFAULT_INTERVAL);
+    }
+
+    /**
+     * @param range    targets are closer than this, in tiles
+     * @param interval ms between searches of an NPC without target
+     */
+    public TargetAcquisition(SpatialIndex spatialIndex, IntPredicate isTarget, int range, long interval) {
+        this.spatialIndex = spatialIndex;
+        this.isTarget = isTarget;
+        this.range = range;
+        this.interval = interval;
+    }
+
+    /**
+     * @return the target of the NPC standing on the tile, or {@link #NO_TARGET}
+     */
+    public int getTarget(int npc, int map, int x, int y, long now) {
+        Acquired current = acquired.get(npc);
+        if (current == null) {
+            current = new Acquired();
+            acquired.put(npc, current);
+        }
+        if (current.target != NO_TARGET && !(isTarget.test(current.target) && distance(current.target, map, x, y) < range)) {
+            current.target = NO_TARGET;
+        }
+        if (current.target == NO_TARGET && now >= current.searchAt) {
+            current.target = closest(map, x, y);
+            current.searchAt = now + interval;
+        }
+        return current.target;
+    }
+
+    /**
+     * @return the target the NPC got in its last {@link #getTarget(int, int, int, int, long)}, without searching
+     */
+    public int getAcquired(int npc) {
+        Acquired current = acquired.get(npc);
+        return current == null ? NO_TARGET : current.target;
+    }
+
+    public void forget(int entity) {
+        acquired.remove(entity);
+    }
+
+    private int closest(int map, int x, int y) {
+        searchMap = map;
+        searchX = x;
+        searchY = y;
+        best = NO_TARGET;
+        bestDistance = range;
+        spatialIndex.query(map, x - range + 1, y - range + 1, x + range - 1, y + range - 1, visitor);
+        return best;
+    }
+
+    private void visit(int entity) {
+        int distance = distance(entity, searchMap, searchX, searchY);
+        if (distance < bestDistance && isTarget.test(entity)) {
+            best = entity;
+            bestDistance = distance;
+        }
+    }
+
+    // tiles from the entity to the position, or Integer.MAX_VALUE if it is in another map
+    private int distance(int entity, int map, int x, int y) {
+        if (spatialIndex.getMap(entity) != map) {
+            return Integer.MAX_VALUE;
+        }
+        return Math.abs(spatialIndex.getX(entity) - x) + Math.abs(spatialIndex.getY(entity) - y);
+    }
+
+    private static class Acquired {
+        private int target = NO_TARGET;
+        private long searchAt;
+    }
+}
@@ -0,0 +1,131 @@
+package server.systems.world;
+
+import com.badlogic.gdx.utils.IntIntMap;
+import com.badlogic.gdx.utils.IntMap;
+import component.position.WorldPos;
+import shared.model.map.Map;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Which entity stands on each tile: one primitive array of entity ids per map for characters and NPCs and another one
+ * for ground objects, so asking if a tile is free is a single array read.
+ * <p>
+ * Every entity claims the tile it moves to. If the claim is released while another entity shares the tile (teleports,
+ * spawns, drops), the tile is handed over to it looking up the {@link SpatialIndex}, so it must be updated first.
+ */
+public class TileOccupancy {
+
+    public static final int EMPTY = -1;
+    private static final int TILES = Map.MAX_MAP_SIZE_WIDTH * Map.MAX_MAP_SIZE_HEIGHT;
+    private static final int OBJECT_CLAIM = 1 << 30;
+
+    private final SpatialIndex spatialIndex;
+    private final IntPredicate isObject;
+    private final IntMap<int[]> occupants = new IntMap<>();
+    private final IntMap<int[]> objects = new IntMap<>();
+    private final IntIntMap claims = new IntIntMap();
+
+    public TileOccupancy(SpatialIndex spatialIndex, IntPredicate isObject) {
+        this.spatialIndex = spatialIndex;
+        this.isObject = isObject;
+    }
+
+    public boolean isFree(WorldPos pos) {
+        return isFree(pos.map, pos.x, pos.y);
+    }
+
+    public boolean isFree(int map, int x, int y) {
+        return getOccupant(map, x, y) == EMPTY;
+    }
+
+    public boolean hasObject(WorldPos pos) {
+        return getObject(pos.map, pos.x, pos.y) != EMPTY;
+    }
+
+    /**
+     * @return character or NPC standing on the tile, or {@link #EMPTY}
+     */
+    public int getOccupant(int map, int x, int y) {
+        return get(occupants, map, x, y);
+    }
+
+    /**
+     * @return ground object lying on the tile, or {@link #EMPTY}
+     */
+    public int getObject(int map, int x, int y) {
+        return get(objects, map, x, y);
+    }
+
+    /**
+     * Claim the tile for the entity, releasing the one it claimed before.
+     */
+    public void update(int entity, int map, int x, int y) {
+        if (!inside(x, y)) {
+            remove(entity);
+            return;
+        }
+        boolean object = isObject.test(entity);
+        int claim = map * TILES + tile(x, y) + (object ? OBJECT_CLAIM : 0);
+        int previous = claims.get(entity, EMPTY);
+        if (previous == claim) {
+            return;
+        }
+        release(entity, previous);
+        claims.put(entity, claim);
+        int[] layer = layer(object ? objects : occupants, map);
+        if (layer[tile(x, y)] == EMPTY) {
+            layer[tile(x, y)] = entity;
+        }
+    }
+
+    public void remove(int entity) {
+        release(entity, claims.remove(entity, EMPTY));
+    }
+
+    private void release(int entity, int claim) {
+        if (claim == EMPTY) {
+            return;
+        }
+        boolean object = (claim & OBJECT_CLAIM) != 0;
+        int map = (claim & ~OBJECT_CLAIM) / TILES;
+        int tile = (claim & ~OBJECT_CLAIM) % TILES;
+        int[] layer = layer(object ? objects : occupants, map);
+        if (layer[tile] != entity) {
+            return;
+        }
+        layer[tile] = EMPTY;
+        // hand the tile over to anyone else standing there
+        int x = tile / Map.MAX_MAP_SIZE_HEIGHT;
+        int y = tile % Map.MAX_MAP_SIZE_HEIGHT;
+        spatialIndex.query(map, x, y, x, y, other -> {
+            if (layer[tile] == EMPTY && other != entity && claims.containsKey(other) && isObject.test(other) == object) {
+                layer[tile] = other;
+            }
+        });
+    }
+
+    private static int get(IntMap<int[]> layers, int map, int x, int y) {
+        int[] layer = layers.get(map);
+        return layer == null || !inside(x, y) ? EMPTY : layer[tile(x, y)];
+    }
+
+    private static int[] layer(IntMap<int[]> layers, int map) {
+        int[] layer = layers.get(map);
+        if (layer == null) {
+            layer = new int[TILES];
+            Arrays.fill(layer, EMPTY);
+            layers.put(map, layer);
+        }
+        return layer;
+    }
+
+    private static boolean inside(int x, int y) {
+        return x >= 0 && x < Map.MAX_MAP_SIZE_WIDTH && y >= 0 && y < Map.MAX_MAP_SIZE_HEIGHT;
+    }
+
+    private static int tile(int x, int y) {
+        return x * Map.MAX_MAP_SIZE_HEIGHT + y;
+    }
+}
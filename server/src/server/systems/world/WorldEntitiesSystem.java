@@ -20,16 +20,24 @@ import server.systems.config.NPCSystem;
 import server.systems.config.ObjectSystem;
 import server.systems.config.SpellSystem;
 import server.systems.network.EntityUpdateSystem;
+import server.systems.network.ReplicationSystem;
 import server.systems.network.ServerSystem;
 import server.utils.UpdateTo;
 import shared.interfaces.Race;
 import shared.model.npcs.NPC;
 import shared.network.inventory.InventoryUpdate;
+import shared.network.notifications.Datagram;
+import shared.network.notifications.EntityUpdate;
 import shared.objects.types.Obj;
 import shared.util.EntityUpdateBuilder;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Random;
+import java.util.Set;
 
 import static com.artemis.E.E;
 
@@ -44,6 +52,7 @@ public class WorldEntitiesSystem extends PassiveSystem {
     private EntityUpdateSystem entityUpdateSystem;
     private ComponentSystem componentSystem;
     private UserSystem userSystem;
+    private ReplicationSystem replicationSystem;
 
     public void registerEntity(int id) {
         mapSystem.updateEntity(id);
@@ -57,20 +66,71 @@ public class WorldEntitiesSystem extends PassiveSystem {
     public void unregisterEntity(int entityId) {
         userSystem.save(entityId);
         networkManager.unregisterUserConnection(entityId);
+        replicationSystem.forget(entityId);
         mapSystem.removeEntity(entityId);
         getWorld().delete(entityId);
     }
 
     public void sendEntityUpdate(int user, Object update) {
         if (networkManager.playerHasConnection(user)) {
-            Log.debug("Sending update: " + update.toString() + " to " + user);
-            networkManager.sendTo(networkManager.getConnectionByPlayer(user), update);
+            Object packet = replicationSystem.compress(user, update);
+            if (packet == null) {
+                return;
+            }
+            Log.debug("Sending update: " + packet.toString() + " to " + user);
+            networkManager.sendTo(networkManager.getConnectionByPlayer(user), packet);
         }
     }
 
     public void notifyToNearEntities(int entityId, Object update) {
-        mapSystem.getNearEntities(entityId).forEach(nearPlayer -> {
-            sendEntityUpdate(nearPlayer, update);
+        Set<Integer> nearEntities = mapSystem.getNearEntities(entityId);
+        if (Datagram.isUnreliable(update)) {
+            sendUnreliable(nearEntities, update);
+            return;
+        }
+        if (update instanceof EntityUpdate[]) {
+            // movement state goes over UDP, the rest keeps its order over TCP
+            List<EntityUpdate> reliable = new ArrayList<>();
+            for (EntityUpdate entityUpdate : (EntityUpdate[]) update) {
+                if (Datagram.isUnreliable(entityUpdate)) {
+                    sendUnreliable(nearEntities, entityUpdate);
+                } else {
+                    reliable.add(entityUpdate);
+                }
+            }
+            if (reliable.isEmpty()) {
+                return;
+            }
+            update = reliable.toArray(new EntityUpdate[0]);
+        }
+        notifyReliable(nearEntities, update);
+    }
+
+    private void sendUnreliable(Set<Integer> nearEntities, Object update) {
+        nearEntities.forEach(nearPlayer -> {
+            if (networkManager.playerHasConnection(nearPlayer)) {
+                networkManager.sendUnreliable(networkManager.getConnectionByPlayer(nearPlayer), update);
+            }
+        });
+    }
+
+    private void notifyReliable(Set<Integer> nearEntities, Object update) {
+        long players = nearEntities.stream().filter(networkManager::playerHasConnection).count();
+        if (players <= 1) {
+            nearEntities.forEach(nearPlayer -> sendEntityUpdate(nearPlayer, update));
+            return;
+        }
+        // players that got the same previous updates receive the same packet: serialize it once
+        Map<Object, Object> encoded = new HashMap<>();
+        nearEntities.forEach(nearPlayer -> {
+            if (!networkManager.playerHasConnection(nearPlayer)) {
+                return;
+            }
+            Object packet = replicationSystem.compress(nearPlayer, update);
+            if (packet != null) {
+                Object bytes = encoded.computeIfAbsent(ReplicationSystem.key(packet), key -> networkManager.encode(packet));
+                networkManager.sendTo(networkManager.getConnectionByPlayer(nearPlayer), bytes);
+            }
         });
     }
 
@@ -126,6 +186,8 @@ public class WorldEntitiesSystem extends PassiveSystem {
 
             entity.bodyIndex(8);
             entity.headIndex(513);
+            userSystem.bagChanged(entityId);
+            userSystem.changed(entityId, entity.getHealth(), entity.getHead(), entity.getBody());
             EntityUpdateBuilder resetUpdate = EntityUpdateBuilder.of(entityId);
             resetUpdate.withComponents(entity.getHealth());
             resetUpdate.withComponents(entity.getHead(), entity.getBody());
@@ -169,6 +231,7 @@ public class WorldEntitiesSystem extends PassiveSystem {
         //todo obtener body y head de la base de datos del jugador las cabezas actualmente son randoms
         entityFactorySystem.setNakedBody(entity, Race.of(entity));
         entityFactorySystem.setHead(entity, Race.of(entity));
+        userSystem.changed(entityId, entity.getHealth(), entity.getBody(), entity.getHead());
         notifyUpdate(entityId, EntityUpdateBuilder.of(entityId).withComponents(entity.getBody(), entity.getHead()).build());
 
         if (!resurrected) {
@@ -180,7 +243,10 @@ public class WorldEntitiesSystem extends PassiveSystem {
                     entity.originPosMap(1).originPosX(50).originPosY(50);
                 }
             }
+            WorldPos oldPos = new WorldPos(entity.getWorldPos());
             entity.worldPosMap(entity.originPosMap()).worldPosX(entity.originPosX()).worldPosY(entity.originPosY());
+            mapSystem.movePlayer(entityId, Optional.of(oldPos));
+            userSystem.changed(entityId, WorldPos.class);
         } else {
             //se elimina el contador para la resurreccion
             Timer.instance().clear();
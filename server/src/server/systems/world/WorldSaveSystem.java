@@ -1,23 +1,35 @@
 package server.systems.world;
 
-import com.artemis.Aspect;
-import com.artemis.E;
+import com.artemis.BaseSystem;
 import com.artemis.annotations.Wire;
-import component.entity.character.Character;
-import component.entity.character.info.Name;
 import server.systems.account.UserSystem;
 
+/**
+ * Saves characters that changed, a few each tick, so there is no save storm. A character is saved once its oldest
+ * unsaved change is delay ms old, and every change until then goes in the same write.
+ * Every {@link #FULL_SAVE_INTERVAL} ms all the characters are marked as changed, in case some change wasn't reported.
+ */
 @Wire
-public class WorldSaveSystem extends IntervalFluidIteratingSystem {
+public class WorldSaveSystem extends BaseSystem {
+
+    private static final int MAX_SAVES_PER_TICK = 4;
+    private static final long FULL_SAVE_INTERVAL = 60 * 60 * 1000; // 1 hour
 
     private UserSystem userSystem;
+    private final long delay;
+    private long lastFullSave = System.currentTimeMillis();
 
-    public WorldSaveSystem(float interval) {
-        super(Aspect.all(Character.class, Name.class), interval);
+    public WorldSaveSystem(long delay) {
+        this.delay = delay;
     }
 
     @Override
-    protected void process(E e) {
-        userSystem.save(e);
+    protected void processSystem() {
+        long now = System.currentTimeMillis();
+        if (now - lastFullSave >= FULL_SAVE_INTERVAL) {
+            lastFullSave = now;
+            userSystem.changedAll();
+        }
+        userSystem.saveChanged(delay, MAX_SAVES_PER_TICK);
     }
 }
@@ -5,8 +5,18 @@ import com.badlogic.gdx.ai.pfa.indexed.IndexedAStarPathFinder;
 import com.badlogic.gdx.ai.pfa.indexed.IndexedGraph;
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.IntSet;
 import component.position.WorldPos;
 
+/**
+ * A* over the static graph of a map ({@link AStarMap}, built once from the blocked tiles), with the tiles taken by
+ * characters and NPCs applied on top while searching ({@link Overlay}), so the graph never has to be built again.
+ * There is one per map: the path finder keeps its node records between searches instead of allocating them.
+ * <p>
+ * NPCs chasing someone share a {@link FlowField} per target tile ({@link #followFlowField(WorldPos, WorldPos)}), kept
+ * while it is used and recycled by {@link #releaseUnusedFlowFields()}.
+ */
 public class AStartPathFinding {
     private static final int[][] NEIGHBORHOOD = new int[][]{
             new int[]{-1, 0},
@@ -14,14 +24,24 @@ public class AStartPathFinding {
             new int[]{0, 1},
             new int[]{1, 0}
     };
+    // NPCs chase characters up to 10 tiles away, the field covers longer ways around walls
+    public static final int FLOW_FIELD_DISTANCE = 32;
     public final AStarMap map;
     private final PathFinder<Node> pathfinder;
     private final Heuristic<Node> heuristic;
     private final GraphPath<Connection<Node>> connectionPath;
+    private final MyGraph graph;
+    private final Overlay overlay;
+    // by target tile
+    private final IntMap<FlowField> flowFields = new IntMap<>();
+    private final IntSet usedFlowFields = new IntSet();
+    private final Array<FlowField> freeFlowFields = new Array<>();
 
-    public AStartPathFinding(AStarMap map) {
+    public AStartPathFinding(AStarMap map, Overlay overlay) {
         this.map = map;
-        this.pathfinder = new IndexedAStarPathFinder<>(createGraph(map));
+        this.graph = createGraph(map, overlay);
+        this.overlay = overlay;
+        this.pathfinder = new IndexedAStarPathFinder<>(graph);
         this.connectionPath = new DefaultGraphPath<>();
         this.heuristic = (node, endNode) -> {
             // Manhattan distance
@@ -29,10 +49,10 @@ public class AStartPathFinding {
         };
     }
 
-    public static MyGraph createGraph(AStarMap map) {
+    private static MyGraph createGraph(AStarMap map, Overlay overlay) {
         final int height = map.getHeight();
         final int width = map.getWidth();
-        MyGraph graph = new MyGraph(map);
+        MyGraph graph = new MyGraph(map, overlay);
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width; x++) {
                 Node node = map.getNodeAt(x, y);
@@ -74,17 +94,75 @@ public class AStartPathFinding {
         Node sourceNode = map.getNodeAt(sourceX, sourceY);
         Node targetNode = map.getNodeAt(targetX, targetY);
         connectionPath.clear();
+        // the target is usually someone standing there
+        graph.target = targetNode;
         pathfinder.searchConnectionPath(sourceNode, targetNode, heuristic, connectionPath);
+        graph.target = null;
 
         return connectionPath.getCount() == 0 ? null : connectionPath.get(0).getToNode();
     }
 
+    /**
+     * Next step towards the target, read from the flow field of the target tile, computed if no one followed it yet
+     */
+    public Node followFlowField(WorldPos source, WorldPos target) {
+        if (target.x < 0 || target.x >= map.getWidth() || target.y < 0 || target.y >= map.getHeight()) {
+            return null;
+        }
+        int key = target.x * map.getHeight() + target.y;
+        FlowField field = flowFields.get(key);
+        if (field == null) {
+            field = freeFlowFields.isEmpty() ? new FlowField(map, FLOW_FIELD_DISTANCE) : freeFlowFields.pop();
+            field.compute(target.x, target.y);
+            flowFields.put(key, field);
+        }
+        usedFlowFields.add(key);
+        Node next = field.next(source.x, source.y, overlay);
+        if (next == null && field.getDistance(source.x, source.y) != FlowField.UNREACHABLE) {
+            // someone is in the way, look for a way around
+            return findNextNode(source, target);
+        }
+        return next;
+    }
+
+    /**
+     * Recycle the flow fields no one followed since the last call, like those of targets that moved to another tile
+     */
+    public void releaseUnusedFlowFields() {
+        IntMap.Keys keys = flowFields.keys();
+        while (keys.hasNext) {
+            int key = keys.next();
+            if (!usedFlowFields.contains(key)) {
+                freeFlowFields.add(flowFields.get(key));
+                keys.remove();
+            }
+        }
+        usedFlowFields.clear();
+    }
+
+    public int getFlowFieldCount() {
+        return flowFields.size;
+    }
+
+    /**
+     * Tiles that can't be walked right now, although the map allows it
+     */
+    @FunctionalInterface
+    public interface Overlay {
+        boolean isOccupied(int x, int y);
+    }
+
     private static class MyGraph implements IndexedGraph<Node> {
 
         AStarMap map;
+        Overlay overlay;
+        Node target;
+        // the path finder walks the connections of a node before asking for the next one
+        private final Array<Connection<Node>> free = new Array<>(NEIGHBORHOOD.length);
 
-        public MyGraph(AStarMap map) {
+        public MyGraph(AStarMap map, Overlay overlay) {
             this.map = map;
+            this.overlay = overlay;
         }
 
         @Override
@@ -94,12 +172,21 @@ public class AStartPathFinding {
 
         @Override
         public Array<Connection<Node>> getConnections(Node fromNode) {
-            return fromNode.getConnections();
+            free.clear();
+            Array<Connection<Node>> connections = fromNode.getConnections();
+            for (int i = 0; i < connections.size; i++) {
+                Connection<Node> connection = connections.get(i);
+                Node to = connection.getToNode();
+                if (to == target || !overlay.isOccupied(to.x, to.y)) {
+                    free.add(connection);
+                }
+            }
+            return free;
         }
 
         @Override
         public int getNodeCount() {
-            return map.getHeight() * map.getHeight();
+            return map.getWidth() * map.getHeight();
         }
 
     }
@@ -0,0 +1,183 @@
+package server.systems.world.entity.ai;
+
+import com.artemis.Aspect;
+import com.artemis.E;
+import com.artemis.EBag;
+import com.artemis.annotations.Wire;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntSet;
+import com.esotericsoftware.minlog.Log;
+import component.entity.character.Character;
+import component.entity.npc.Dormant;
+import component.entity.npc.NPC;
+import component.movement.RandomMovement;
+import component.position.WorldPos;
+import server.configs.ServerConfiguration;
+import server.systems.config.ConfigurationSystem;
+import server.systems.world.IntervalFluidIteratingSystem;
+import server.systems.world.MapSystem;
+import server.utils.WorldUtils;
+import shared.model.map.Map;
+import shared.util.MapHelper;
+
+import java.util.Optional;
+
+import static server.utils.Intervals.PATH_FINDING_INTERVAL;
+
+/**
+ * NPCs in maps with no player within a ring of neighbour maps go {@link Dormant}: {@link RandomMovementSystem},
+ * {@link PathFindingSystem} and {@link NPCAttackSystem} exclude them, so an idle server only pays for this check once
+ * per interval. They wake up when a player gets within the ring, right away if the player enters a map
+ * ({@link #wake(int)}). NPCs that slept long enough to have walked back to their origin wake up there, if no player is
+ * watching them.
+ */
+@Wire
+public class DormancySystem extends IntervalFluidIteratingSystem {
+
+    public static final int DEFAULT_AWAKE_RING = 1;
+
+    private MapSystem mapSystem;
+    private ConfigurationSystem configurationSystem;
+    private NPCPopulationSystem npcPopulationSystem;
+
+    // maps with a player within the ring, in this interval
+    private final IntSet awakeMaps = new IntSet();
+    private int ring = DEFAULT_AWAKE_RING;
+    private int dormant;
+
+    public DormancySystem(float interval) {
+        super(Aspect.all(WorldPos.class).one(NPC.class, RandomMovement.class).exclude(Character.class), interval);
+    }
+
+    @Override
+    protected void initialize() {
+        super.initialize();
+        ServerConfiguration.Npcs npcs = configurationSystem.getServerConfig().getNpcs();
+        if (npcs != null) {
+            ring = Math.max(0, npcs.getAwakeRing());
+        }
+    }
+
+    /**
+     * @return true if the NPCs of the map are awake
+     */
+    public boolean isAwake(int map) {
+        return awakeMaps.contains(map);
+    }
+
+    /**
+     * A player entered the map: the maps within its ring wake up now instead of in the next interval, and get their
+     * NPCs if they had none
+     */
+    public void wake(int map) {
+        if (!mapSystem.getHelper().hasMap(map)) {
+            return;
+        }
+        IntArray woken = new IntArray();
+        if (awakeMaps.add(map)) {
+            woken.add(map);
+        }
+        IntArray current = new IntArray();
+        current.add(map);
+        IntSet visited = new IntSet();
+        visited.add(map);
+        addRings(current, visited, woken);
+        for (int i = 0; i < woken.size; i++) {
+            int wokenMap = woken.get(i);
+            for (int entity : mapSystem.getEntitiesInMap(wokenMap)) {
+                E e = E.E(entity);
+                if (e.hasDormant()) {
+                    wake(e);
+                }
+            }
+            npcPopulationSystem.awake(wokenMap);
+        }
+        if (woken.size > 0) {
+            Log.debug("Dormancy", String.format("A player woke up %d maps around map %d", woken.size, map));
+        }
+    }
+
+    @Override
+    protected void begin() {
+        awakeMaps.clear();
+        dormant = 0;
+        IntArray current = new IntArray();
+        EBag characters = E.withAspect(Aspect.all(Character.class, WorldPos.class));
+        for (E character : characters) {
+            int map = character.worldPosMap();
+            if (awakeMaps.add(map)) {
+                current.add(map);
+            }
+        }
+        addRings(current, awakeMaps, null);
+    }
+
+    // neighbours of the maps not visited yet, ring by ring, are awake; the ones that weren't go to woken
+    private void addRings(IntArray current, IntSet visited, IntArray woken) {
+        MapHelper helper = mapSystem.getHelper();
+        IntArray next = new IntArray();
+        for (int step = 0; step < ring && current.size > 0; step++) {
+            for (int i = 0; i < current.size; i++) {
+                Map map = helper.getMap(current.get(i));
+                for (int neighbour : map.getNeighbours()) {
+                    if (helper.hasMap(neighbour) && visited.add(neighbour)) {
+                        next.add(neighbour);
+                        if (awakeMaps.add(neighbour) && woken != null) {
+                            woken.add(neighbour);
+                        }
+                    }
+                }
+            }
+            IntArray swap = current;
+            current = next;
+            next = swap;
+            next.clear();
+        }
+    }
+
+    @Override
+    protected void process(E e) {
+        boolean awake = awakeMaps.contains(e.worldPosMap());
+        if (!awake && !e.hasDormant()) {
+            e.dormant().dormantSince(System.currentTimeMillis());
+        } else if (awake && e.hasDormant()) {
+            wake(e);
+        }
+        if (e.hasDormant()) {
+            dormant++;
+        }
+    }
+
+    private void wake(E e) {
+        long slept = System.currentTimeMillis() - e.dormantSince();
+        e.removeDormant();
+        fastForward(e, slept);
+    }
+
+    @Override
+    protected void end() {
+        Log.debug("Dormancy", String.format("%d maps awake, %d NPCs dormant", awakeMaps.size, dormant));
+    }
+
+    // while asleep it would have gone back home, do it now unless a player can see it
+    private void fastForward(E e, long slept) {
+        if (!e.hasAIMovement() || !e.hasOriginPos()) {
+            return;
+        }
+        WorldPos pos = e.getWorldPos();
+        WorldPos origin = e.getOriginPos().toWorldPos();
+        int distance = WorldUtils.WorldUtils(world).distance(pos, origin);
+        if (distance <= 0 || slept < distance * PATH_FINDING_INTERVAL * 1000) {
+            return;
+        }
+        boolean watched = mapSystem.getNearEntities(e.id()).stream().anyMatch(near -> E.E(near).isCharacter());
+        if (watched || !mapSystem.getOccupancy().isFree(origin)) {
+            return;
+        }
+        WorldPos oldPos = new WorldPos(pos);
+        e.worldPosMap(origin.map);
+        e.worldPosX(origin.x);
+        e.worldPosY(origin.y);
+        mapSystem.movePlayer(e.id(), Optional.of(oldPos));
+    }
+}
@@ -0,0 +1,141 @@
+package server.systems.world.entity.ai;
+
+import java.util.Arrays;
+
+/**
+ * Distance in steps from every tile of a map to one target tile, over the walls of the {@link AStarMap}. It is computed
+ * once (a BFS from the target) and every NPC chasing that target reads its next step from it, instead of running its
+ * own A*. Characters and NPCs are not part of the field, they are avoided when choosing the step
+ * ({@link #next(int, int, AStartPathFinding.Overlay)}), so the field stays valid until the target changes tile.
+ * The BFS stops at a max distance, NPCs only chase characters close to them.
+ */
+public class FlowField {
+
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+    private static final int[][] NEIGHBORHOOD = new int[][]{
+            new int[]{-1, 0},
+            new int[]{0, -1},
+            new int[]{0, 1},
+            new int[]{1, 0}
+    };
+
+    private final AStarMap map;
+    private final int maxDistance;
+    private final int width;
+    private final int height;
+    // walls of the map by tile, they don't change
+    private final boolean[] walls;
+    private final int[] distance;
+    private final int[] queue;
+    private int targetX;
+    private int targetY;
+
+    /**
+     * @param maxDistance steps from the target covered by the field
+     */
+    public FlowField(AStarMap map, int maxDistance) {
+        this.map = map;
+        this.maxDistance = maxDistance;
+        this.width = map.getWidth();
+        this.height = map.getHeight();
+        this.walls = new boolean[width * height];
+        this.distance = new int[walls.length];
+        this.queue = new int[walls.length];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                walls[index(x, y)] = map.getNodeAt(x, y).isWall;
+            }
+        }
+    }
+
+    /**
+     * Compute the distances to the target, reusing the arrays
+     */
+    public void compute(int targetX, int targetY) {
+        this.targetX = targetX;
+        this.targetY = targetY;
+        Arrays.fill(distance, UNREACHABLE);
+        if (!inside(targetX, targetY)) {
+            return;
+        }
+        int head = 0;
+        int tail = 0;
+        distance[index(targetX, targetY)] = 0;
+        queue[tail++] = index(targetX, targetY);
+        while (head < tail) {
+            int tile = queue[head++];
+            int next = distance[tile] + 1;
+            if (next > maxDistance) {
+                break;
+            }
+            int x = tile / height;
+            int y = tile % height;
+            // tile index is x * height + y
+            if (x > 0) {
+                tail = visit(tile - height, next, tail);
+            }
+            if (x < width - 1) {
+                tail = visit(tile + height, next, tail);
+            }
+            if (y > 0) {
+                tail = visit(tile - 1, next, tail);
+            }
+            if (y < height - 1) {
+                tail = visit(tile + 1, next, tail);
+            }
+        }
+    }
+
+    private int visit(int tile, int steps, int tail) {
+        if (!walls[tile] && distance[tile] == UNREACHABLE) {
+            distance[tile] = steps;
+            queue[tail++] = tile;
+        }
+        return tail;
+    }
+
+    /**
+     * @return the free neighbor closest to the target, or null if there is no way to get closer now
+     */
+    public Node next(int x, int y, AStartPathFinding.Overlay overlay) {
+        if (!inside(x, y)) {
+            return null;
+        }
+        int best = distance[index(x, y)];
+        Node next = null;
+        for (int[] offset : NEIGHBORHOOD) {
+            int neighborX = x + offset[0];
+            int neighborY = y + offset[1];
+            if (!inside(neighborX, neighborY)) {
+                continue;
+            }
+            int neighborDistance = distance[index(neighborX, neighborY)];
+            boolean target = neighborX == targetX && neighborY == targetY;
+            if (neighborDistance < best && (target || !overlay.isOccupied(neighborX, neighborY))) {
+                best = neighborDistance;
+                next = map.getNodeAt(neighborX, neighborY);
+            }
+        }
+        return next;
+    }
+
+    public int getDistance(int x, int y) {
+        return inside(x, y) ? distance[index(x, y)] : UNREACHABLE;
+    }
+
+    public int getTargetX() {
+        return targetX;
+    }
+
+    public int getTargetY() {
+        return targetY;
+    }
+
+    private boolean inside(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    private int index(int x, int y) {
+        return x * height + y;
+    }
+}
@@ -0,0 +1,97 @@
+package server.systems.world.entity.ai;
+
+import com.badlogic.gdx.utils.IntFloatMap;
+import com.badlogic.gdx.utils.IntArray;
+import shared.model.map.Map;
+
+/**
+ * NPCs of a map while they are not in the world: what each tile spawns ({@link Map#getNpcIndex(int, int)}) and the
+ * respawns that were pending when the map was emptied, with the time they had left. Spawning again gives every tile
+ * its NPC, or its respawn with the time it still has to wait.
+ */
+public class MapPopulation {
+
+    private final int map;
+    // npc index, x and y of each spawn
+    private final int[] spawns;
+    // tile of the spawn -> seconds left to respawn when the map was emptied
+    private final IntFloatMap respawns = new IntFloatMap();
+    private final int height;
+    private long despawnedAt;
+    private boolean spawned;
+
+    private MapPopulation(int map, int[] spawns, int height) {
+        this.map = map;
+        this.spawns = spawns;
+        this.height = height;
+    }
+
+    public static MapPopulation of(int number, Map map) {
+        IntArray spawns = new IntArray();
+        for (int x = 0; x < map.getWidth(); x++) {
+            for (int y = 0; y < map.getHeight(); y++) {
+                int npcIndex = map.getNpcIndex(x, y);
+                if (npcIndex > 0 && map.hasTile(x, y)) {
+                    spawns.addAll(npcIndex, x, y);
+                }
+            }
+        }
+        return new MapPopulation(number, spawns.toArray(), map.getHeight());
+    }
+
+    /**
+     * Create the NPCs of the map. Respawns keep counting while the map is empty, those that are due spawn now.
+     */
+    public void spawn(long now, Spawner spawner) {
+        float elapsed = spawned || despawnedAt == 0 ? 0 : (now - despawnedAt) / 1000f;
+        for (int i = 0; i < spawns.length; i += 3) {
+            int npcIndex = spawns[i];
+            int x = spawns[i + 1];
+            int y = spawns[i + 2];
+            float left = respawns.get(tile(x, y), 0) - elapsed;
+            if (left > 0) {
+                spawner.respawn(npcIndex, map, x, y, left);
+            } else {
+                spawner.npc(npcIndex, map, x, y);
+            }
+        }
+        respawns.clear();
+        spawned = true;
+    }
+
+    /**
+     * Keep a pending respawn of the map, before its entity is deleted
+     */
+    public void respawnPending(int x, int y, float time) {
+        respawns.put(tile(x, y), time);
+    }
+
+    /**
+     * The NPCs of the map were deleted, call after {@link #respawnPending(int, int, float)} for each respawn
+     */
+    public void despawned(long now) {
+        despawnedAt = now;
+        spawned = false;
+    }
+
+    public boolean isSpawned() {
+        return spawned;
+    }
+
+    /**
+     * @return NPCs the map has when spawned
+     */
+    public int size() {
+        return spawns.length / 3;
+    }
+
+    private int tile(int x, int y) {
+        return x * height + y;
+    }
+
+    public interface Spawner {
+        void npc(int npcIndex, int map, int x, int y);
+
+        void respawn(int npcIndex, int map, int x, int y, float time);
+    }
+}
@@ -5,18 +5,22 @@ import com.artemis.E;
 import com.artemis.annotations.Wire;
 import component.entity.character.states.Heading;
 import component.entity.character.status.Hit;
+import component.entity.npc.Dormant;
 import component.entity.npc.NPC;
 import component.position.WorldPos;
 import server.systems.world.IntervalFluidIteratingSystem;
 import server.systems.world.entity.combat.PhysicalCombatSystem;
 import server.systems.world.MapSystem;
+import server.systems.world.TargetAcquisition;
 import server.systems.network.EntityUpdateSystem;
 import server.utils.UpdateTo;
 import server.utils.WorldUtils;
 import shared.network.notifications.EntityUpdate;
 import shared.util.EntityUpdateBuilder;
 
+import java.util.LinkedHashSet;
 import java.util.Optional;
+import java.util.Set;
 
 import static com.artemis.E.E;
 import static server.utils.WorldUtils.WorldUtils;
@@ -30,13 +34,22 @@ public class NPCAttackSystem extends IntervalFluidIteratingSystem {
 
     // should interval be per npc?
     public NPCAttackSystem(float interval) {
-        super(Aspect.all(NPC.class, Hit.class, WorldPos.class, Heading.class), interval);
+        super(Aspect.all(NPC.class, Hit.class, WorldPos.class, Heading.class).exclude(Dormant.class), interval);
     }
 
+    /**
+     * Only the tiles next to the NPC can be attacked, the target it is chasing goes first
+     */
     @Override
     protected void process(E e) {
-        mapSystem
-                .getNearEntities(e.id())
+        WorldPos pos = e.getWorldPos();
+        Set<Integer> around = new LinkedHashSet<>();
+        int acquired = mapSystem.getTargets().getAcquired(e.id());
+        if (acquired != TargetAcquisition.NO_TARGET) {
+            around.add(acquired);
+        }
+        mapSystem.getSpatialIndex().query(pos.map, pos.x - 1, pos.y - 1, pos.x + 1, pos.y + 1, around::add);
+        around
                 .stream()
                 .filter(e2 -> E(e2) != null)
                 .filter(e2 -> !E(e2).hasNPC())
@@ -45,7 +58,6 @@ public class NPCAttackSystem extends IntervalFluidIteratingSystem {
                 .filter(e2 -> inRange(e.id(), e2))
                 .findFirst()
                 .ifPresent(target -> combatSystem.entityAttack(e.id(), Optional.of(target)));
-
     }
 
     private boolean inRange(int e, int e2) {
@@ -0,0 +1,151 @@
+package server.systems.world.entity.ai;
+
+import com.artemis.Aspect;
+import com.artemis.BaseSystem;
+import com.artemis.E;
+import com.artemis.annotations.Wire;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntMap;
+import com.esotericsoftware.minlog.Log;
+import component.entity.npc.NPC;
+import component.entity.npc.OriginPos;
+import component.entity.npc.Respawn;
+import component.position.WorldPos;
+import server.systems.world.MapSystem;
+import server.systems.world.WorldEntitiesSystem;
+import server.systems.world.entity.factory.EntityFactorySystem;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.artemis.E.E;
+
+/**
+ * NPCs exist only in maps players are close to. A map gets its NPCs the first time it wakes up
+ * ({@link DormancySystem#isAwake(int)}, or right away when a player enters it), and after it has been asleep for a while they are deleted and the map keeps
+ * its {@link MapPopulation}: the spawns of its tiles and the respawns that were pending.
+ */
+@Wire
+public class NPCPopulationSystem extends BaseSystem implements MapPopulation.Spawner {
+
+    public static final long DEFAULT_EMPTY_TIME = TimeUnit.MINUTES.toMillis(5);
+
+    private MapSystem mapSystem;
+    private DormancySystem dormancySystem;
+    private EntityFactorySystem entityFactorySystem;
+    private WorldEntitiesSystem worldEntitiesSystem;
+
+    private final IntMap<MapPopulation> populations = new IntMap<>();
+    // last time each spawned map was awake
+    private final IntMap<Long> lastAwake = new IntMap<>();
+    private final float interval;
+    private final long emptyTime;
+    private float acc;
+
+    public NPCPopulationSystem(float interval) {
+        this(interval, DEFAULT_EMPTY_TIME);
+    }
+
+    /**
+     * @param emptyTime ms a map must be asleep before its NPCs are deleted
+     */
+    public NPCPopulationSystem(float interval, long emptyTime) {
+        this.interval = interval;
+        this.emptyTime = emptyTime;
+    }
+
+    @Override
+    protected boolean checkProcessing() {
+        if (!mapSystem.isReady()) {
+            return false;
+        }
+        acc += getWorld().getDelta();
+        if (acc >= interval) {
+            acc -= interval;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    protected void processSystem() {
+        long now = System.currentTimeMillis();
+        for (Integer map : mapSystem.getMaps()) {
+            if (dormancySystem.isAwake(map)) {
+                awake(map, now);
+            } else if (lastAwake.containsKey(map) && now - lastAwake.get(map) >= emptyTime) {
+                lastAwake.remove(map);
+                despawn(map, now);
+            }
+        }
+    }
+
+    /**
+     * The map woke up between intervals, its NPCs are spawned now
+     */
+    public void awake(int map) {
+        if (mapSystem.isReady()) {
+            awake(map, System.currentTimeMillis());
+        }
+    }
+
+    private void awake(int map, long now) {
+        lastAwake.put(map, now);
+        MapPopulation population = getPopulation(map);
+        if (!population.isSpawned()) {
+            population.spawn(now, this);
+            Log.debug("NPC population", "Map " + map + " spawned " + population.size() + " NPCs");
+        }
+    }
+
+    private MapPopulation getPopulation(int map) {
+        MapPopulation population = populations.get(map);
+        if (population == null) {
+            population = MapPopulation.of(map, mapSystem.getMap(map));
+            populations.put(map, population);
+        }
+        return population;
+    }
+
+    // NPCs don't leave the map they spawned in, their origin tells which ones to delete
+    private void despawn(int map, long now) {
+        MapPopulation population = getPopulation(map);
+        IntArray npcs = new IntArray();
+        for (E npc : E.withAspect(Aspect.all(NPC.class, OriginPos.class, WorldPos.class))) {
+            if (npc.originPosMap() == map) {
+                npcs.add(npc.id());
+            }
+        }
+        for (E respawn : E.withAspect(Aspect.all(Respawn.class))) {
+            OriginPos pos = respawn.getRespawn().getPos();
+            if (pos != null && pos.map == map) {
+                population.respawnPending(pos.x, pos.y, respawn.respawnTime());
+                respawn.deleteFromWorld();
+            }
+        }
+        for (int i = 0; i < npcs.size; i++) {
+            worldEntitiesSystem.unregisterEntity(npcs.get(i));
+        }
+        population.despawned(now);
+        Log.debug("NPC population", "Map " + map + " despawned " + npcs.size + " NPCs");
+    }
+
+    @Override
+    public void npc(int npcIndex, int map, int x, int y) {
+        entityFactorySystem.createNPC(npcIndex, new WorldPos(x, y, map));
+    }
+
+    @Override
+    public void respawn(int npcIndex, int map, int x, int y, float time) {
+        E(world.create())
+                .respawnTime(time)
+                .respawnNpcId(npcIndex)
+                .respawnPos(new OriginPos(x, y, map));
+    }
+
+    /**
+     * @return maps with their NPCs in the world
+     */
+    public int getSpawnedMaps() {
+        return lastAwake.size;
+    }
+}
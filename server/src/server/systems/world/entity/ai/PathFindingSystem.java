@@ -2,25 +2,26 @@ package server.systems.world.entity.ai;
 
 import com.artemis.Aspect;
 import com.artemis.E;
-import com.artemis.EBag;
 import com.artemis.annotations.Wire;
+import com.badlogic.gdx.utils.TimeUtils;
 import com.esotericsoftware.minlog.Log;
 import component.entity.character.Character;
 import component.entity.character.states.Immobile;
 import component.entity.npc.AIMovement;
+import component.entity.npc.Dormant;
 import component.entity.npc.NPC;
-import component.entity.world.Footprint;
 import component.movement.Destination;
 import component.physics.AOPhysics;
 import component.position.WorldPos;
 import server.systems.world.IntervalFluidIteratingSystem;
 import server.systems.world.MapSystem;
+import server.systems.world.TargetAcquisition;
+import server.systems.world.TileOccupancy;
 import server.systems.world.WorldEntitiesSystem;
 import server.systems.network.EntityUpdateSystem;
 import server.utils.UpdateTo;
 import server.utils.WorldUtils;
 import shared.model.map.Map;
-import shared.model.map.Tile;
 import shared.network.movement.MovementNotification;
 import shared.network.notifications.EntityUpdate;
 import shared.util.EntityUpdateBuilder;
@@ -34,61 +35,76 @@ import static server.utils.WorldUtils.WorldUtils;
 @Wire
 public class PathFindingSystem extends IntervalFluidIteratingSystem {
 
-    private static final int MAX_DISTANCE_TARGET = 10;
     private MapSystem mapSystem;
     private EntityUpdateSystem entityUpdateSystem;
     private WorldEntitiesSystem worldEntitiesSystem;
 
-    private HashMap<Integer, AStarMap> maps = new HashMap<>();
+    // built once per map from the blocked tiles, occupancy is checked while searching
+    private final HashMap<Integer, AStartPathFinding> pathFinders = new HashMap<>();
+    // maps with characters in this interval
+    private final Set<Integer> activeMaps = new HashSet<>();
+    private volatile WorldPathFinding worldPathFinding;
 
     public PathFindingSystem(float interval) {
-        super(Aspect.all(NPC.class, WorldPos.class, AIMovement.class).exclude(Character.class, Footprint.class, Immobile.class), interval);
+        super(Aspect.all(NPC.class, WorldPos.class, AIMovement.class).exclude(Character.class, Immobile.class, Dormant.class), interval);
     }
 
-    private AStarMap updateMap(Integer map) {
-        Set<Integer> entitiesInMap = mapSystem.getEntitiesInMap(map);
-        if (entitiesInMap.stream().noneMatch(e -> E.E(e).isCharacter())) {
-            return maps.get(map);
-        }
-        // TODO can we update on each move instead of create all again?
-        AStarMap starMap = createStarMap(map);
-        maps.put(map, starMap);
-        return starMap;
+    @Override
+    protected void initialize() {
+        super.initialize();
+        // maps never change once loaded, the portals are measured in the background
+        MapHelper helper = mapSystem.getHelper();
+        helper.loadAll().thenRunAsync(() -> {
+            int maxMaps = helper.getMaps().keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+            worldPathFinding = WorldPathFinding.build(map -> helper.hasMap(map) ? helper.getMap(map) : null,
+                    helper.getTopology(), maxMaps);
+        }).exceptionally(error -> {
+            Log.error("World path finding", "Failed to build the portals between maps", error);
+            return null;
+        });
     }
 
     @Override
     protected void begin() {
-        mapSystem.getMaps().forEach(this::updateMap);
+        pathFinders.values().forEach(AStartPathFinding::releaseUnusedFlowFields);
+        activeMaps.clear();
+        for (Integer map : mapSystem.getMaps()) {
+            if (mapSystem.getEntitiesInMap(map).stream().anyMatch(e -> E.E(e).isCharacter())) {
+                activeMaps.add(map);
+            }
+        }
     }
 
     @Override
     protected void process(E e) {
         WorldPos origin = e.getWorldPos();
-        if (!maps.containsKey(origin.map)) {
+        if (!activeMaps.contains(origin.map)) {
             return;
         }
-        AStarMap aStarMap = maps.get(origin.map);
-        Optional<E> target1 = findTarget(origin);
+        AStartPathFinding pathFinding = getPathFinding(origin.map);
+        Optional<E> target1 = findTarget(e);
         WorldPos targetPos = target1.map(E::getWorldPos).orElse(e.getOriginPos().toWorldPos());
         if (targetPos.equals(e.getWorldPos())) {
             return;
         } else if (target1.isEmpty() && WorldUtils.WorldUtils(world).distance(origin, e.getOriginPos().toWorldPos()) < 10) {
             return;
         }
-        makeYourMove(e, origin, targetPos, aStarMap);
+        makeYourMove(e, origin, targetPos, target1.isPresent(), pathFinding);
     }
 
-    private void makeYourMove(E e, WorldPos origin, WorldPos targetPos, AStarMap map) {
-        boolean originWasWall = map.getNodeAt(origin.x, origin.y).isWall;
-        boolean targetWasWall = map.getNodeAt(targetPos.x, targetPos.y).isWall;
-        map.getNodeAt(origin.x, origin.y).isWall = false;
-        map.getNodeAt(targetPos.x, targetPos.y).isWall = false;
-        AStartPathFinding aStartPathFinding = new AStartPathFinding(map);
-        Node from = aStartPathFinding.map.getNodeAt(origin.x, origin.y);
-        Node nextNode = aStartPathFinding.findNextNode(origin, targetPos);
+    /**
+     * NPCs chasing a character follow the flow field of its tile, shared by all of them; going back to their origin
+     * is a search of their own
+     */
+    private void makeYourMove(E e, WorldPos origin, WorldPos targetPos, boolean chasing, AStartPathFinding pathFinding) {
+        if (targetPos.map != origin.map) {
+            return;
+        }
+        Node from = pathFinding.map.getNodeAt(origin.x, origin.y);
+        Node nextNode = chasing
+                ? pathFinding.followFlowField(origin, targetPos)
+                : pathFinding.findNextNode(origin, targetPos);
         move(e, from, nextNode);
-        map.getNodeAt(origin.x, origin.y).isWall = originWasWall;
-        map.getNodeAt(targetPos.x, targetPos.y).isWall = targetWasWall;
     }
 
     private void move(E e, Node from, Node nextNode) {
@@ -130,9 +146,8 @@ public class PathFindingSystem extends IntervalFluidIteratingSystem {
 
         Map map = mapSystem.getMap(nextPos.map);
         boolean blocked = mapSystem.getHelper().isBlocked(map, nextPos);
-        boolean occupied = mapSystem.getHelper().hasEntity(mapSystem.getNearEntities(entityId), nextPos);
-        Tile tile = MapHelper.getTile(map, nextPos);
-        if (player.hasImmobile() || blocked || occupied || (tile != null && tile.getTileExit() != null)) {
+        boolean occupied = !mapSystem.getOccupancy().isFree(nextPos);
+        if (player.hasImmobile() || blocked || occupied || MapHelper.getTileExit(map, nextPos) != null) {
             nextPos = oldPos;
         }
 
@@ -148,40 +163,45 @@ public class PathFindingSystem extends IntervalFluidIteratingSystem {
         }
     }
 
-    private Optional<E> findTarget(WorldPos worldPos) {
-        Set<E> all = new HashSet<>();
-        EBag es = E.withAspect(Aspect.all(Character.class));
-        es.forEach(all::add);
-        return all.stream()
-                .filter(E::hasWorldPos)
-                .filter(e -> e.healthMin() != 0 )
-                .filter(e -> {
-                    int distance = WorldUtils(world).distance(e.getWorldPos(), worldPos);
-                    return distance < MAX_DISTANCE_TARGET && distance >= 0;
-                })
-                .min(Comparator.comparingInt(e -> WorldUtils(world).distance(e.getWorldPos(), worldPos)));
+    // closest player around, kept while it is in range (see TargetAcquisition)
+    private Optional<E> findTarget(E e) {
+        WorldPos pos = e.getWorldPos();
+        int target = mapSystem.getTargets().getTarget(e.id(), pos.map, pos.x, pos.y, TimeUtils.millis());
+        return target == TargetAcquisition.NO_TARGET ? Optional.empty() : Optional.of(E.E(target));
+    }
+
+    private AStartPathFinding getPathFinding(int map) {
+        return pathFinders.computeIfAbsent(map, this::createPathFinding);
     }
 
-    private AStarMap createStarMap(int map) {
+    // blocked tiles and exits never change, characters and NPCs are looked up in the occupancy on each search
+    private AStartPathFinding createPathFinding(int map) {
         Map realMap = mapSystem.getMap(map);
         int height = realMap.getHeight();
         int width = realMap.getWidth();
 
         AStarMap aMap = new AStarMap(width, height);
         MapHelper helper = mapSystem.getHelper();
-        Set<Integer> entitiesInMap = mapSystem.getEntitiesInMap(map);
-        for (int x = 1; x < width; x++) {
-            for (int y = 1; y < height; y++) {
-                Node nodeAt = aMap.getNodeAt(x, y);
-                Tile tile = realMap.getTile(x, y);
-                nodeAt.isWall = tile == null || helper.isBlocked(realMap, x, y) || helper.hasEntity(entitiesInMap, new WorldPos(x, y, map));
+        WorldPos pos = new WorldPos(0, 0, map);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                pos.x = x;
+                pos.y = y;
+                aMap.getNodeAt(x, y).isWall = helper.isBlocked(realMap, x, y) || MapHelper.getTileExit(realMap, pos) != null;
             }
         }
-
-        return aMap;
+        TileOccupancy occupancy = mapSystem.getOccupancy();
+        return new AStartPathFinding(aMap, (x, y) -> !occupancy.isFree(map, x, y));
     }
 
     public AStarMap getMap(int map) {
-        return maps.get(map);
+        return getPathFinding(map).map;
+    }
+
+    /**
+     * @return path finding across maps, or null while it is being built after the maps load. Use it from the game thread
+     */
+    public WorldPathFinding getWorldPathFinding() {
+        return worldPathFinding;
     }
 }
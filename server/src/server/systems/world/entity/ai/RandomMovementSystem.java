@@ -4,6 +4,7 @@ import com.artemis.Aspect;
 import com.artemis.E;
 import com.artemis.annotations.Wire;
 import com.artemis.systems.IteratingSystem;
+import component.entity.npc.Dormant;
 import component.movement.Destination;
 import component.movement.RandomMovement;
 import component.physics.AOPhysics;
@@ -35,7 +36,7 @@ public class RandomMovementSystem extends IteratingSystem {
     private EntityUpdateSystem entityUpdateSystem;
 
     public RandomMovementSystem() {
-        super(Aspect.all(RandomMovement.class));
+        super(Aspect.all(RandomMovement.class).exclude(Dormant.class));
     }
 
     private static Optional<AOPhysics.Movement> randomMovement() {
@@ -64,7 +65,7 @@ public class RandomMovementSystem extends IteratingSystem {
 
         Map map = mapSystem.getMap(nextPos.map);
         boolean blocked = mapSystem.getHelper().isBlocked(map, nextPos);
-        boolean occupied = mapSystem.getHelper().hasEntity(mapSystem.getNearEntities(entityId), nextPos);
+        boolean occupied = !mapSystem.getOccupancy().isFree(nextPos);
         if (player.hasImmobile() || blocked || occupied) {
             nextPos = oldPos;
         }
@@ -0,0 +1,514 @@
+package server.systems.world.entity.ai;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.LongMap;
+import com.esotericsoftware.minlog.Log;
+import component.position.WorldPos;
+import shared.model.map.Map;
+import shared.model.map.WorldPosition;
+import shared.util.WorldTopology;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Path finding across maps, in two levels. The only way to another map is stepping on a tile exit, so the exits of
+ * each map are grouped in portals: exit tiles that lead to the same map, from the same walkable area to the same
+ * walkable area (so any tile of a portal reaches the same places as the others). When the world is
+ * built, a BFS from each portal gives the steps between the portals of a map, the edges of a small graph of portals.
+ * <p>
+ * A query runs a BFS in the map of each end and an A* over the portals, and the path is a list of waypoints: the
+ * exit tile of each portal to walk to, in its own map, and then the destination. Walking to each waypoint is left to
+ * the path finding of that map ({@link AStartPathFinding}). Paths go through the middle tile of each portal, so they
+ * can be a few steps longer than the shortest one. The A* estimates the steps left with the {@link WorldTopology}
+ * built from the neighbours of each map: the distance to the destination, or to the closest door (an exit that jumps
+ * somewhere else of the world) plus from the closest door arrival to the destination, whichever is shorter.
+ * <p>
+ * Queries reuse their buffers, they must run in one thread (the game thread).
+ */
+public class WorldPathFinding {
+
+    public static final int UNREACHABLE = -1;
+
+    private static final byte WALKABLE = 0;
+    private static final byte WALL = 1;
+    private static final byte EXIT = 2;
+    private static final int INFINITE = Integer.MAX_VALUE;
+    private static final int MAX_PORTAL_TILES = 32;
+
+    private final IntMap<MapTiles> maps = new IntMap<>();
+    private final List<Portal> portals = new ArrayList<>();
+    private final WorldTopology topology;
+    // exits that don't lead to the tile next to them in the topology
+    private final List<Portal> doors = new ArrayList<>();
+
+    // query buffers
+    private int[] fromDistance = new int[0];
+    private int[] toDistance = new int[0];
+    private int[] queue = new int[0];
+    private int[] portalCost = new int[0];
+    private int[] portalParent = new int[0];
+    private long[] heap = new long[16];
+
+    private WorldPathFinding(WorldTopology topology) {
+        this.topology = topology;
+    }
+
+    /**
+     * Group the exits of every map in portals and measure the steps between the portals of each map.
+     *
+     * @param maps returns the map for a number, or null if it doesn't exist
+     */
+    public static WorldPathFinding build(IntFunction<Map> maps, int maxMaps) {
+        return build(maps, WorldTopology.build(maps, maxMaps), maxMaps);
+    }
+
+    /**
+     * @param topology layout of the same maps, to estimate the steps left while searching
+     */
+    public static WorldPathFinding build(IntFunction<Map> maps, WorldTopology topology, int maxMaps) {
+        long start = System.currentTimeMillis();
+        WorldPathFinding world = new WorldPathFinding(topology);
+        IntMap<int[]> components = new IntMap<>();
+        for (int number = 1; number <= maxMaps; number++) {
+            Map map = maps.apply(number);
+            if (map != null) {
+                MapTiles tiles = new MapTiles(map);
+                world.maps.put(number, tiles);
+                components.put(number, tiles.components());
+            }
+        }
+        for (IntMap.Entry<MapTiles> entry : world.maps.entries()) {
+            world.findPortals(entry.key, entry.value, components);
+        }
+        for (Portal portal : world.portals) {
+            MapTiles destination = world.maps.get(portal.destinationMap);
+            if (destination != null) {
+                destination.incoming.add(portal.id);
+            }
+        }
+        world.findDoors();
+        int edges = 0;
+        for (IntMap.Entry<MapTiles> entry : world.maps.entries()) {
+            edges += world.connect(entry.value);
+        }
+        Log.info("World path finding", String.format("%d portals and %d edges in %dms", world.portals.size(), edges,
+                System.currentTimeMillis() - start));
+        return world;
+    }
+
+    // join the exit tiles of the map with the same destination and areas, the middle one represents them
+    private void findPortals(int number, MapTiles tiles, IntMap<int[]> components) {
+        int[] component = components.get(number);
+        int[] around = new int[4];
+        LongMap<IntArray> groups = new LongMap<>();
+        for (int tile = 0; tile < tiles.kind.length; tile++) {
+            if (tiles.kind[tile] != EXIT || !reachable(tiles, tile, around)) {
+                continue;
+            }
+            long key = portalKey(tiles, tile, component, components);
+            IntArray group = groups.get(key);
+            if (group == null) {
+                group = new IntArray();
+                groups.put(key, group);
+            }
+            group.add(tile);
+        }
+        for (IntArray group : groups.values()) {
+            // long borders are split, so paths don't all go through the middle of the border
+            for (int first = 0; first < group.size; first += MAX_PORTAL_TILES) {
+                int last = Math.min(group.size, first + MAX_PORTAL_TILES) - 1;
+                int middle = group.get((first + last) / 2);
+                WorldPosition exit = tiles.exits.get(middle);
+                Portal portal = new Portal(portals.size(), number, middle / tiles.height, middle % tiles.height,
+                        exit.getMap(), exit.getX(), exit.getY());
+                portals.add(portal);
+                tiles.portals.add(portal.id);
+            }
+        }
+    }
+
+    // exits with no walkable tile next to them can't be used
+    private static boolean reachable(MapTiles tiles, int tile, int[] around) {
+        for (int neighbor : tiles.neighbors(tile / tiles.height, tile % tiles.height, around)) {
+            if (neighbor >= 0 && tiles.kind[neighbor] == WALKABLE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // destination map, area of the map next to the exit and area it leads to
+    private long portalKey(MapTiles tiles, int tile, int[] component, IntMap<int[]> components) {
+        int from = area(tiles, tile, component);
+        WorldPosition exit = tiles.exits.get(tile);
+        MapTiles destination = maps.get(exit.getMap());
+        int to = -1;
+        if (destination != null && destination.inside(exit.getX(), exit.getY())) {
+            to = area(destination, destination.index(exit.getX(), exit.getY()), components.get(exit.getMap()));
+        }
+        return ((long) exit.getMap() << 40) ^ ((long) (from & 0xFFFFF) << 20) ^ (to & 0xFFFFF);
+    }
+
+    // walkable area of the tile, or of the first walkable tile next to it (exits, blocked arrivals)
+    private static int area(MapTiles tiles, int tile, int[] component) {
+        if (tiles.kind[tile] == WALKABLE) {
+            return component[tile];
+        }
+        for (int neighbor : tiles.neighbors(tile / tiles.height, tile % tiles.height, new int[4])) {
+            if (neighbor >= 0 && tiles.kind[neighbor] == WALKABLE) {
+                return component[neighbor];
+            }
+        }
+        return -1;
+    }
+
+    // crossing a neighbour border keeps the global position, doors jump; each portal keeps how far is the closest door
+    private void findDoors() {
+        for (Portal portal : portals) {
+            if (globalDistance(portal.map, portal.x, portal.y, portal.destinationMap, portal.destinationX, portal.destinationY) > 1) {
+                doors.add(portal);
+            }
+        }
+        for (Portal portal : portals) {
+            for (Portal door : doors) {
+                int distance = globalDistance(portal.destinationMap, portal.destinationX, portal.destinationY, door.map, door.x, door.y);
+                portal.doorDistance = Math.min(portal.doorDistance, distance);
+            }
+        }
+    }
+
+    // manhattan distance in the topology, INFINITE if the maps are not connected through neighbours
+    private int globalDistance(int map1, int x1, int y1, int map2, int x2, int y2) {
+        if (map1 == map2) {
+            return Math.abs(x1 - x2) + Math.abs(y1 - y2);
+        }
+        if (!topology.isConnected(map1, map2)) {
+            return INFINITE;
+        }
+        return Math.abs(topology.getGlobalX(map1, x1) - topology.getGlobalX(map2, x2))
+                + Math.abs(topology.getGlobalY(map1, y1) - topology.getGlobalY(map2, y2));
+    }
+
+    // a BFS from each portal of the map gives the cost from every portal arriving here to it
+    private int connect(MapTiles tiles) {
+        int edges = 0;
+        IntArray[] next = new IntArray[tiles.incoming.size];
+        IntArray[] cost = new IntArray[tiles.incoming.size];
+        for (int i = 0; i < tiles.incoming.size; i++) {
+            next[i] = new IntArray();
+            cost[i] = new IntArray();
+        }
+        int[] distance = new int[tiles.kind.length];
+        for (int p = 0; p < tiles.portals.size; p++) {
+            Portal to = portals.get(tiles.portals.get(p));
+            bfs(tiles, tiles.index(to.x, to.y), distance);
+            for (int i = 0; i < tiles.incoming.size; i++) {
+                Portal from = portals.get(tiles.incoming.get(i));
+                if (!tiles.inside(from.destinationX, from.destinationY)) {
+                    continue;
+                }
+                int steps = distance[tiles.index(from.destinationX, from.destinationY)];
+                if (steps != INFINITE) {
+                    next[i].add(to.id);
+                    cost[i].add(steps);
+                    edges++;
+                }
+            }
+        }
+        for (int i = 0; i < tiles.incoming.size; i++) {
+            Portal from = portals.get(tiles.incoming.get(i));
+            from.next = next[i].toArray();
+            from.cost = cost[i].toArray();
+        }
+        return edges;
+    }
+
+    /**
+     * Steps of the path {@link #findPath(WorldPos, WorldPos)} returns. It goes through the middle tile of each portal,
+     * so it is an upper bound of the shortest distance, a few steps over it.
+     *
+     * @return steps from one position to the other, or {@link #UNREACHABLE}
+     */
+    public int getDistance(WorldPos from, WorldPos to) {
+        return search(from, to, null);
+    }
+
+    /**
+     * @return exit tiles to step on, each in the map reached through the previous one, and the destination last.
+     * Empty if the destination can't be reached.
+     */
+    public List<WorldPos> findPath(WorldPos from, WorldPos to) {
+        List<WorldPos> path = new ArrayList<>();
+        return search(from, to, path) == UNREACHABLE ? Collections.emptyList() : path;
+    }
+
+    private int search(WorldPos from, WorldPos to, List<WorldPos> path) {
+        MapTiles fromTiles = maps.get(from.map);
+        MapTiles toTiles = maps.get(to.map);
+        if (fromTiles == null || toTiles == null || !fromTiles.inside(from.x, from.y) || !toTiles.inside(to.x, to.y)) {
+            return UNREACHABLE;
+        }
+        fromDistance = ensure(fromDistance, fromTiles.kind.length);
+        toDistance = ensure(toDistance, toTiles.kind.length);
+        bfs(fromTiles, fromTiles.index(from.x, from.y), fromDistance);
+        bfs(toTiles, toTiles.index(to.x, to.y), toDistance);
+
+        int best = from.map == to.map ? fromDistance[toTiles.index(to.x, to.y)] : INFINITE;
+        int bestPortal = -1;
+        portalCost = ensure(portalCost, portals.size());
+        portalParent = ensure(portalParent, portals.size());
+        Arrays.fill(portalCost, 0, portals.size(), INFINITE);
+        int fromDoors = INFINITE;
+        for (Portal door : doors) {
+            fromDoors = Math.min(fromDoors, globalDistance(door.destinationMap, door.destinationX, door.destinationY, to.map, to.x, to.y));
+        }
+        int heapSize = 0;
+        for (int i = 0; i < fromTiles.portals.size; i++) {
+            Portal portal = portals.get(fromTiles.portals.get(i));
+            int steps = fromDistance[fromTiles.index(portal.x, portal.y)];
+            int estimate = estimate(portal, to, fromDoors);
+            if (steps != INFINITE && estimate != INFINITE) {
+                portalCost[portal.id] = steps;
+                portalParent[portal.id] = -1;
+                heapSize = push(heapSize, steps + estimate, portal.id);
+            }
+        }
+        while (heapSize > 0) {
+            long top = heap[0];
+            heapSize = pop(heapSize);
+            int estimated = (int) (top >>> 32);
+            int id = (int) top;
+            if (estimated >= best) {
+                break;
+            }
+            Portal portal = portals.get(id);
+            int cost = portalCost[id];
+            if (estimated != cost + estimate(portal, to, fromDoors)) {
+                continue;
+            }
+            if (portal.destinationMap == to.map && toTiles.inside(portal.destinationX, portal.destinationY)) {
+                int steps = toDistance[toTiles.index(portal.destinationX, portal.destinationY)];
+                if (steps != INFINITE && cost + steps < best) {
+                    best = cost + steps;
+                    bestPortal = id;
+                }
+            }
+            if (portal.next == null) {
+                continue;
+            }
+            for (int i = 0; i < portal.next.length; i++) {
+                int next = portal.next[i];
+                int nextCost = cost + portal.cost[i];
+                int estimate = estimate(portals.get(next), to, fromDoors);
+                if (nextCost < portalCost[next] && estimate != INFINITE) {
+                    portalCost[next] = nextCost;
+                    portalParent[next] = id;
+                    heapSize = push(heapSize, nextCost + estimate, next);
+                }
+            }
+        }
+        if (best == INFINITE) {
+            return UNREACHABLE;
+        }
+        if (path != null) {
+            for (int id = bestPortal; id != -1; id = portalParent[id]) {
+                Portal portal = portals.get(id);
+                path.add(new WorldPos(portal.x, portal.y, portal.map));
+            }
+            Collections.reverse(path);
+            path.add(new WorldPos(to.x, to.y, to.map));
+        }
+        return best;
+    }
+
+    // fewest steps left from the arrival of the portal, INFINITE if the destination can't be reached from there
+    private int estimate(Portal portal, WorldPos to, int fromDoors) {
+        int direct = globalDistance(portal.destinationMap, portal.destinationX, portal.destinationY, to.map, to.x, to.y);
+        if (portal.doorDistance == INFINITE || fromDoors == INFINITE) {
+            return direct;
+        }
+        return Math.min(direct, portal.doorDistance + fromDoors);
+    }
+
+    // steps from the tile to every tile of the map; exits are reached but not crossed
+    private void bfs(MapTiles tiles, int start, int[] distance) {
+        Arrays.fill(distance, 0, tiles.kind.length, INFINITE);
+        queue = ensure(queue, tiles.kind.length);
+        int head = 0;
+        int tail = 0;
+        distance[start] = 0;
+        queue[tail++] = start;
+        while (head < tail) {
+            int tile = queue[head++];
+            if (tile != start && tiles.kind[tile] == EXIT) {
+                continue;
+            }
+            int next = distance[tile] + 1;
+            int x = tile / tiles.height;
+            int y = tile % tiles.height;
+            // tile index is x * height + y
+            if (x > 0) {
+                tail = visit(tiles, tile - tiles.height, next, distance, tail);
+            }
+            if (x < tiles.width - 1) {
+                tail = visit(tiles, tile + tiles.height, next, distance, tail);
+            }
+            if (y > 0) {
+                tail = visit(tiles, tile - 1, next, distance, tail);
+            }
+            if (y < tiles.height - 1) {
+                tail = visit(tiles, tile + 1, next, distance, tail);
+            }
+        }
+    }
+
+    private int visit(MapTiles tiles, int tile, int steps, int[] distance, int tail) {
+        if (tiles.kind[tile] != WALL && distance[tile] == INFINITE) {
+            distance[tile] = steps;
+            queue[tail++] = tile;
+        }
+        return tail;
+    }
+
+    private int push(int size, int cost, int id) {
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size * 2);
+        }
+        long value = ((long) cost << 32) | id;
+        int i = size;
+        while (i > 0 && heap[(i - 1) / 2] > value) {
+            heap[i] = heap[(i - 1) / 2];
+            i = (i - 1) / 2;
+        }
+        heap[i] = value;
+        return size + 1;
+    }
+
+    private int pop(int size) {
+        long last = heap[--size];
+        int i = 0;
+        while (2 * i + 1 < size) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (heap[child] >= last) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+        return size;
+    }
+
+    private static int[] ensure(int[] array, int size) {
+        return array.length >= size ? array : new int[size];
+    }
+
+    public int getPortalCount() {
+        return portals.size();
+    }
+
+    private static class Portal {
+        private final int id;
+        private final int map;
+        private final int x;
+        private final int y;
+        private final int destinationMap;
+        private final int destinationX;
+        private final int destinationY;
+        // portals of the destination map reachable from the arrival tile, and the steps to them
+        private int[] next;
+        private int[] cost;
+        // to the closest door, in the topology
+        private int doorDistance = INFINITE;
+
+        private Portal(int id, int map, int x, int y, int destinationMap, int destinationX, int destinationY) {
+            this.id = id;
+            this.map = map;
+            this.x = x;
+            this.y = y;
+            this.destinationMap = destinationMap;
+            this.destinationX = destinationX;
+            this.destinationY = destinationY;
+        }
+    }
+
+    private static class MapTiles {
+        private final int width;
+        private final int height;
+        private final byte[] kind;
+        private final IntMap<WorldPosition> exits = new IntMap<>();
+        private final IntArray portals = new IntArray();
+        // portals of other maps that arrive here
+        private final IntArray incoming = new IntArray();
+
+        private MapTiles(Map map) {
+            width = map.getWidth();
+            height = map.getHeight();
+            kind = new byte[width * height];
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) {
+                    // same tiles as MapHelper.isBlocked, the first row and column are outside the map
+                    WorldPosition exit = map.getTileExit(x, y);
+                    if (x == 0 || y == 0 || map.isBlocked(x, y)) {
+                        kind[index(x, y)] = WALL;
+                    } else if (exit != null) {
+                        kind[index(x, y)] = EXIT;
+                        exits.put(index(x, y), exit);
+                    }
+                }
+            }
+        }
+
+        // walkable areas of the map, by tile
+        private int[] components() {
+            int[] component = new int[kind.length];
+            Arrays.fill(component, -1);
+            IntArray stack = new IntArray();
+            int[] around = new int[4];
+            int count = 0;
+            for (int tile = 0; tile < kind.length; tile++) {
+                if (kind[tile] != WALKABLE || component[tile] != -1) {
+                    continue;
+                }
+                component[tile] = count;
+                stack.add(tile);
+                while (stack.size > 0) {
+                    int current = stack.pop();
+                    for (int neighbor : neighbors(current / height, current % height, around)) {
+                        if (neighbor >= 0 && kind[neighbor] == WALKABLE && component[neighbor] == -1) {
+                            component[neighbor] = count;
+                            stack.add(neighbor);
+                        }
+                    }
+                }
+                count++;
+            }
+            return component;
+        }
+
+        // -1 outside the map
+        private int[] neighbors(int x, int y, int[] neighbors) {
+            neighbors[0] = x > 0 ? index(x - 1, y) : -1;
+            neighbors[1] = x < width - 1 ? index(x + 1, y) : -1;
+            neighbors[2] = y > 0 ? index(x, y - 1) : -1;
+            neighbors[3] = y < height - 1 ? index(x, y + 1) : -1;
+            return neighbors;
+        }
+
+        private boolean inside(int x, int y) {
+            return x >= 0 && x < width && y >= 0 && y < height;
+        }
+
+        private int index(int x, int y) {
+            return x * height + y;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.artemis.BaseSystem;
 import com.artemis.E;
 import com.artemis.annotations.Wire;
 import component.entity.character.status.Stamina;
+import server.systems.account.UserSystem;
 import server.systems.world.entity.user.ModifierSystem;
 import server.systems.world.entity.factory.SoundEntitySystem;
 import server.systems.world.WorldEntitiesSystem;
@@ -24,6 +25,7 @@ public abstract class AbstractCombatSystem extends BaseSystem implements CombatS
     protected EntityUpdateSystem entityUpdateSystem;
     protected SoundEntitySystem soundEntitySystem;
     protected ModifierSystem modifierSystem;
+    protected UserSystem userSystem;
 
     public static final int STAMINA_REQUIRED_PERCENT = 15;
 
@@ -89,6 +91,7 @@ public abstract class AbstractCombatSystem extends BaseSystem implements CombatS
         if (userEntity.hasStamina()) {
             Stamina stamina = userEntity.getStamina();
             stamina.min = Math.max(0, stamina.min - stamina.max * STAMINA_REQUIRED_PERCENT / 100);
+            userSystem.changed(entityId, Stamina.class);
             EntityUpdate update = EntityUpdateBuilder.of(entityId).withComponents(stamina).build();
             entityUpdateSystem.add(update, UpdateTo.ENTITY);
         }
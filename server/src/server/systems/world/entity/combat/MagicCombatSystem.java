@@ -4,7 +4,9 @@ import com.artemis.E;
 import com.artemis.annotations.Wire;
 import com.esotericsoftware.minlog.Log;
 import component.console.ConsoleMessage;
+import component.entity.character.attributes.Agility;
 import component.entity.character.attributes.Attribute;
+import component.entity.character.attributes.Strength;
 import component.entity.character.states.Buff;
 import component.entity.character.states.Immobile;
 import component.entity.character.status.Health;
@@ -15,6 +17,7 @@ import component.entity.world.Dialog;
 import component.physics.AttackAnimation;
 import component.position.WorldPos;
 import net.mostlyoriginal.api.system.core.PassiveSystem;
+import server.systems.account.UserSystem;
 import server.systems.config.ObjectSystem;
 import server.systems.world.entity.training.CharacterTrainingSystem;
 import server.systems.network.EntityUpdateSystem;
@@ -51,6 +54,7 @@ public class MagicCombatSystem extends PassiveSystem {
     private EffectEntitySystem effectEntitySystem;
     private MessageSystem messageSystem;
     private SoundEntitySystem soundEntitySystem;
+    private UserSystem userSystem;
 
     public void spell(int userId, Spell spell, WorldPos targetPos, long timestamp) {
         Optional<Integer> target = getTarget(userId, targetPos, timestamp);
@@ -81,10 +85,7 @@ public class MagicCombatSystem extends PassiveSystem {
     }
 
     private boolean footprintOf(Integer entity, WorldPos worldPos, long timestamp) {
-        final Set<Integer> footprints = mapSystem.getEntitiesFootprints().get(entity);
-        return footprints != null && footprints
-                .stream()
-                .anyMatch(footprint -> worldPos.equals(E(footprint).getWorldPos()) && (timestamp - E(footprint).getFootprint().timestamp <= TIME_TO_MOVE_1_TILE));
+        return mapSystem.getPositionHistory().wasAt(entity, worldPos, timestamp - TIME_TO_MOVE_1_TILE);
     }
 
     // TODO refactor what elements/components to send
@@ -129,6 +130,7 @@ public class MagicCombatSystem extends PassiveSystem {
                     damage = calculateMagicDamage( playerId, target, spell );
                     health.min += damage;
                     health.min = Math.max( 0, health.min );
+                    userSystem.changed( target, Health.class );
                     victimUpdateToAllBuilder.withComponents( CombatMessage.magic( damage > 0 ? "+" : "-" + Math.abs( damage ) ) );
                     victimUpdateBuilder.withComponents( health );
                     if(damage > 0) {
@@ -149,6 +151,7 @@ public class MagicCombatSystem extends PassiveSystem {
                     }
 
                     stamina.min -= requiredStamina;
+                    userSystem.changed( playerId, Stamina.class );
                     playerUpdateBuilder.withComponents( stamina );
 
                     updateMana( playerId, requiredMana, mana );
@@ -166,11 +169,13 @@ public class MagicCombatSystem extends PassiveSystem {
 
                 } else if(spell.isImmobilize()) {/*Inmovilizar*/
                         targetEntity.immobile();
+                        userSystem.changed( target, Immobile.class );
                         victimUpdateToAllBuilder.withComponents( targetEntity.getImmobile() );
                         updateMana( playerId, requiredMana, mana );
                  } else if(spell.isRemoveParalysis()) {
                     if(targetEntity.isImmobile()) {
                         targetEntity.immobile( false );
+                        userSystem.changed( target, Immobile.class );
                         victimUpdateToAllBuilder.remove( Immobile.class );
                         updateMana( playerId, requiredMana, mana );
                     } else {
@@ -182,6 +187,8 @@ public class MagicCombatSystem extends PassiveSystem {
                     int random = new Random().nextInt( spell.getMaxStrength() - spell.getMinStrength() + 1 ) + spell.getMinStrength();
                     targetEntity.strengthCurrentValue( targetEntity.strengthCurrentValue() + random );
                     targetEntity.buff().buffAddAttribute( targetEntity.getStrength(), spell.getStrengthDuration() );
+                    userSystem.changed( target, Strength.class );
+                    userSystem.changed( target, Buff.class );
                     sendAttributeUpdate( target, targetEntity.getStrength(), targetEntity.getBuff() );
                     updateMana( playerId, requiredMana, mana );
 
@@ -190,6 +197,8 @@ public class MagicCombatSystem extends PassiveSystem {
                     int random = new Random().nextInt( spell.getMaxAgility() - spell.getMinAgility() + 1 ) + spell.getMinAgility();
                     targetEntity.agilityCurrentValue( targetEntity.agilityCurrentValue() + random );
                     targetEntity.buff().buffAddAttribute( targetEntity.getAgility(), spell.getAgilityDuration() );
+                    userSystem.changed( target, Agility.class );
+                    userSystem.changed( target, Buff.class );
                     sendAttributeUpdate( target, targetEntity.getAgility(), targetEntity.getBuff() );
                     updateMana( playerId, requiredMana, mana );
 
@@ -231,6 +240,7 @@ public class MagicCombatSystem extends PassiveSystem {
 
     private void updateMana(int playerId, int requiredMana, Mana mana) {
         mana.min -= requiredMana;
+        userSystem.changed(playerId, Mana.class);
         // update mana
         EntityUpdate update = EntityUpdateBuilder.of(playerId).withComponents(mana).build();
         entityUpdateSystem.add(update, UpdateTo.ENTITY);
@@ -212,10 +212,7 @@ public class PhysicalCombatSystem extends AbstractCombatSystem {
     }
 
     private boolean footprintOf(Integer entity, WorldPos worldPos, long timestamp) {
-        final Set<Integer> footprints = mapSystem.getEntitiesFootprints().get(entity);
-        return footprints != null && footprints
-                .stream()
-                .anyMatch(footprint -> worldPos.equals(E(footprint).getWorldPos()) && timestamp - E(footprint).getFootprint().timestamp < TIME_TO_MOVE_1_TILE);
+        return mapSystem.getPositionHistory().wasAt(entity, worldPos, timestamp - TIME_TO_MOVE_1_TILE + 1);
     }
 
     @Override
@@ -238,6 +235,7 @@ public class PhysicalCombatSystem extends AbstractCombatSystem {
         int effectiveDamage = Math.min(health.min, result);
         characterTrainingSystem.userTakeDamage(userId, entityId, effectiveDamage);
         health.min = Math.max(0, health.min - result);
+        userSystem.changed(entityId, Health.class);
         sendFX(entityId);
         if (health.min > 0) {
             update(entityId);
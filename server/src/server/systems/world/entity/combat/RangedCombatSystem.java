@@ -65,6 +65,7 @@ public class RangedCombatSystem extends AbstractCombatSystem {
         E e = E(userId);
         Stamina stamina = e.getStamina();
         stamina.min = Math.max(0, stamina.min - stamina.max * STAMINA_REQUIRED_PERCENT / 120);
+        userSystem.changed(userId, Stamina.class);
         EntityUpdate update = EntityUpdateBuilder.of(userId).withComponents(stamina).build();
 
         entityUpdateSystem.add(update, UpdateTo.ENTITY);
@@ -96,10 +97,7 @@ public class RangedCombatSystem extends AbstractCombatSystem {
     }
 
     private boolean footprintOf(Integer entity, WorldPos worldPos, long timestamp) {
-        final Set<Integer> footprints = mapSystem.getEntitiesFootprints().get(entity);
-        return footprints != null && footprints
-                .stream()
-                .anyMatch(footprint -> worldPos.equals(E(footprint).getWorldPos()) && (timestamp - E(footprint).getFootprint().timestamp <= TIME_TO_MOVE_1_TILE));
+        return mapSystem.getPositionHistory().wasAt(entity, worldPos, timestamp - TIME_TO_MOVE_1_TILE);
     }
 
     @Override
@@ -291,6 +289,7 @@ public class RangedCombatSystem extends AbstractCombatSystem {
         int effectiveDamage = Math.min(health.min, result);
         characterTrainingSystem.userTakeDamage(userId, entityId, effectiveDamage);
         health.min = Math.max(0, health.min - result);
+        userSystem.changed(entityId, Health.class);
         sendFX(entityId);
         if (health.min > 0) {
             update(entityId);
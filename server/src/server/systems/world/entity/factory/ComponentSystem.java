@@ -15,7 +15,6 @@ import component.entity.character.status.*;
 import component.entity.combat.AttackPower;
 import component.entity.combat.EvasionPower;
 import component.entity.npc.*;
-import component.entity.world.Footprint;
 import component.physics.AttackInterval;
 import component.physics.UseInterval;
 import net.mostlyoriginal.api.system.core.PassiveSystem;
@@ -37,11 +36,11 @@ public class ComponentSystem extends PassiveSystem {
         // remove server only components
         allClasses.remove(Clear.class);
         allClasses.remove(AIMovement.class);
+        allClasses.remove(Dormant.class);
         allClasses.remove(Attackable.class);
         allClasses.remove(Hostile.class);
         allClasses.remove(OriginPos.class);
         allClasses.remove(Respawn.class);
-        allClasses.remove(Footprint.class);
         allClasses.remove(AttackInterval.class);
         allClasses.remove(UseInterval.class);
 
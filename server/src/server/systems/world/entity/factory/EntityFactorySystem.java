@@ -15,6 +15,7 @@ import server.systems.config.NPCSystem;
 import server.systems.config.ObjectSystem;
 import server.systems.config.SpellSystem;
 import server.systems.world.MapSystem;
+import server.systems.world.TileOccupancy;
 import server.systems.world.WorldEntitiesSystem;
 import shared.interfaces.CharClass;
 import shared.interfaces.Hero;
@@ -613,8 +614,9 @@ public class EntityFactorySystem extends PassiveSystem {
         if (helper.isBlocked(map, newSpot)) {
             return false;
         }
-        boolean hasItem = (item && helper.isObjTileBusy(mapSystem.getEntities(newSpot), newSpot));
-        boolean hasEntity = helper.hasEntity(mapSystem.getEntities(newSpot), newSpot);
+        TileOccupancy occupancy = mapSystem.getOccupancy();
+        boolean hasItem = (item && occupancy.hasObject(newSpot));
+        boolean hasEntity = !occupancy.isFree(newSpot);
 
         return !hasEntity && !hasItem;
     }
@@ -7,9 +7,11 @@ import component.entity.character.info.Bag;
 import component.entity.world.Object;
 import component.position.WorldPos;
 import net.mostlyoriginal.api.system.core.PassiveSystem;
+import server.systems.account.UserSystem;
 import server.systems.network.MessageSystem;
 import server.systems.network.ServerSystem;
 import server.systems.world.MapSystem;
+import server.systems.world.TileOccupancy;
 import server.systems.world.WorldEntitiesSystem;
 import shared.interfaces.Intervals;
 import shared.network.inventory.InventoryUpdate;
@@ -24,6 +26,7 @@ public class ItemActionSystem extends PassiveSystem {
     private MessageSystem messageSystem;
     private MapSystem mapSystem;
     private WorldEntitiesSystem worldEntitiesSystem;
+    private UserSystem userSystem;
 
     public void useItem(int connectionId, int action, int slot) {
         int playerId = serverSystem.getPlayerByConnection(connectionId);
@@ -52,25 +55,21 @@ public class ItemActionSystem extends PassiveSystem {
         int playerId = serverSystem.getPlayerByConnection(connectionId);
         E player = E.E(playerId);
         WorldPos playerPos = player.getWorldPos();
-        mapSystem.getNearEntities(playerId)
-                .stream()
-                .filter(entityId -> {
-                    WorldPos entityPos = E.E(entityId).getWorldPos();
-                    return E.E(entityId).hasObject() && entityPos.x == playerPos.x && entityPos.y == playerPos.y;
-                })
-                .findFirst()
-                .ifPresent(objectEntityId -> {
-                    Object object = E.E(objectEntityId).getObject();
-                    int index = player.getBag().add(object.index, object.count, false);
-                    if (index >= 0) {
-                        Log.info("Adding item to index: " + index);
-                        InventoryUpdate update = new InventoryUpdate();
-                        update.add(index, player.bagItems()[index]);
-                        serverSystem.sendTo(connectionId, update);
-                        worldEntitiesSystem.unregisterEntity(objectEntityId);
-                    } else {
-                        Log.info("Could not put item in inventory (FULL?)");
-                    }
-                });
+        int objectEntityId = mapSystem.getOccupancy().getObject(playerPos.map, playerPos.x, playerPos.y);
+        if (objectEntityId == TileOccupancy.EMPTY) {
+            return;
+        }
+        Object object = E.E(objectEntityId).getObject();
+        int index = player.getBag().add(object.index, object.count, false);
+        if (index >= 0) {
+            Log.info("Adding item to index: " + index);
+            InventoryUpdate update = new InventoryUpdate();
+            update.add(index, player.bagItems()[index]);
+            userSystem.bagChanged(playerId);
+            serverSystem.sendTo(connectionId, update);
+            worldEntitiesSystem.unregisterEntity(objectEntityId);
+        } else {
+            Log.info("Could not put item in inventory (FULL?)");
+        }
     }
 }
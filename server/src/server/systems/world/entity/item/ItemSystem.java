@@ -8,10 +8,12 @@ import component.entity.character.attributes.Agility;
 import component.entity.character.attributes.Attribute;
 import component.entity.character.attributes.Strength;
 import component.entity.character.info.Bag;
+import component.entity.character.info.SpellBook;
 import component.entity.character.states.Buff;
 import component.entity.character.status.Health;
 import component.entity.character.status.Mana;
 import net.mostlyoriginal.api.system.core.PassiveSystem;
+import server.systems.account.UserSystem;
 import server.systems.config.ObjectSystem;
 import server.systems.world.WorldEntitiesSystem;
 import server.systems.network.EntityUpdateSystem;
@@ -41,6 +43,7 @@ public class ItemSystem extends PassiveSystem {
     private WorldEntitiesSystem worldEntitiesSystem;
     private EntityUpdateSystem entityUpdateSystem;
     private SoundEntitySystem soundEntitySystem;
+    private UserSystem userSystem;
 
     public ItemSystem() { }
 
@@ -87,6 +90,7 @@ public class ItemSystem extends PassiveSystem {
                             Agility agility = E( player ).getAgility();
                             agility.setCurrentValue( agility.getBaseValue() + random );
                             E( player ).buff().getBuff().addAttribute( agility, potion.getEffecTime() );
+                            userSystem.changed( player, agility, E( player ).getBuff() );
                             sendAttributeUpdate( player, agility, E( player ).getBuff() );
                             break;
                         case POISON:
@@ -94,9 +98,11 @@ public class ItemSystem extends PassiveSystem {
                             Strength strength = E( player ).getStrength();
                             strength.setCurrentValue( strength.getBaseValue() + random );
                             E( player ).buff().getBuff().addAttribute( strength, potion.getEffecTime() );
+                            userSystem.changed( player, strength, E( player ).getBuff() );
                             sendAttributeUpdate( player, strength, E( player ).getBuff() );
                             break;
                     }
+                    userSystem.changed( player, components.toArray( new Component[0] ) );
                     // Notify update to user
                     EntityUpdate update = EntityUpdateBuilder.of( player ).withComponents( components.toArray( new Component[0] ) ).build();
                     entityUpdateSystem.add( update, UpdateTo.ENTITY );
@@ -107,6 +113,7 @@ public class ItemSystem extends PassiveSystem {
                     SpellObj spellObj = (SpellObj) obj;
                     if(E( player ).charHeroHeroId() != 0) {
                         E( player ).spellBookAddSpell( spellObj.getSpellIndex() );
+                        userSystem.changed( player, SpellBook.class );
                     }
                     if(E( player ).getSpellBook().getMsj().equals( "hechiso agregado" )){
                         soundEntitySystem.add(player, 109);
@@ -119,6 +126,7 @@ public class ItemSystem extends PassiveSystem {
                     int gold = item.count + playerUser.getGold().getCount();
                     playerUser.goldCount( gold );
                     removeGold( player );
+                    userSystem.bagChanged( player );
                     break;
             }
         } );
@@ -154,6 +162,7 @@ public class ItemSystem extends PassiveSystem {
         InventoryUpdate update = new InventoryUpdate();
         // TODO convert InventoryUpdate into EntityUpdate
         modifyUserEquip(player, item, index, update);
+        userSystem.bagChanged(player);
         worldEntitiesSystem.sendEntityUpdate(player, update);
     }
 
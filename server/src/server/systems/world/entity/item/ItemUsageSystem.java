@@ -3,10 +3,13 @@ package server.systems.world.entity.item;
 import com.artemis.Component;
 import com.artemis.E;
 import com.artemis.annotations.Wire;
+import component.entity.character.equipment.Armor;
 import component.entity.character.equipment.Helmet;
 import component.entity.character.equipment.Shield;
 import component.entity.character.equipment.Weapon;
+import component.entity.character.parts.Body;
 import net.mostlyoriginal.api.system.core.PassiveSystem;
+import server.systems.account.UserSystem;
 import server.systems.world.entity.factory.EntityFactorySystem;
 import server.systems.world.WorldEntitiesSystem;
 import server.systems.network.EntityUpdateSystem;
@@ -30,6 +33,7 @@ public class ItemUsageSystem extends PassiveSystem {
     private WorldEntitiesSystem worldEntitiesSystem;
     private EntityUpdateSystem entityUpdateSystem;
     private EntityFactorySystem entityFactorySystem;
+    private UserSystem userSystem;
 
     public final BiConsumer<Integer, Obj> WEAR = wear();
     public final BiConsumer<Integer, Obj> TAKE_OFF = takeOff();
@@ -42,16 +46,20 @@ public class ItemUsageSystem extends PassiveSystem {
             E entity = E(player);
             if (obj instanceof WeaponObj) {
                 entity.removeWeapon();
+                userSystem.changed(player, Weapon.class);
                 remove(player, Weapon.class);
             } else if (obj instanceof ArmorObj) {
                 Hero hero = Hero.getHeroes().get(entity.getCharHero().heroId);
                 entityFactorySystem.setNakedBody(entity, Race.values()[hero.getRaceId()]);
+                userSystem.changed(player, Body.class);
                 update(player, entity.getBody());
             } else if (obj instanceof HelmetObj) {
                 entity.removeHelmet();
+                userSystem.changed(player, Helmet.class);
                 remove(player, Helmet.class);
             } else if (obj instanceof ShieldObj) {
                 entity.removeShield();
+                userSystem.changed(player, Shield.class);
                 remove(player, Shield.class);
             }
         };
@@ -62,16 +70,20 @@ public class ItemUsageSystem extends PassiveSystem {
             E entity = E(player);
             if (obj instanceof WeaponObj) {
                 entity.weaponIndex(obj.getId());
+                userSystem.changed(player, Weapon.class);
                 update(player, entity.getWeapon());
             } else if (obj instanceof ArmorObj) {
                 entity.bodyIndex(((ArmorObj) obj).getBodyNumber());
                 entity.armorIndex(obj.getId());
+                userSystem.changed(player, Armor.class);
                 update(player, entity.getBody());
             } else if (obj instanceof HelmetObj) {
                 entity.helmetIndex(obj.getId());
+                userSystem.changed(player, Helmet.class);
                 update(player, entity.getHelmet());
             } else if (obj instanceof ShieldObj) {
                 entity.shieldIndex(obj.getId());
+                userSystem.changed(player, Shield.class);
                 update(player, entity.getShield());
             }
         };
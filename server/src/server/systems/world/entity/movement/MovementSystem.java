@@ -3,10 +3,12 @@ package server.systems.world.entity.movement;
 import com.artemis.E;
 import com.artemis.annotations.Wire;
 import com.esotericsoftware.minlog.Log;
+import component.entity.character.states.Heading;
 import component.movement.Destination;
 import component.physics.AOPhysics;
 import component.position.WorldPos;
 import net.mostlyoriginal.api.system.core.PassiveSystem;
+import server.systems.account.UserSystem;
 import server.systems.network.ServerSystem;
 import server.systems.network.EntityUpdateSystem;
 import server.systems.world.MapSystem;
@@ -14,7 +16,6 @@ import server.systems.world.WorldEntitiesSystem;
 import server.utils.UpdateTo;
 import server.utils.WorldUtils;
 import shared.model.map.Map;
-import shared.model.map.Tile;
 import shared.model.map.WorldPosition;
 import shared.network.movement.MovementNotification;
 import shared.network.movement.MovementResponse;
@@ -31,6 +32,7 @@ public class MovementSystem extends PassiveSystem {
     private WorldEntitiesSystem worldEntitiesSystem;
     private MapSystem mapSystem;
     private EntityUpdateSystem entityUpdateSystem;
+    private UserSystem userSystem;
 
     public void move(int connectionId, int movementIndex, int requestNumber) {
         int playerId = serverSystem.getPlayerByConnection(connectionId);
@@ -51,12 +53,11 @@ public class MovementSystem extends PassiveSystem {
         boolean blocked = mapSystem.getHelper().isBlocked(map, nextPos);
 
         // Hay un jugador en esta pos?
-        boolean occupied = mapSystem.getHelper().hasEntity(mapSystem.getNearEntities(playerId), nextPos);
+        boolean occupied = !mapSystem.getOccupancy().isFree(nextPos);
 
         // Obtengo prox. pos disponible
         if (!(player.hasImmobile() || blocked || occupied)) {
-            Tile tile = mapSystem.getMap(nextPos.map).getTile(nextPos.x, nextPos.y);
-            WorldPosition tileExit = tile.getTileExit();
+            WorldPosition tileExit = mapSystem.getMap(nextPos.map).getTileExit(nextPos.x, nextPos.y);
             if (tileExit != null) {
                 Log.info("Moving to exit tile: " + tileExit);
                 nextPos = new WorldPos(tileExit.getX(), tileExit.getY(), tileExit.getMap());
@@ -70,6 +71,7 @@ public class MovementSystem extends PassiveSystem {
         }
 
         mapSystem.movePlayer(playerId, Optional.of(oldPos));
+        userSystem.changed(playerId, nextPos.equals(oldPos) ? Heading.class : WorldPos.class);
 
         // notify near users
         if (!nextPos.equals(oldPos)) {
@@ -2,7 +2,9 @@ package server.systems.world.entity.npc;
 
 import com.artemis.E;
 import com.artemis.annotations.Wire;
+import component.entity.character.status.Health;
 import net.mostlyoriginal.api.system.core.PassiveSystem;
+import server.systems.account.UserSystem;
 import server.systems.config.NPCSystem;
 import server.systems.network.ServerSystem;
 import server.systems.world.WorldEntitiesSystem;
@@ -17,6 +19,7 @@ public class NPCActionSystem extends PassiveSystem {
     private WorldEntitiesSystem worldEntitiesSystem;
     private ServerSystem serverSystem;
     private NPCSystem npcSystem;
+    private UserSystem userSystem;
 
     // TODO refactor, use npc types instead of names
     public void interact(int connectionId, int targetEntity) {
@@ -29,6 +32,7 @@ public class NPCActionSystem extends PassiveSystem {
                 } else {
                     E entity = E(playerId);
                     entity.getHealth().min = entity.getHealth().max;
+                    userSystem.changed(playerId, Health.class);
                     EntityUpdateBuilder resetUpdate = EntityUpdateBuilder.of(playerId);
                     resetUpdate.withComponents(entity.getHealth());
                     worldEntitiesSystem.sendEntityUpdate(playerId, resetUpdate.build());
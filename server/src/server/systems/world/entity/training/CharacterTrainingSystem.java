@@ -8,6 +8,7 @@ import component.entity.character.status.Health;
 import component.entity.character.status.Level;
 import component.entity.world.CombatMessage;
 import net.mostlyoriginal.api.system.core.PassiveSystem;
+import server.systems.account.UserSystem;
 import server.systems.world.entity.factory.EffectEntitySystem;
 import server.systems.world.entity.user.ModifierSystem;
 import server.systems.world.entity.factory.SoundEntitySystem;
@@ -43,6 +44,7 @@ public class CharacterTrainingSystem extends PassiveSystem {
     private EffectEntitySystem effectEntitySystem;
     private MessageSystem messageSystem;
     private ModifierSystem modifierSystem;
+    private UserSystem userSystem;
 
     public void userTakeDamage(int entityId, int target, int effectiveDamage) {
         int exp = getExp(target, effectiveDamage);
@@ -53,6 +55,7 @@ public class CharacterTrainingSystem extends PassiveSystem {
             Level level = e.getLevel();
             level.exp += exp;
             userCheckLevel(entityId);
+            userSystem.changed(entityId, level);
         }
     }
 
@@ -61,6 +64,7 @@ public class CharacterTrainingSystem extends PassiveSystem {
         E e = E(userId);
         if (e.hasGold()) {
             e.getGold().setCount(e.getGold().getCount() + gold);
+            userSystem.changed(userId, e.getGold());
             EntityUpdate update = EntityUpdateBuilder
                     .of(userId)
                     .withComponents(e.getGold(), CombatMessage.energy("+" + gold))
@@ -124,6 +128,8 @@ public class CharacterTrainingSystem extends PassiveSystem {
         float health = addHealth(userId);
         Pair<Integer, Integer> hit = addHit(userId);
         int stamina = addStamina(userId);
+        E e = E(userId);
+        userSystem.changed(userId, e.getHealth(), e.getMana(), e.getHit(), e.getStamina());
         // notify user
         notifyUpgrade(userId, mana, health, hit, stamina);
         // Log.info("hp: "+ health + "mAna" + mana + "hit: " + hit);
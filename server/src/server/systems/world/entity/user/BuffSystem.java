@@ -5,6 +5,7 @@ import com.artemis.E;
 import com.artemis.FluidIteratingSystem;
 import com.artemis.annotations.Wire;
 import component.entity.character.states.Buff;
+import server.systems.account.UserSystem;
 import server.systems.world.WorldEntitiesSystem;
 import server.systems.network.EntityUpdateSystem;
 import server.utils.UpdateTo;
@@ -15,6 +16,7 @@ public class BuffSystem extends FluidIteratingSystem {
 
     private WorldEntitiesSystem worldEntitiesSystem;
     private EntityUpdateSystem entityUpdateSystem;
+    private UserSystem userSystem;
 
     public BuffSystem() {
         super(Aspect.all(Buff.class));
@@ -33,10 +35,12 @@ public class BuffSystem extends FluidIteratingSystem {
 
             if (time <= 0) {
                 attribute.resetCurrentValue();
+                userSystem.changed(e.id(), attribute.getClass());
                 EntityUpdateBuilder update = EntityUpdateBuilder.of(e.id()).withComponents(attribute);
                 buff.getBuffedAtributes().remove(attribute);
                 if (buff.getBuffedAtributes().isEmpty()) {
                     e.removeBuff();
+                    userSystem.changed(e.id(), Buff.class);
                     update.remove(Buff.class);
                 } else {
                     update.withComponents(buff);
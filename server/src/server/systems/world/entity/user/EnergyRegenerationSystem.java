@@ -4,6 +4,7 @@ import com.artemis.Aspect;
 import com.artemis.E;
 import com.artemis.annotations.Wire;
 import component.entity.character.status.Stamina;
+import server.systems.account.UserSystem;
 import server.systems.world.IntervalFluidIteratingSystem;
 import server.systems.network.EntityUpdateSystem;
 import server.utils.UpdateTo;
@@ -14,6 +15,7 @@ import shared.util.EntityUpdateBuilder;
 public class EnergyRegenerationSystem extends IntervalFluidIteratingSystem {
 
     private EntityUpdateSystem entityUpdateSystem;
+    private UserSystem userSystem;
 
     public static final int REGENERATION_PERCENT = 10;
 
@@ -28,6 +30,7 @@ public class EnergyRegenerationSystem extends IntervalFluidIteratingSystem {
             int missingStamina = stamina.max - stamina.min;
             int recoveredStamina = stamina.max * REGENERATION_PERCENT / 100;
             stamina.min = Math.min(stamina.min + recoveredStamina, stamina.max);
+            userSystem.changed(e.id(), Stamina.class);
 
             // notify user
             EntityUpdate update = EntityUpdateBuilder.of(e.id()).withComponents(stamina).build();
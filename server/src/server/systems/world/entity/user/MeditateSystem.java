@@ -8,6 +8,7 @@ import component.entity.character.states.Meditating;
 import component.entity.character.status.Mana;
 import component.entity.world.CombatMessage;
 import component.graphic.Effect;
+import server.systems.account.UserSystem;
 import server.systems.world.IntervalFluidIteratingSystem;
 import server.systems.world.entity.factory.EffectEntitySystem;
 import server.systems.world.entity.factory.SoundEntitySystem;
@@ -35,6 +36,7 @@ public class MeditateSystem extends IntervalFluidIteratingSystem {
     private MessageSystem messageSystem;
     private SoundEntitySystem soundEntitySystem;
     private EffectEntitySystem effectEntitySystem;
+    private UserSystem userSystem;
 
     public MeditateSystem(float timer) {
         super(Aspect.all(Meditating.class, Mana.class), timer);
@@ -53,6 +55,7 @@ public class MeditateSystem extends IntervalFluidIteratingSystem {
                 mana.min += mana.max * MANA_RECOVERY_PERCENT;
                 mana.min = Math.min(mana.min, mana.max);
                 int recoveredMana = mana.min - manaMin;
+                userSystem.changed(player.id(), Mana.class);
 
                 CombatMessage manaMessage = CombatMessage.magic("+" + recoveredMana);
                 notify.withComponents(manaMessage);
@@ -101,6 +104,7 @@ public class MeditateSystem extends IntervalFluidIteratingSystem {
                 effectEntitySystem.addEffect(userId, Constants.MEDITATE_NW_FX, Effect.LOOP_INFINITE);
                 soundEntitySystem.add(player.id(), 18, true);
                 player.meditating();
+                userSystem.changed(userId, Meditating.class);
                 consoleMessage = ConsoleMessage.info(Messages.MEDITATE_START.name());
                 update.withComponents(player.getMeditating());
             }
@@ -113,6 +117,7 @@ public class MeditateSystem extends IntervalFluidIteratingSystem {
         effectEntitySystem.removeEffect(userId, Constants.MEDITATE_NW_FX);
         soundEntitySystem.remove(userId, 18);
         E(userId).removeMeditating();
+        userSystem.changed(userId, Meditating.class);
     }
 
 }
@@ -7,6 +7,7 @@ import component.entity.character.info.Bag;
 import component.entity.world.Dialog;
 import component.position.WorldPos;
 import net.mostlyoriginal.api.system.core.PassiveSystem;
+import server.systems.account.UserSystem;
 import server.systems.world.entity.combat.MagicCombatSystem;
 import server.systems.world.entity.combat.PhysicalCombatSystem;
 import server.systems.world.entity.combat.RangedCombatSystem;
@@ -39,6 +40,7 @@ public class PlayerActionSystem extends PassiveSystem {
     private MessageSystem messageSystem;
     private CommandSystem commandSystem;
     private EntityUpdateSystem entityUpdateSystem;
+    private UserSystem userSystem;
 
     public void drop(int connectionId, int count, WorldPos position, int slot) {
         int playerId = serverSystem.getPlayerByConnection(connectionId);
@@ -60,6 +62,7 @@ public class PlayerActionSystem extends PassiveSystem {
             bag.remove(slot);
         }
         update.add(slot, bag.items[slot]); // should remove item if count <= 0
+        userSystem.bagChanged(playerId);
         serverSystem.sendTo(serverSystem.getConnectionByPlayer(playerId), update);
 
         // Add new obj component.entity to world
@@ -0,0 +1,256 @@
+package server.utils;
+
+import com.esotericsoftware.minlog.Log;
+import server.database.CharacterJournal;
+import server.database.storage.Storage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes charfiles and their summaries to the {@link Storage} behind the game thread, on a single thread so each
+ * character is written in order. A snapshot that arrives while the previous one of the same character is still queued replaces it, so only the last
+ * one is written. The queue has a limit in chars: {@link #offer(String, String, String, long)} rejects snapshots over it (they can
+ * be taken again later), while {@link #put(String, String, String, long)} always queues, for logouts and new
+ * characters. Once written, the {@link CharacterJournal} is told which of its events the snapshot included.
+ * <p>
+ * The charfile and the summary are two puts, not one atomic write. If the server dies between them the charfile is
+ * newer than the summary: the summary is only what the account shows of the character, and it is fixed by the next
+ * save, or by {@link CharacterJournal#replay(Storage)} if the character had events after its last snapshot.
+ */
+public class CharfileWriter {
+
+    private final Storage storage;
+    private final CharacterJournal journal;
+    private final LinkedHashMap<String, Snapshot> pending = new LinkedHashMap<>();
+    private final long maxPendingChars;
+    private long pendingChars;
+    // being written right now, still the latest content of that character
+    private String writingName;
+    private Snapshot writing;
+    private boolean closed;
+    private boolean draining;
+    private final Thread thread;
+
+    /**
+     * @param maxPendingChars limit of queued content, in chars
+     */
+    public CharfileWriter(Storage storage, CharacterJournal journal, long maxPendingChars) {
+        this.storage = storage;
+        this.journal = journal;
+        this.maxPendingChars = maxPendingChars;
+        thread = new Thread(this::run, "charfile-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queue the snapshot if there is room
+     *
+     * @return false if the queue is full
+     */
+    public synchronized boolean offer(String name, String charfile, String summary, long sequence) {
+        Snapshot previous = pending.get(name);
+        long size = pendingChars - (previous == null ? 0 : previous.length()) + charfile.length() + summary.length();
+        if (size > maxPendingChars && previous == null) {
+            return false;
+        }
+        put(name, charfile, summary, sequence);
+        return true;
+    }
+
+    /**
+     * Queue the snapshot even if the queue is full
+     *
+     * @param sequence {@link CharacterJournal#sequence()} when the snapshot was taken
+     */
+    public synchronized void put(String name, String charfile, String summary, long sequence) {
+        Snapshot previous = pending.remove(name);
+        if (previous != null) {
+            pendingChars -= previous.length();
+        }
+        Snapshot snapshot = new Snapshot(charfile, summary, sequence);
+        pending.put(name, snapshot);
+        pendingChars += snapshot.length();
+        notifyAll();
+    }
+
+    /**
+     * Queue the summary of a character saved before there were summaries. It is written only if the storage still has
+     * none by then, and a snapshot of the character queued later replaces it.
+     */
+    public synchronized void putSummaryIfAbsent(String name, String summary) {
+        if (latest(name) != null) {
+            return;
+        }
+        Snapshot snapshot = new Snapshot(null, summary, 0);
+        pending.put(name, snapshot);
+        pendingChars += snapshot.length();
+        notifyAll();
+    }
+
+    /**
+     * @return the last charfile of the character not written yet, or null if the storage is up to date
+     */
+    public synchronized String pending(String name) {
+        Snapshot snapshot = latest(name);
+        return snapshot == null ? null : snapshot.charfile;
+    }
+
+    /**
+     * @return the last summary of the character not written yet, or null if the storage is up to date
+     */
+    public synchronized String pendingSummary(String name) {
+        Snapshot snapshot = latest(name);
+        return snapshot == null ? null : snapshot.summary;
+    }
+
+    private Snapshot latest(String name) {
+        Snapshot snapshot = pending.get(name);
+        return snapshot != null || !name.equals(writingName) ? snapshot : writing;
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * Wait until everything queued is written
+     */
+    public synchronized void flush() throws InterruptedException {
+        while (!pending.isEmpty() || writingName != null) {
+            wait();
+        }
+    }
+
+    /**
+     * Write what is queued and stop
+     */
+    public void close() throws InterruptedException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        thread.join();
+    }
+
+    /**
+     * Stop the writer thread and write everything queued in parallel, for the shutdown. There is only one snapshot of
+     * each character in the queue, so they can be written in any order.
+     *
+     * @param timeoutMillis time to wait for the writes
+     * @return characters that weren't written in time or failed
+     */
+    public Collection<String> drain(Executor executor, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (this) {
+            draining = true;
+            notifyAll();
+        }
+        // let it finish the character it is writing
+        thread.join(timeoutMillis);
+        Map<String, Snapshot> snapshots;
+        synchronized (this) {
+            snapshots = new LinkedHashMap<>(pending);
+            pending.clear();
+            pendingChars = 0;
+        }
+        Set<String> unwritten = ConcurrentHashMap.newKeySet();
+        unwritten.addAll(snapshots.keySet());
+        CountDownLatch written = new CountDownLatch(snapshots.size());
+        snapshots.forEach((name, snapshot) -> executor.execute(() -> {
+            try {
+                if (write(name, snapshot)) {
+                    unwritten.remove(name);
+                }
+            } finally {
+                written.countDown();
+            }
+        }));
+        written.await(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        List<String> result = new ArrayList<>(unwritten);
+        synchronized (this) {
+            if (writingName != null) {
+                result.add(writingName);
+            }
+        }
+        return result;
+    }
+
+    private void run() {
+        while (true) {
+            String name;
+            Snapshot snapshot;
+            synchronized (this) {
+                while (pending.isEmpty() && !closed && !draining) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.isEmpty() || draining) {
+                    return;
+                }
+                Iterator<Map.Entry<String, Snapshot>> iterator = pending.entrySet().iterator();
+                Map.Entry<String, Snapshot> next = iterator.next();
+                iterator.remove();
+                name = next.getKey();
+                snapshot = next.getValue();
+                pendingChars -= snapshot.length();
+                writingName = name;
+                writing = snapshot;
+            }
+            write(name, snapshot);
+            synchronized (this) {
+                writingName = null;
+                writing = null;
+                notifyAll();
+            }
+        }
+    }
+
+    private boolean write(String name, Snapshot snapshot) {
+        try {
+            if (snapshot.charfile == null) {
+                if (storage.get(Storage.SUMMARIES, name) == null && storage.exists(Storage.CHARACTERS, name)) {
+                    storage.put(Storage.SUMMARIES, name, snapshot.summary);
+                }
+                return true;
+            }
+            storage.put(Storage.CHARACTERS, name, snapshot.charfile);
+            storage.put(Storage.SUMMARIES, name, snapshot.summary);
+            journal.saved(name, snapshot.sequence);
+            return true;
+        } catch (RuntimeException e) {
+            Log.error("Failed to write charfile " + name, e);
+            return false;
+        }
+    }
+
+    private static class Snapshot {
+        // null if only the summary is written
+        private final String charfile;
+        private final String summary;
+        private final long sequence;
+
+        private Snapshot(String charfile, String summary, long sequence) {
+            this.charfile = charfile;
+            this.summary = summary;
+            this.sequence = sequence;
+        }
+
+        private long length() {
+            return (charfile == null ? 0 : charfile.length()) + summary.length();
+        }
+    }
+}
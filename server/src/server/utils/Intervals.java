@@ -5,5 +5,5 @@ public class Intervals {
     public static final float NPC_ATTACK_INTERVAL = 2.2f;
     public static final float ENERGY_REGENERATION_INTERVAL = 1f;
     public static final float MEDITATE_INTERVAL = 0.4f;
-    public static final int FOOTPRINT_LIVE_TIME = 500;
+    public static final float DORMANCY_INTERVAL = 1f;
 }
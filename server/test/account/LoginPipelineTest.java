@@ -0,0 +1,271 @@
+package account;
+
+import com.artemis.FluidEntityPlugin;
+import com.artemis.World;
+import com.artemis.WorldConfigurationBuilder;
+import com.artemis.annotations.Wire;
+import com.artemis.managers.TagManager;
+import com.esotericsoftware.minlog.Log;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import server.database.CharacterJournal;
+import server.database.storage.FileStorage;
+import server.database.storage.Storage;
+import server.systems.account.AccountSystem;
+import server.systems.account.LoginPipelineSystem;
+import server.systems.account.StorageSystem;
+import server.systems.account.UserSystem;
+import server.systems.network.ServerSystem;
+import server.systems.world.WorldEntitiesSystem;
+import server.systems.world.entity.factory.ComponentSystem;
+import server.systems.world.entity.factory.EntityFactorySystem;
+import server.utils.EntityJsonSerializer;
+import shared.network.account.AccountCreationResponse;
+import shared.network.account.AccountLoginResponse;
+import shared.network.user.UserCreateResponse;
+import shared.network.user.UserLoginResponse;
+import shared.util.Tick;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
+
+import static com.artemis.E.E;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Aca simulamos una rafaga de pedidos de cuentas y personajes (por ejemplo despues de reiniciar el servidor) contra los
+ * sistemas de verdad: {@link AccountSystem#createAccount}, {@link AccountSystem#login}, {@link UserSystem#create} y
+ * {@link UserSystem#login}, con el bcrypt del servidor (workload 12) y las cuentas y charfiles en disco. Todos los
+ * pedidos llegan en el mismo tick y despues el game thread solo vacia la cola del {@link LoginPipelineSystem}.
+ * Medimos cuanto tarda el tick mas lento del game thread en cada etapa, con {@link #LOGINS} logins a la vez, y falla si
+ * supera {@link Tick#TIME} o si algun pedido falla.
+ * La red, la creacion de personajes y la entrada al mundo se reemplazan por sistemas que solo cuentan las respuestas.
+ */
+class LoginPipelineTest {
+
+    private static final int LOGINS = 500;
+    private static final String PASSWORD = "password";
+
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private static final AtomicInteger answered = new AtomicInteger();
+    private static final AtomicInteger failed = new AtomicInteger();
+
+    private File root;
+    private World world;
+
+    @BeforeEach
+    void createWorld() throws IOException {
+        root = Files.createTempDirectory("login-test").toFile();
+        world = new World(new WorldConfigurationBuilder()
+                .with(new FluidEntityPlugin())
+                .with(new TagManager())
+                .with(new Responses())
+                .with(new EntityJsonSerializer())
+                .with(new UserSystem())
+                .with(new AccountSystem())
+                .with(new LoginPipelineSystem())
+                .with(new ComponentSystem())
+                .with(new Characters())
+                .with(new Players())
+                .with(new TempStorage(root))
+                .build());
+    }
+
+    @AfterEach
+    void disposeWorld() throws IOException {
+        world.dispose();
+        delete(root);
+    }
+
+    @Test
+    void burstOfLoginsFitsInTheTick() throws InterruptedException {
+        AccountSystem accountSystem = world.getSystem(AccountSystem.class);
+        UserSystem userSystem = world.getSystem(UserSystem.class);
+        LoginPipelineSystem pipeline = world.getSystem(LoginPipelineSystem.class);
+        // warm up
+        stages(accountSystem, userSystem, pipeline, "warmup", 10, false);
+        stages(accountSystem, userSystem, pipeline, "user", LOGINS, true);
+    }
+
+    private static void stages(AccountSystem accountSystem, UserSystem userSystem, LoginPipelineSystem pipeline, String prefix,
+                               int accounts, boolean check) throws InterruptedException {
+        burst("Crear cuentas", accounts, pipeline, check, i -> accountSystem.createAccount(i, prefix + i, email(prefix, i), PASSWORD));
+        burst("Login de cuentas", accounts, pipeline, check, i -> accountSystem.login(i, email(prefix, i), PASSWORD));
+        burst("Crear personajes", accounts, pipeline, check, i -> userSystem.create(i, name(prefix, i), 0, email(prefix, i), 0));
+        userSystem.flush();
+        burst("Login de personajes", accounts, pipeline, check, i -> userSystem.login(i, name(prefix, i)));
+    }
+
+    private static void burst(String stage, int requests, LoginPipelineSystem pipeline, boolean check, IntConsumer request) {
+        answered.set(0);
+        failed.set(0);
+        long tickNanos = (long) (Tick.TIME * TimeUnit.MILLISECONDS.toNanos(1));
+        long start = System.nanoTime();
+        // every request arrives in the first tick
+        long tickStart = threads.getCurrentThreadCpuTime();
+        for (int i = 0; i < requests; i++) {
+            request.accept(i);
+        }
+        pipeline.drain(LoginPipelineSystem.DEFAULT_TICK_BUDGET);
+        long worstTick = threads.getCurrentThreadCpuTime() - tickStart;
+        int ticks = 1;
+        while (answered.get() < requests) {
+            sleep(tickNanos);
+            tickStart = threads.getCurrentThreadCpuTime();
+            pipeline.drain(LoginPipelineSystem.DEFAULT_TICK_BUDGET);
+            worstTick = Math.max(worstTick, threads.getCurrentThreadCpuTime() - tickStart);
+            ticks++;
+        }
+        long total = System.nanoTime() - start;
+        if (!check) {
+            return;
+        }
+        Log.info("LoginPipelineTest", String.format("%s: %d pedidos en %d ticks, %dms en total, %d fallidos | tick mas lento %.2fms, limite %.2fms",
+                stage, requests, ticks, TimeUnit.NANOSECONDS.toMillis(total), failed.get(), worstTick / 1e6, Tick.TIME));
+        assertEquals(0, failed.get(), stage + ": fallaron pedidos");
+        assertTrue(worstTick <= tickNanos, String.format("%s: el tick mas lento tardo %.2fms, limite %.2fms", stage, worstTick / 1e6, Tick.TIME));
+    }
+
+    private static String email(String prefix, int i) {
+        return prefix + i + "@benchmark.com";
+    }
+
+    private static String name(String prefix, int i) {
+        return prefix + "pj" + i;
+    }
+
+    private static void sleep(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void delete(File root) throws IOException {
+        try (Stream<File> files = Files.walk(root.toPath()).sorted(Comparator.reverseOrder()).map(java.nio.file.Path::toFile)) {
+            files.forEach(File::delete);
+        }
+    }
+
+    /**
+     * Counts the responses instead of sending them, every connection is open and without player
+     */
+    @Wire(failOnNull = false)
+    private static class Responses extends ServerSystem {
+
+        @Override
+        protected void initialize() {
+        }
+
+        @Override
+        protected void processSystem() {
+        }
+
+        @Override
+        protected void dispose() {
+        }
+
+        @Override
+        public void sendTo(int id, Object packet) {
+            boolean successful = true;
+            if (packet instanceof AccountCreationResponse) {
+                successful = ((AccountCreationResponse) packet).isSuccessful();
+            } else if (packet instanceof AccountLoginResponse) {
+                successful = ((AccountLoginResponse) packet).isSuccessful();
+            } else if (packet instanceof UserCreateResponse) {
+                successful = ((UserCreateResponse) packet).isSuccessful();
+            } else if (packet instanceof UserLoginResponse) {
+                successful = ((UserLoginResponse) packet).isSuccessful();
+            }
+            if (!successful) {
+                failed.incrementAndGet();
+            }
+            answered.incrementAndGet();
+        }
+
+        @Override
+        public boolean isConnected(int connectionId) {
+            return true;
+        }
+
+        @Override
+        public boolean connectionHasNoPlayer(int connectionId) {
+            return true;
+        }
+    }
+
+    /**
+     * New characters only get what the charfile needs to be saved, there are no maps nor objects
+     */
+    @Wire(failOnNull = false)
+    private static class Characters extends EntityFactorySystem {
+
+        @Override
+        public int create(String name, int heroId) {
+            int player = world.create();
+            E(player)
+                    .character()
+                    .tag(name)
+                    .nameText(name)
+                    .charHeroHeroId(heroId);
+            return player;
+        }
+    }
+
+    /**
+     * The user logged in, it leaves the world so the next stage can log it in again
+     */
+    @Wire(failOnNull = false)
+    private static class Players extends WorldEntitiesSystem {
+
+        @Override
+        public void login(int connectionId, int entity) {
+            world.delete(entity);
+        }
+    }
+
+    /**
+     * Accounts and charfiles in a temporary directory instead of the one in the server configuration
+     */
+    @Wire(failOnNull = false)
+    private static class TempStorage extends StorageSystem {
+
+        private final Storage storage;
+        private final CharacterJournal journal;
+
+        private TempStorage(File root) {
+            storage = new FileStorage(root.getPath());
+            journal = new CharacterJournal(new File(root, "Journal"));
+        }
+
+        @Override
+        public Storage getStorage() {
+            return storage;
+        }
+
+        @Override
+        public CharacterJournal getJournal() {
+            return journal;
+        }
+
+        @Override
+        protected void dispose() {
+            journal.close();
+            try {
+                storage.close();
+            } catch (IOException e) {
+                Log.error("LoginPipelineTest", "Failed to close the storage", e);
+            }
+        }
+    }
+}
@@ -4,6 +4,8 @@ import com.badlogic.gdx.ApplicationListener;
 import com.badlogic.gdx.Gdx;
 import com.esotericsoftware.minlog.Log;
 import server.database.Account;
+import server.database.storage.FileStorage;
+import server.database.storage.Storage;
 
 /**
  * Aca testeamos el tiempo que le toma al servidor leer/escribir los .json que van a usar para guardar la info. de las cuentas.
@@ -27,6 +29,7 @@ public class DatabaseTest implements ApplicationListener {
             email2[i] = "z-email@domain.com" + i;
         }
 
+        Storage storage = new FileStorage("");
         long start, end;
         double runtime;
 
@@ -37,7 +40,7 @@ public class DatabaseTest implements ApplicationListener {
         start = System.currentTimeMillis();
         for (int i = 0; i < n; i++) {
             Account account1 = new Account("", email[i], "aFeo3&5l2-+1w");
-            account1.save();
+            account1.save(storage);
         }
         end = System.currentTimeMillis();
         runtime = ((double)(end - start)) / n;
@@ -46,7 +49,7 @@ public class DatabaseTest implements ApplicationListener {
         /** Read test */
         start = System.currentTimeMillis();
         for (int i = 0; i < n; i++) {
-            Account account2 = Account.load(email[i]);
+            Account account2 = Account.load(storage, email[i]);
         }
         end = System.currentTimeMillis();
         runtime = ((double)(end - start)) / n;
@@ -56,7 +59,7 @@ public class DatabaseTest implements ApplicationListener {
         start = System.currentTimeMillis();
         for (int i = 0; i < n; i++) {
             Account account1 = new Account("", email[i], "di3m1#0fwp32+");
-            account1.save();
+            account1.save(storage);
         }
         end = System.currentTimeMillis();
         runtime = ((double)(end - start)) / n;
@@ -65,7 +68,7 @@ public class DatabaseTest implements ApplicationListener {
         /** Worst-case find (non-existent entry) */
         start = System.currentTimeMillis();
         for (int i = 0; i < n; i++) {
-            Account.load(email2[i]);
+            Account.load(storage, email2[i]);
         }
         end = System.currentTimeMillis();
         runtime = ((double)(end - start)) / n;
@@ -74,7 +77,7 @@ public class DatabaseTest implements ApplicationListener {
         /** null argument test */
         start = System.currentTimeMillis();
         for (int i = 0; i < n; i++) {
-            Account.load(null);
+            Account.load(storage, null);
         }
         end = System.currentTimeMillis();
         runtime = ((double)(end - start)) / n;
@@ -0,0 +1,152 @@
+package database;
+
+import com.esotericsoftware.jsonbeans.JsonReader;
+import com.esotericsoftware.jsonbeans.JsonValue;
+import com.esotericsoftware.minlog.Log;
+import server.database.CharacterJournal;
+import server.database.CharacterSummary;
+import server.database.storage.FileStorage;
+import server.database.storage.Storage;
+import server.utils.CharfileWriter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Aca matamos al servidor mientras guarda: un proceso hijo suma oro a varios personajes, lo anota en el
+ * {@link CharacterJournal} y cada tanto guarda el charfile con el {@link CharfileWriter}, imprimiendo el oro de cada
+ * cambio ya escrito en el archivo del journal. El proceso padre lo mata ({@code destroyForcibly}) en momentos al azar, recupera con
+ * {@link CharacterJournal#replay(Storage)} y revisa que todos los charfiles se puedan leer y que no se haya perdido oro.
+ * <p>
+ * Ejecutar desde {@link #main(String[])}, opcionalmente con la cantidad de veces que se mata al proceso.
+ */
+public class JournalFaultInjectionTest {
+
+    private static final String GOLD = "component.entity.character.info.Gold";
+    private static final int CHARACTERS = 8;
+    private static final int EVENTS_PER_SNAPSHOT = 50;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("child")) {
+            child(new File(args[1]));
+            return;
+        }
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        File root = Files.createTempDirectory("journal-fault").toFile();
+        Random random = new Random();
+        Map<String, Integer> reported = new ConcurrentHashMap<>();
+        try {
+            for (int round = 0; round < rounds; round++) {
+                Process process = new ProcessBuilder(new File(System.getProperty("java.home"), "bin/java").getPath(),
+                        "-cp", System.getProperty("java.class.path"), JournalFaultInjectionTest.class.getName(),
+                        "child", root.getPath())
+                        .redirectErrorStream(true)
+                        .start();
+                Thread reader = new Thread(() -> read(process, reported));
+                reader.start();
+                Thread.sleep(500 + random.nextInt(1500));
+                process.destroyForcibly().waitFor();
+                reader.join();
+                int recovered = check(root, reported);
+                Log.info("JournalFaultInjectionTest", String.format("Ronda %d: %d personajes recuperados del journal, oro %s",
+                        round, recovered, new HashMap<>(reported)));
+            }
+            Log.info("JournalFaultInjectionTest", "No se perdio nada en " + rounds + " rondas");
+        } finally {
+            delete(root);
+        }
+    }
+
+    // the last gold the child said it journaled, by character
+    private static void read(Process process, Map<String, Integer> reported) {
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                String[] parts = line.split(" ");
+                if (parts.length == 2 && parts[0].startsWith("pj")) {
+                    reported.merge(parts[0], Integer.parseInt(parts[1]), Math::max);
+                }
+            }
+        } catch (IOException e) {
+            // the process was killed
+        }
+    }
+
+    private static int check(File root, Map<String, Integer> reported) throws IOException {
+        try (Storage storage = new FileStorage(root.getPath() + File.separator)) {
+            CharacterJournal journal = new CharacterJournal(new File(root, "Journal"));
+            int recovered = journal.replay(storage);
+            journal.close();
+            for (String name : storage.keys(Storage.CHARACTERS)) {
+                int gold = gold(storage.get(Storage.CHARACTERS, name));
+                CharacterSummary.read(storage.get(Storage.SUMMARIES, name));
+                if (gold < reported.getOrDefault(name, 0)) {
+                    throw new IllegalStateException(String.format("%s lost gold: %d, expected at least %d", name, gold, reported.get(name)));
+                }
+            }
+            return recovered;
+        }
+    }
+
+    private static void child(File root) throws Exception {
+        Storage storage = new FileStorage(root.getPath() + File.separator);
+        CharacterJournal journal = new CharacterJournal(new File(root, "Journal"));
+        journal.replay(storage);
+        CharfileWriter writer = new CharfileWriter(storage, journal, Long.MAX_VALUE);
+        int[] gold = new int[CHARACTERS];
+        for (int i = 0; i < CHARACTERS; i++) {
+            String charfile = storage.get(Storage.CHARACTERS, "pj" + i);
+            if (charfile == null) {
+                writer.put("pj" + i, charfile(0), summary("pj" + i, charfile(0)), journal.sequence());
+            } else {
+                gold[i] = gold(charfile);
+            }
+        }
+        writer.flush();
+        for (int event = 0; ; event++) {
+            int i = event % CHARACTERS;
+            String name = "pj" + i;
+            gold[i]++;
+            journal.event(name, "{\"" + GOLD + "\":{\"count\":" + gold[i] + "}}");
+            if (i == CHARACTERS - 1) {
+                // the events are buffered, they survive the kill once written to the file
+                journal.flush();
+                for (int j = 0; j < CHARACTERS; j++) {
+                    System.out.println("pj" + j + " " + gold[j]);
+                }
+            }
+            if (event % EVENTS_PER_SNAPSHOT == 0) {
+                String charfile = charfile(gold[i]);
+                writer.offer(name, charfile, summary(name, charfile), journal.sequence());
+            }
+        }
+    }
+
+    private static String charfile(int gold) {
+        return "{\"component.entity.character.status.Level\":{\"level\":1,\"exp\":0,\"expToNextLevel\":300},\"" + GOLD + "\":{\"count\":" + gold + "}}";
+    }
+
+    private static String summary(String name, String charfile) {
+        return CharacterSummary.fromCharfile(name, charfile).write();
+    }
+
+    private static int gold(String charfile) {
+        JsonValue value = new JsonReader().parse(charfile);
+        return value.get(GOLD).getInt("count");
+    }
+
+    private static void delete(File root) throws IOException {
+        try (Stream<File> files = Files.walk(root.toPath()).sorted(Comparator.reverseOrder()).map(java.nio.file.Path::toFile)) {
+            files.forEach(File::delete);
+        }
+    }
+}
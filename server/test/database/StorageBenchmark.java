@@ -0,0 +1,111 @@
+package database;
+
+import com.esotericsoftware.minlog.Log;
+import server.database.storage.FileStorage;
+import server.database.storage.LogStorage;
+import server.database.storage.Storage;
+import server.database.storage.StorageMigration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Aca comparamos los archivos json de siempre ({@link FileStorage}) contra el {@link LogStorage} con muchas cuentas
+ * (100.000 por defecto): crear, leer, buscar cuentas que no existen, actualizar, volver a abrir, compactar y migrar.
+ * <p>
+ * Ejecutar desde {@link #main(String[])}, opcionalmente con la cantidad de cuentas.
+ */
+public class StorageBenchmark {
+
+    private static final String ACCOUNT = "{username:user%d,email:email%d,password:\"$2a$12$R9h/cIPz0gi.URNNX3kh2OPST9/PgBkqquzi.Ss7KIUgO2t0jWMUW\",characters:[pj%d,\"\",\"\",\"\",\"\",\"\"]}";
+
+    public static void main(String[] args) throws IOException {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        File root = Files.createTempDirectory("storage-benchmark").toFile();
+        try {
+            File files = new File(root, "files");
+            File log = new File(root, "log");
+            Log.info("StorageBenchmark", String.format("%d cuentas, tiempo promedio por operacion en microsegundos", n));
+            try (Storage storage = new FileStorage(files.getPath() + File.separator)) {
+                run("Archivos json", storage, n);
+            }
+            long start = System.nanoTime();
+            try (Storage storage = new LogStorage(log.getPath(), LogStorage.DEFAULT_SEGMENT_SIZE, false)) {
+                Log.info("StorageBenchmark", String.format("Log abierto en %.1fms", (System.nanoTime() - start) / 1e6));
+                run("Log structured", storage, n);
+            }
+            start = System.nanoTime();
+            try (LogStorage storage = new LogStorage(log.getPath(), LogStorage.DEFAULT_SEGMENT_SIZE, false)) {
+                Log.info("StorageBenchmark", String.format("Log reabierto (reconstruir el indice) en %.1fms", (System.nanoTime() - start) / 1e6));
+                long before = storage.getTotalBytes();
+                start = System.nanoTime();
+                storage.compact();
+                Log.info("StorageBenchmark", String.format("Compactado de %d a %d bytes en %.1fms", before, storage.getTotalBytes(), (System.nanoTime() - start) / 1e6));
+                check(storage, n);
+            }
+            try (Storage from = new FileStorage(files.getPath() + File.separator);
+                 Storage to = new LogStorage(new File(root, "migrated").getPath(), LogStorage.DEFAULT_SEGMENT_SIZE, false)) {
+                start = System.nanoTime();
+                StorageMigration.migrate(from, to);
+                Log.info("StorageBenchmark", String.format("Migracion de archivos a log en %.1fms", (System.nanoTime() - start) / 1e6));
+                check(to, n);
+            }
+        } finally {
+            delete(root);
+        }
+    }
+
+    private static void run(String name, Storage storage, int n) {
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            storage.put(Storage.ACCOUNTS, "email" + i, String.format(ACCOUNT, i, i, i));
+        }
+        double create = average(start, n);
+
+        start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            storage.get(Storage.ACCOUNTS, "email" + i);
+        }
+        double read = average(start, n);
+
+        start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            storage.exists(Storage.ACCOUNTS, "z-email" + i);
+        }
+        double missing = average(start, n);
+
+        start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            storage.put(Storage.ACCOUNTS, "email" + i, String.format(ACCOUNT, i, i, -i));
+        }
+        double update = average(start, n);
+
+        Log.info("StorageBenchmark", String.format("%-15s crear %8.1f | leer %8.1f | no existe %8.1f | actualizar %8.1f",
+                name, create, read, missing, update));
+        check(storage, n);
+    }
+
+    private static void check(Storage storage, int n) {
+        for (int i = 0; i < n; i += Math.max(1, n / 100)) {
+            if (!String.format(ACCOUNT, i, i, -i).equals(storage.get(Storage.ACCOUNTS, "email" + i))) {
+                throw new IllegalStateException("Wrong value for email" + i);
+            }
+        }
+        if (storage.keys(Storage.ACCOUNTS).size() != n) {
+            throw new IllegalStateException("Expected " + n + " accounts");
+        }
+    }
+
+    private static double average(long start, int n) {
+        return (System.nanoTime() - start) / 1e3 / n;
+    }
+
+    private static void delete(File root) throws IOException {
+        try (Stream<File> files = Files.walk(root.toPath()).sorted(Comparator.reverseOrder()).map(java.nio.file.Path::toFile)) {
+            files.forEach(File::delete);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package network;
+
+import com.artemis.Component;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.minlog.Log;
+import component.entity.character.status.*;
+import component.movement.Destination;
+import component.position.WorldPos;
+import shared.network.movement.MovementNotification;
+import shared.network.movement.MovementRequest;
+import shared.network.movement.MovementResponse;
+import shared.network.notifications.ComponentDelta;
+import shared.network.notifications.EntityUpdate;
+import shared.network.notifications.RemoveEntity;
+import shared.network.serialization.NetworkSerializers;
+
+/**
+ * Aca medimos cuantos bytes ocupan y cuanto tarda ida y vuelta (escribir + leer) cada mensaje frecuente, usando el
+ * FieldSerializer de kryo contra los serializers de {@link NetworkSerializers}.
+ * Las clases se registran a mano en el mismo orden relativo que en el diccionario.
+ * <p>
+ * Ejecutar desde {@link #main(String[])}
+ */
+public class NetworkSerializationBenchmark {
+
+    private static final int ROUNDS = 200000;
+
+    public static void main(String[] args) {
+        Kryo plain = kryo(false);
+        Kryo custom = kryo(true);
+
+        Health health = new Health();
+        health.min = 245;
+        health.max = 300;
+        Mana mana = new Mana();
+        mana.min = 1200;
+        mana.max = 1500;
+        Stamina stamina = new Stamina();
+        stamina.min = 80;
+        stamina.max = 120;
+        Health hurt = new Health();
+        hurt.min = 230;
+        hurt.max = 300;
+        WorldPos pos = new WorldPos(50, 48, 1);
+
+        Object[] messages = {
+                new EntityUpdate(1543, new Component[]{health, mana, stamina}, new Class[0]),
+                deltaUpdate(1543, ComponentDelta.diff(health, hurt)),
+                new RemoveEntity(1543),
+                new MovementNotification(1543, new Destination(pos, 2)),
+                new MovementRequest(5021, pos, 2, true),
+                new MovementResponse(5021, pos)
+        };
+
+        Output output = new Output(4096);
+        for (int warmup = 0; warmup < 2; warmup++) {
+            Log.info("NetworkSerializationBenchmark", "Mensaje: bytes y ns por ida y vuelta (FieldSerializer | a mano)");
+            for (Object message : messages) {
+                int plainBytes = size(plain, output, message);
+                int customBytes = size(custom, output, message);
+                double plainTime = roundTrip(plain, output, message);
+                double customTime = roundTrip(custom, output, message);
+                Log.info("NetworkSerializationBenchmark", String.format("%-22s %4d B %8.1f ns | %4d B %8.1f ns",
+                        message.getClass().getSimpleName(), plainBytes, plainTime, customBytes, customTime));
+            }
+        }
+    }
+
+    private static Kryo kryo(boolean custom) {
+        Kryo kryo = new Kryo();
+        kryo.setRegistrationRequired(true);
+        if (custom) {
+            NetworkSerializers.install(kryo);
+        }
+        for (Class<?> type : new Class[]{Class.class, Class[].class, Object[].class, Component[].class, Health.class,
+                Mana.class, Stamina.class, Hungry.class, Thirst.class, WorldPos.class, Destination.class,
+                ComponentDelta.class, ComponentDelta[].class, EntityUpdate.class, EntityUpdate[].class, RemoveEntity.class,
+                MovementNotification.class, MovementRequest.class, MovementResponse.class}) {
+            kryo.register(type);
+        }
+        return kryo;
+    }
+
+    private static EntityUpdate deltaUpdate(int entity, ComponentDelta delta) {
+        EntityUpdate update = new EntityUpdate(entity, null, null);
+        update.deltas = new ComponentDelta[]{delta};
+        return update;
+    }
+
+    private static int size(Kryo kryo, Output output, Object message) {
+        output.clear();
+        kryo.writeClassAndObject(output, message);
+        return output.position();
+    }
+
+    private static double roundTrip(Kryo kryo, Output output, Object message) {
+        Input input = new Input();
+        long sum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            output.clear();
+            kryo.writeClassAndObject(output, message);
+            input.setBuffer(output.getBuffer(), 0, output.position());
+            sum += kryo.readClassAndObject(input).hashCode();
+        }
+        double elapsed = (double) (System.nanoTime() - start) / ROUNDS;
+        // usamos el resultado para que el JIT no descarte el trabajo
+        Log.debug("NetworkSerializationBenchmark", "sum: " + sum);
+        return elapsed;
+    }
+}
@@ -0,0 +1,114 @@
+package world;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.esotericsoftware.minlog.Log;
+import shared.model.loaders.BinaryMapFormat;
+import shared.model.map.Map;
+import shared.model.map.Tile;
+import shared.util.AOJson;
+import shared.util.SharedResources;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Aca medimos cuanto tarda cargar mapas desde json contra el formato binario ({@link BinaryMapFormat}). Los binarios se
+ * generan en una carpeta temporal a partir de los json, y se verifica que los tiles sean iguales. Tambien comparamos la
+ * memoria de {@link Map} contra guardar los mismos tiles como objetos.
+ * <p>
+ * Ejecutar desde {@link #main(String[])}, opcionalmente con la carpeta de mapas y la cantidad de mapas
+ */
+public class MapLoadBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        FileHandle folder = new FileHandle(args.length > 0 ? args[0] : "../shared/resources/" + SharedResources.MAPS_FOLDER);
+        int maps = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        File temp = File.createTempFile("maps", "");
+        temp.delete();
+        temp.mkdirs();
+        FileHandle binaries = new FileHandle(temp);
+
+        AOJson json = new AOJson();
+        for (int i = 1; i <= maps; i++) {
+            Map map = json.fromJson(Map.class, folder.child("Map" + i + SharedResources.JSON_EXT));
+            ByteBuffer buffer = BinaryMapFormat.write(map);
+            try (RandomAccessFile out = new RandomAccessFile(binaries.child("Map" + i + SharedResources.BINARY_MAP_EXT).file(), "rw");
+                 FileChannel channel = out.getChannel()) {
+                channel.write(buffer);
+            }
+            if (!sameTiles(map, BinaryMapFormat.load(binaries.child("Map" + i + SharedResources.BINARY_MAP_EXT)))) {
+                Log.error("MapLoadBenchmark", "El mapa " + i + " no coincide");
+            }
+        }
+
+        for (int warmup = 0; warmup < 3; warmup++) {
+            long start = System.nanoTime();
+            long tiles = 0;
+            for (int i = 1; i <= maps; i++) {
+                tiles += json.fromJson(Map.class, folder.child("Map" + i + SharedResources.JSON_EXT)).getWidth();
+            }
+            double jsonTime = (System.nanoTime() - start) / 1e6 / maps;
+            start = System.nanoTime();
+            for (int i = 1; i <= maps; i++) {
+                tiles += BinaryMapFormat.load(binaries.child("Map" + i + SharedResources.BINARY_MAP_EXT)).getWidth();
+            }
+            double binaryTime = (System.nanoTime() - start) / 1e6 / maps;
+            Log.debug("MapLoadBenchmark", "tiles: " + tiles);
+            Log.info("MapLoadBenchmark", String.format("Carga por mapa (ms): json %8.2f | binario %6.2f", jsonTime, binaryTime));
+        }
+
+        // memoria: los mapas cargados contra la misma informacion como matriz de tiles
+        Map[] loaded = new Map[maps];
+        long before = usedMemory();
+        for (int i = 1; i <= maps; i++) {
+            loaded[i - 1] = BinaryMapFormat.load(binaries.child("Map" + i + SharedResources.BINARY_MAP_EXT));
+        }
+        long arrays = usedMemory() - before;
+        Tile[][][] matrices = new Tile[maps][][];
+        before = usedMemory();
+        for (int i = 0; i < maps; i++) {
+            matrices[i] = toMatrix(loaded[i]);
+        }
+        long objects = usedMemory() - before;
+        Log.info("MapLoadBenchmark", String.format("Memoria por mapa (KB): matriz de tiles %6d | arrays %6d",
+                objects / maps / 1024, arrays / maps / 1024));
+        Log.debug("MapLoadBenchmark", loaded.length + " " + matrices.length);
+        binaries.deleteDirectory();
+    }
+
+    private static Tile[][] toMatrix(Map map) {
+        Tile[][] matrix = new Tile[map.getWidth()][map.getHeight()];
+        for (int x = 0; x < map.getWidth(); x++) {
+            for (int y = 0; y < map.getHeight(); y++) {
+                matrix[x][y] = map.getTile(x, y);
+            }
+        }
+        return matrix;
+    }
+
+    private static long usedMemory() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static boolean sameTiles(Map expected, Map actual) {
+        if (expected.getWidth() != actual.getWidth() || expected.getHeight() != actual.getHeight()) {
+            return false;
+        }
+        for (int x = 0; x < expected.getWidth(); x++) {
+            for (int y = 0; y < expected.getHeight(); y++) {
+                Tile tile = expected.getTile(x, y);
+                if (tile == null ? actual.getTile(x, y) != null : !tile.equals(actual.getTile(x, y))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
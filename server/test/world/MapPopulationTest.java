@@ -0,0 +1,96 @@
+package world;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import server.systems.world.entity.ai.MapPopulation;
+import shared.model.map.Map;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Aca comprobamos que un mapa que se vacia y se vuelve a poblar no pierde sus respawns: un NPC muerto antes de
+ * vaciar el mapa vuelve con el tiempo que le faltaba (menos el que paso con el mapa vacio), y si ese tiempo ya paso,
+ * vuelve directamente como NPC. El resto de los tiles con NPC siempre vuelven a aparecer.
+ */
+class MapPopulationTest {
+
+    private static final int MAP = 7;
+
+    private MapPopulation population;
+
+    @BeforeEach
+    void createMap() {
+        Map map = new Map(20, 20);
+        for (int x = 0; x < 20; x++) {
+            for (int y = 0; y < 20; y++) {
+                map.createTile(x, y);
+            }
+        }
+        map.setNpcIndex(3, 4, 500);
+        map.setNpcIndex(10, 10, 501);
+        map.setNpcIndex(15, 2, 502);
+        population = MapPopulation.of(MAP, map);
+    }
+
+    @Test
+    void firstSpawnHasEveryNpc() {
+        assertEquals(3, population.size());
+        Recorder first = new Recorder();
+        population.spawn(1000, first);
+        assertEquals(3, first.npcs.size(), first.toString());
+        assertTrue(first.respawns.isEmpty(), first.toString());
+        assertTrue(population.isSpawned());
+    }
+
+    @Test
+    void respawnKeepsItsTimeLeft() {
+        population.spawn(1000, new Recorder());
+        // the NPC of (10, 10) died and has 5 seconds left when the map is emptied
+        population.respawnPending(10, 10, 5f);
+        population.despawned(2000);
+        assertFalse(population.isSpawned());
+
+        Recorder second = new Recorder();
+        population.spawn(4000, second);
+        assertEquals(2, second.npcs.size(), second.toString());
+        assertEquals(1, second.respawns.size(), second.toString());
+        assertTrue(second.respawns.get(0).startsWith("501@7:10,10 in 3.0"), second.respawns.toString());
+    }
+
+    @Test
+    void dueRespawnSpawnsTheNpc() {
+        population.spawn(1000, new Recorder());
+        population.respawnPending(10, 10, 3f);
+        population.despawned(5000);
+
+        // emptied for longer than the time left, it comes back as an NPC
+        Recorder third = new Recorder();
+        population.spawn(9000, third);
+        assertEquals(3, third.npcs.size(), third.toString());
+        assertTrue(third.respawns.isEmpty(), third.toString());
+        assertTrue(third.npcs.contains("501@7:10,10"), third.npcs.toString());
+    }
+
+    private static class Recorder implements MapPopulation.Spawner {
+        private final List<String> npcs = new ArrayList<>();
+        private final List<String> respawns = new ArrayList<>();
+
+        @Override
+        public void npc(int npcIndex, int map, int x, int y) {
+            npcs.add(npcIndex + "@" + map + ":" + x + "," + y);
+        }
+
+        @Override
+        public void respawn(int npcIndex, int map, int x, int y, float time) {
+            respawns.add(npcIndex + "@" + map + ":" + x + "," + y + " in " + time);
+        }
+
+        @Override
+        public String toString() {
+            return "npcs " + npcs + ", respawns " + respawns;
+        }
+    }
+}
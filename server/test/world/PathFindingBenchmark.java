@@ -0,0 +1,162 @@
+package world;
+
+import com.esotericsoftware.minlog.Log;
+import component.position.WorldPos;
+import server.systems.world.entity.ai.AStarMap;
+import server.systems.world.entity.ai.AStartPathFinding;
+import server.systems.world.entity.ai.FlowField;
+import server.systems.world.entity.ai.Node;
+
+import java.util.Random;
+
+/**
+ * Aca medimos cuanto cuesta el siguiente paso de un NPC que persigue a un personaje en un mapa de 100x100 con paredes
+ * al azar y otros NPCs parados: armando el {@link AStarMap} y el grafo de nuevo para cada busqueda como hacia
+ * PathFindingSystem, contra el grafo armado una vez con la ocupacion aplicada al buscar.
+ * Despues medimos muchos NPCs persiguiendo a pocos personajes: un A* por NPC contra un {@link FlowField} compartido por
+ * personaje, que se recalcula cuando el personaje cambia de tile.
+ * <p>
+ * Ejecutar desde {@link #main(String[])}
+ */
+public class PathFindingBenchmark {
+
+    private static final int SIZE = 100;
+    private static final int SEARCHES = 2000;
+    private static final int TARGETS = 5;
+    private static final int CHASERS = 20;
+    private static final int INTERVALS = 300;
+
+    public static void main(String[] args) {
+        Random random = new Random(1);
+        boolean[][] walls = new boolean[SIZE][SIZE];
+        boolean[][] occupied = new boolean[SIZE][SIZE];
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                walls[x][y] = x == 0 || y == 0 || random.nextInt(100) < 15;
+                occupied[x][y] = !walls[x][y] && random.nextInt(100) < 3;
+            }
+        }
+        int[][] searches = new int[SEARCHES][4];
+        for (int[] search : searches) {
+            do {
+                search[0] = 1 + random.nextInt(SIZE - 1);
+                search[1] = 1 + random.nextInt(SIZE - 1);
+                search[2] = Math.min(SIZE - 1, Math.max(1, search[0] + random.nextInt(21) - 10));
+                search[3] = Math.min(SIZE - 1, Math.max(1, search[1] + random.nextInt(21) - 10));
+            } while (walls[search[0]][search[1]] || walls[search[2]][search[3]]);
+        }
+        AStartPathFinding.Overlay overlay = (x, y) -> occupied[x][y];
+
+        // warm up
+        rebuilt(walls, occupied, searches);
+        reused(walls, overlay, searches);
+
+        long start = System.nanoTime();
+        int rebuiltFound = rebuilt(walls, occupied, searches);
+        double rebuilt = (System.nanoTime() - start) / 1e3 / SEARCHES;
+        start = System.nanoTime();
+        int reusedFound = reused(walls, overlay, searches);
+        double reused = (System.nanoTime() - start) / 1e3 / SEARCHES;
+        Log.info("PathFindingBenchmark", String.format("Por busqueda: armando el grafo %8.1f us | grafo estatico %8.1f us (caminos: %d / %d)",
+                rebuilt, reused, rebuiltFound, reusedFound));
+
+        AStartPathFinding pathFinding = new AStartPathFinding(map(walls, null), overlay);
+        chase(pathFinding, walls, false);
+        chase(pathFinding, walls, true);
+        start = System.nanoTime();
+        int searchSteps = chase(pathFinding, walls, false);
+        double search = (System.nanoTime() - start) / 1e3 / INTERVALS;
+        start = System.nanoTime();
+        int fieldSteps = chase(pathFinding, walls, true);
+        double field = (System.nanoTime() - start) / 1e3 / INTERVALS;
+        Log.info("PathFindingBenchmark", String.format("%d NPCs persiguiendo a %d personajes, por intervalo: A* por NPC %8.1f us | flow fields %8.1f us (pasos: %d / %d)",
+                TARGETS * CHASERS, TARGETS, search, field, searchSteps, fieldSteps));
+    }
+
+    // targets move a tile every few intervals, chasers stay around them
+    private static int chase(AStartPathFinding pathFinding, boolean[][] walls, boolean flowFields) {
+        Random random = new Random(2);
+        WorldPos[] targets = new WorldPos[TARGETS];
+        WorldPos[] chasers = new WorldPos[TARGETS * CHASERS];
+        for (int t = 0; t < TARGETS; t++) {
+            targets[t] = free(random, walls, 10, SIZE - 10);
+            for (int c = 0; c < CHASERS; c++) {
+                WorldPos chaser;
+                do {
+                    chaser = new WorldPos(targets[t].x + random.nextInt(19) - 9, targets[t].y + random.nextInt(19) - 9, 1);
+                } while (walls[chaser.x][chaser.y]);
+                chasers[t * CHASERS + c] = chaser;
+            }
+        }
+        int steps = 0;
+        for (int interval = 0; interval < INTERVALS; interval++) {
+            if (interval % 3 == 0) {
+                for (WorldPos target : targets) {
+                    int x = Math.min(SIZE - 10, Math.max(10, target.x + random.nextInt(3) - 1));
+                    int y = Math.min(SIZE - 10, Math.max(10, target.y + random.nextInt(3) - 1));
+                    if (!walls[x][y]) {
+                        target.x = x;
+                        target.y = y;
+                    }
+                }
+            }
+            pathFinding.releaseUnusedFlowFields();
+            for (int i = 0; i < chasers.length; i++) {
+                WorldPos target = targets[i / CHASERS];
+                Node next = flowFields ? pathFinding.followFlowField(chasers[i], target) : pathFinding.findNextNode(chasers[i], target);
+                if (next != null) {
+                    steps++;
+                }
+            }
+        }
+        return steps;
+    }
+
+    private static WorldPos free(Random random, boolean[][] walls, int from, int to) {
+        WorldPos pos;
+        do {
+            pos = new WorldPos(from + random.nextInt(to - from), from + random.nextInt(to - from), 1);
+        } while (walls[pos.x][pos.y]);
+        return pos;
+    }
+
+    // occupied tiles were walls of the map built in each interval
+    private static int rebuilt(boolean[][] walls, boolean[][] occupied, int[][] searches) {
+        int found = 0;
+        for (int[] search : searches) {
+            AStarMap map = map(walls, occupied);
+            map.getNodeAt(search[0], search[1]).isWall = false;
+            map.getNodeAt(search[2], search[3]).isWall = false;
+            AStartPathFinding pathFinding = new AStartPathFinding(map, (x, y) -> false);
+            if (next(pathFinding, search) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private static int reused(boolean[][] walls, AStartPathFinding.Overlay overlay, int[][] searches) {
+        AStartPathFinding pathFinding = new AStartPathFinding(map(walls, null), overlay);
+        int found = 0;
+        for (int[] search : searches) {
+            if (next(pathFinding, search) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private static Node next(AStartPathFinding pathFinding, int[] search) {
+        return pathFinding.findNextNode(new WorldPos(search[0], search[1], 1), new WorldPos(search[2], search[3], 1));
+    }
+
+    private static AStarMap map(boolean[][] walls, boolean[][] occupied) {
+        AStarMap map = new AStarMap(SIZE, SIZE);
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                map.getNodeAt(x, y).isWall = walls[x][y] || occupied != null && occupied[x][y];
+            }
+        }
+        return map;
+    }
+}
@@ -0,0 +1,106 @@
+package world;
+
+import com.esotericsoftware.minlog.Log;
+import server.systems.world.SpatialIndex;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Aca medimos cuanto cuesta mover una entidad un tile y recalcular sus entidades cercanas, comparando el set por mapa
+ * que usaba MapSystem contra el {@link SpatialIndex}, para distintas cantidades de entidades en el mismo mapa.
+ * <p>
+ * Ejecutar desde {@link #main(String[])}
+ */
+public class SpatialIndexBenchmark {
+
+    private static final int MAP = 1;
+    private static final int SIZE = 100;
+    private static final int RANGE = 19;
+    private static final int MOVES = 200000;
+
+    public static void main(String[] args) {
+        Log.info("SpatialIndexBenchmark", "Costo por movimiento (ns) segun densidad de entidades");
+        for (int density : new int[]{50, 100, 200, 400, 800, 1600}) {
+            double legacy = legacy(density);
+            double indexed = indexed(density);
+            Log.info("SpatialIndexBenchmark", String.format("%5d entidades: set por mapa %10.1f ns | indice espacial %8.1f ns", density, legacy, indexed));
+        }
+    }
+
+    private static double legacy(int density) {
+        Random random = new Random(density);
+        int[] xs = new int[density];
+        int[] ys = new int[density];
+        Set<Integer> entities = new HashSet<>();
+        for (int i = 0; i < density; i++) {
+            xs[i] = random.nextInt(SIZE);
+            ys[i] = random.nextInt(SIZE);
+            entities.add(i);
+        }
+        Map<Integer, Set<Integer>> entitiesByMap = new HashMap<>();
+        entitiesByMap.put(MAP, entities);
+
+        long near = 0;
+        long start = System.nanoTime();
+        for (int m = 0; m < MOVES; m++) {
+            int entity = m % density;
+            step(random, xs, ys, entity);
+            Set<Integer> candidates = new HashSet<>(entitiesByMap.get(MAP));
+            for (Integer candidate : candidates) {
+                if (candidate != entity && isNear(xs, ys, entity, candidate)) {
+                    near++;
+                }
+            }
+        }
+        return finish(start, near);
+    }
+
+    private static double indexed(int density) {
+        Random random = new Random(density);
+        int[] xs = new int[density];
+        int[] ys = new int[density];
+        SpatialIndex index = new SpatialIndex();
+        for (int i = 0; i < density; i++) {
+            xs[i] = random.nextInt(SIZE);
+            ys[i] = random.nextInt(SIZE);
+            index.update(i, MAP, xs[i], ys[i]);
+        }
+
+        long[] near = new long[1];
+        long start = System.nanoTime();
+        for (int m = 0; m < MOVES; m++) {
+            int entity = m % density;
+            step(random, xs, ys, entity);
+            index.update(entity, MAP, xs[entity], ys[entity]);
+            index.query(MAP, xs[entity] - RANGE, ys[entity] - RANGE, xs[entity] + RANGE, ys[entity] + RANGE, candidate -> {
+                if (candidate != entity && isNear(xs, ys, entity, candidate)) {
+                    near[0]++;
+                }
+            });
+        }
+        return finish(start, near[0]);
+    }
+
+    private static void step(Random random, int[] xs, int[] ys, int entity) {
+        if (random.nextBoolean()) {
+            xs[entity] = Math.max(0, Math.min(SIZE - 1, xs[entity] + (random.nextBoolean() ? 1 : -1)));
+        } else {
+            ys[entity] = Math.max(0, Math.min(SIZE - 1, ys[entity] + (random.nextBoolean() ? 1 : -1)));
+        }
+    }
+
+    private static boolean isNear(int[] xs, int[] ys, int entity1, int entity2) {
+        return Math.abs(xs[entity1] - xs[entity2]) + Math.abs(ys[entity1] - ys[entity2]) <= RANGE;
+    }
+
+    private static double finish(long start, long near) {
+        double elapsed = (double) (System.nanoTime() - start) / MOVES;
+        // usamos el resultado para que el JIT no descarte el trabajo
+        Log.debug("SpatialIndexBenchmark", "near pairs: " + near);
+        return elapsed;
+    }
+}
@@ -0,0 +1,135 @@
+package world;
+
+import com.esotericsoftware.minlog.Log;
+import server.systems.world.SpatialIndex;
+import server.systems.world.TargetAcquisition;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Aca medimos cuanto cuesta que 2000 NPCs busquen a quien perseguir con 500 personajes repartidos en 20 mapas, en cada
+ * intervalo de PathFindingSystem: recorriendo todos los personajes del mundo por cada NPC como hacia findTarget,
+ * contra {@link TargetAcquisition}, que mira solo las celdas del {@link SpatialIndex} alrededor del NPC y guarda el
+ * objetivo mientras siga en rango. Los personajes se mueven un tile en cada intervalo y algunos mueren.
+ * <p>
+ * Ejecutar desde {@link #main(String[])}
+ */
+public class TargetAcquisitionBenchmark {
+
+    private static final int MAPS = 20;
+    private static final int SIZE = 100;
+    private static final int NPCS = 2000;
+    private static final int PLAYERS = 500;
+    private static final int RANGE = TargetAcquisition.DEFAULT_RANGE;
+    private static final int TICKS = 200;
+    // ms of each PathFindingSystem interval
+    private static final long TICK = 400;
+
+    // players are 0 to PLAYERS - 1, NPCs come after them
+    private static final int[] map = new int[PLAYERS + NPCS];
+    private static final int[] x = new int[PLAYERS + NPCS];
+    private static final int[] y = new int[PLAYERS + NPCS];
+    private static final boolean[] alive = new boolean[PLAYERS];
+
+    public static void main(String[] args) {
+        // warm up
+        scan(TICKS / 4);
+        acquisition(TICKS / 4);
+
+        long start = System.nanoTime();
+        int scanned = scan(TICKS);
+        double scan = (System.nanoTime() - start) / 1e3 / TICKS;
+        start = System.nanoTime();
+        int acquired = acquisition(TICKS);
+        double acquisition = (System.nanoTime() - start) / 1e3 / TICKS;
+        Log.info("TargetAcquisitionBenchmark", String.format("%d NPCs, %d personajes, por intervalo: todos los personajes %10.1f us | celdas cercanas %8.1f us (NPCs con objetivo: %d / %d)",
+                NPCS, PLAYERS, scan, acquisition, scanned, acquired));
+    }
+
+    private static void place(Random random) {
+        for (int i = 0; i < PLAYERS + NPCS; i++) {
+            map[i] = 1 + random.nextInt(MAPS);
+            x[i] = 1 + random.nextInt(SIZE - 1);
+            y[i] = 1 + random.nextInt(SIZE - 1);
+        }
+        for (int i = 0; i < PLAYERS; i++) {
+            alive[i] = true;
+        }
+    }
+
+    // every player walks a tile, one in a hundred dies or comes back to life
+    private static void move(Random random, SpatialIndex index) {
+        for (int i = 0; i < PLAYERS; i++) {
+            x[i] = Math.min(SIZE - 1, Math.max(1, x[i] + random.nextInt(3) - 1));
+            y[i] = Math.min(SIZE - 1, Math.max(1, y[i] + random.nextInt(3) - 1));
+            if (random.nextInt(100) == 0) {
+                alive[i] = !alive[i];
+            }
+            if (index != null) {
+                index.update(i, map[i], x[i], y[i]);
+            }
+        }
+    }
+
+    // like PathFindingSystem.findTarget: all the characters, filtered and sorted by distance for each NPC
+    private static int scan(int ticks) {
+        Random random = new Random(1);
+        place(random);
+        Set<Integer> characters = new HashSet<>();
+        for (int i = 0; i < PLAYERS; i++) {
+            characters.add(i);
+        }
+        int found = 0;
+        for (int tick = 0; tick < ticks; tick++) {
+            move(random, null);
+            found = 0;
+            for (int npc = PLAYERS; npc < PLAYERS + NPCS; npc++) {
+                int from = npc;
+                Set<Integer> all = new HashSet<>(characters);
+                Optional<Integer> target = all.stream()
+                        .filter(player -> alive[player])
+                        .filter(player -> {
+                            int distance = distance(player, from);
+                            return distance < RANGE && distance >= 0;
+                        })
+                        .min(Comparator.comparingInt(player -> distance(player, from)));
+                if (target.isPresent()) {
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    private static int acquisition(int ticks) {
+        Random random = new Random(1);
+        place(random);
+        SpatialIndex index = new SpatialIndex();
+        for (int i = 0; i < PLAYERS + NPCS; i++) {
+            index.update(i, map[i], x[i], y[i]);
+        }
+        TargetAcquisition targets = new TargetAcquisition(index, entity -> entity < PLAYERS && alive[entity]);
+        int found = 0;
+        for (int tick = 0; tick < ticks; tick++) {
+            move(random, index);
+            found = 0;
+            for (int npc = PLAYERS; npc < PLAYERS + NPCS; npc++) {
+                if (targets.getTarget(npc, map[npc], x[npc], y[npc], tick * TICK) != TargetAcquisition.NO_TARGET) {
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    private static int distance(int a, int b) {
+        if (map[a] != map[b]) {
+            return -1;
+        }
+        return Math.abs(x[a] - x[b]) + Math.abs(y[a] - y[b]);
+    }
+}
@@ -0,0 +1,258 @@
+package world;
+
+import com.esotericsoftware.minlog.Log;
+import component.position.WorldPos;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import server.systems.world.entity.ai.WorldPathFinding;
+import shared.model.map.Map;
+import shared.model.map.WorldPosition;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static shared.util.MapHelper.*;
+
+/**
+ * Aca comparamos {@link WorldPathFinding} contra una busqueda por fuerza bruta (un BFS por todos los tiles del mundo,
+ * siguiendo las salidas) en un mundo sintetico de 17x17 mapas con paredes al azar, bordes cortados y algunas puertas
+ * entre mapas lejanos. Tienen que coincidir en que destinos se pueden alcanzar, y como el camino pasa por el tile del
+ * medio de cada portal, la distancia por portales es una cota superior de la de fuerza bruta: el largo del camino que
+ * devuelve, medido con un BFS en el mapa de cada tramo. Despues medimos cuanto tarda cada busqueda.
+ */
+class WorldPathFindingTest {
+
+    private static final int SIDE = 17;
+    private static final int MAPS = SIDE * SIDE;
+    private static final int SIZE = 100;
+    private static final int CHECKS = 60;
+    private static final int QUERIES = 2000;
+
+    private static final Map[] world = new Map[MAPS + 1];
+    private static final Random random = new Random(MAPS);
+    private static WorldPathFinding pathFinding;
+
+    @BeforeAll
+    static void build() {
+        createWorld(random);
+        pathFinding = WorldPathFinding.build(i -> i > 0 && i <= MAPS ? world[i] : null, MAPS);
+    }
+
+    @Test
+    void distanceIsTheLengthOfAPathNoShorterThanBruteForce() {
+        int reachable = 0;
+        long extra = 0;
+        int exact = 0;
+        for (int check = 0; check < CHECKS; check++) {
+            WorldPos from = walkable(random);
+            WorldPos to = walkable(random);
+            int expected = bruteForce(from, to);
+            int distance = pathFinding.getDistance(from, to);
+            String query = from + " -> " + to;
+            assertEquals(expected == WorldPathFinding.UNREACHABLE, distance == WorldPathFinding.UNREACHABLE, query);
+            if (expected == WorldPathFinding.UNREACHABLE) {
+                assertTrue(pathFinding.findPath(from, to).isEmpty(), query);
+                continue;
+            }
+            assertTrue(distance >= expected, query + ": portals " + distance + " shorter than brute force " + expected);
+            List<WorldPos> path = pathFinding.findPath(from, to);
+            assertEquals(to, path.get(path.size() - 1), query);
+            assertEquals(distance, length(from, path), query + ": " + path);
+            reachable++;
+            extra += distance - expected;
+            exact += distance == expected ? 1 : 0;
+        }
+        assertTrue(reachable > 0);
+        Log.info("WorldPathFindingTest", String.format("%d busquedas iguales a fuerza bruta en alcance, %d alcanzables, %d exactas, %.1f pasos de mas en promedio",
+                CHECKS, reachable, exact, (double) extra / reachable));
+    }
+
+    @Test
+    void searchTime() {
+        WorldPos[] from = new WorldPos[QUERIES];
+        WorldPos[] to = new WorldPos[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            from[i] = walkable(random);
+            to[i] = walkable(random);
+        }
+        for (int round = 0; round < 3; round++) {
+            long sum = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < QUERIES; i++) {
+                sum += pathFinding.getDistance(from[i], to[i]);
+            }
+            Log.info("WorldPathFindingTest", String.format("Busqueda entre mapas al azar: %.1f us (%d)", (System.nanoTime() - start) / 1e3 / QUERIES, sum));
+        }
+        long start = System.nanoTime();
+        int brute = Math.min(10, QUERIES);
+        for (int i = 0; i < brute; i++) {
+            bruteForce(from[i], to[i]);
+        }
+        Log.info("WorldPathFindingTest", String.format("Fuerza bruta: %.1f us", (System.nanoTime() - start) / 1e3 / brute));
+    }
+
+    // steps walking to each waypoint inside its map, stepping on its exit, and then to the destination
+    private static int length(WorldPos from, List<WorldPos> path) {
+        WorldPos at = from;
+        int steps = 0;
+        for (WorldPos waypoint : path) {
+            assertEquals(at.map, waypoint.map, "waypoint in another map: " + path);
+            int leg = inMap(at, waypoint);
+            assertNotEquals(-1, leg, "waypoint out of reach: " + path);
+            steps += leg;
+            WorldPosition exit = world[waypoint.map].getTileExit(waypoint.x, waypoint.y);
+            if (exit != null) {
+                at = new WorldPos(exit.getX(), exit.getY(), exit.getMap());
+            }
+        }
+        return steps;
+    }
+
+    // BFS inside the map, exits can only be stepped on as the goal
+    private static int inMap(WorldPos from, WorldPos to) {
+        Map map = world[from.map];
+        int[] distance = new int[SIZE * SIZE];
+        Arrays.fill(distance, -1);
+        int[] queue = new int[distance.length];
+        int head = 0;
+        int tail = 0;
+        int goal = to.x * SIZE + to.y;
+        distance[from.x * SIZE + from.y] = 0;
+        queue[tail++] = from.x * SIZE + from.y;
+        int[][] moves = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+        while (head < tail) {
+            int current = queue[head++];
+            if (current == goal) {
+                return distance[current];
+            }
+            int x = current / SIZE;
+            int y = current % SIZE;
+            for (int[] move : moves) {
+                int nextX = x + move[0];
+                int nextY = y + move[1];
+                int next = nextX * SIZE + nextY;
+                if (nextX <= 0 || nextY <= 0 || nextX >= SIZE || nextY >= SIZE || map.isBlocked(nextX, nextY)
+                        || distance[next] != -1 || (map.getTileExit(nextX, nextY) != null && next != goal)) {
+                    continue;
+                }
+                distance[next] = distance[current] + 1;
+                queue[tail++] = next;
+            }
+        }
+        return -1;
+    }
+
+    private static void createWorld(Random random) {
+        for (int i = 0; i < SIDE; i++) {
+            for (int j = 0; j < SIDE; j++) {
+                Map map = new Map(SIZE, SIZE);
+                map.setNeighbours(number(i - 1, j), number(i, j - 1), number(i + 1, j), number(i, j + 1));
+                for (int x = 0; x < SIZE; x++) {
+                    for (int y = 0; y < SIZE; y++) {
+                        map.createTile(x, y);
+                        boolean outside = x < LEFT_BORDER_TILE - 1 || x > RIGHT_BORDER_TILE || y < TOP_BORDER_TILE - 1 || y > BOTTOM_BORDER_TILE;
+                        map.setBlocked(x, y, outside || random.nextInt(100) < 5);
+                    }
+                }
+                // walls across the map, with a few holes
+                for (int wall = 0; wall < 3; wall++) {
+                    boolean vertical = random.nextBoolean();
+                    int at = 20 + random.nextInt(60);
+                    for (int k = 0; k < SIZE; k++) {
+                        if (random.nextInt(100) >= 3) {
+                            map.setBlocked(vertical ? at : k, vertical ? k : at, true);
+                        }
+                    }
+                }
+                world[number(i, j)] = map;
+            }
+        }
+        for (int i = 0; i < SIDE; i++) {
+            for (int j = 0; j < SIDE; j++) {
+                Map map = world[number(i, j)];
+                for (int y = TOP_BORDER_TILE; y < BOTTOM_BORDER_TILE; y++) {
+                    exit(map, LEFT_BORDER_TILE - 1, y, number(i - 1, j), RIGHT_BORDER_TILE - 1, y);
+                    exit(map, RIGHT_BORDER_TILE, y, number(i + 1, j), LEFT_BORDER_TILE, y);
+                }
+                for (int x = LEFT_BORDER_TILE; x < RIGHT_BORDER_TILE; x++) {
+                    exit(map, x, TOP_BORDER_TILE - 1, number(i, j - 1), x, BOTTOM_BORDER_TILE - 1);
+                    exit(map, x, BOTTOM_BORDER_TILE, number(i, j + 1), x, TOP_BORDER_TILE);
+                }
+            }
+        }
+        // doors to far away maps
+        for (int door = 0; door < MAPS / 4; door++) {
+            WorldPos from = walkable(random);
+            WorldPos to = walkable(random);
+            world[from.map].setTileExit(from.x, from.y, new WorldPosition(to.map, to.x, to.y));
+        }
+    }
+
+    // the border tile leads to the neighbour, if there is one and the tile is open
+    private static void exit(Map map, int x, int y, int neighbour, int toX, int toY) {
+        if (neighbour > 0 && !map.isBlocked(x, y)) {
+            map.setTileExit(x, y, new WorldPosition(neighbour, toX, toY));
+        }
+    }
+
+    // BFS over every tile of the world, stepping on an exit moves to its destination
+    private static int bruteForce(WorldPos from, WorldPos to) {
+        int[] distance = new int[(MAPS + 1) * SIZE * SIZE];
+        Arrays.fill(distance, -1);
+        int[] queue = new int[distance.length];
+        int head = 0;
+        int tail = 0;
+        int start = state(from.map, from.x, from.y);
+        int goal = state(to.map, to.x, to.y);
+        distance[start] = 0;
+        queue[tail++] = start;
+        int[][] moves = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+        while (head < tail) {
+            int current = queue[head++];
+            if (current == goal) {
+                return distance[current];
+            }
+            int map = current / (SIZE * SIZE);
+            int x = current % (SIZE * SIZE) / SIZE;
+            int y = current % SIZE;
+            for (int[] move : moves) {
+                int nextX = x + move[0];
+                int nextY = y + move[1];
+                if (nextX <= 0 || nextY <= 0 || nextX >= SIZE || nextY >= SIZE || world[map].isBlocked(nextX, nextY)) {
+                    continue;
+                }
+                WorldPosition exit = world[map].getTileExit(nextX, nextY);
+                int next = exit == null ? state(map, nextX, nextY) : state(exit.getMap(), exit.getX(), exit.getY());
+                if (exit != null && state(map, nextX, nextY) == goal) {
+                    next = goal;
+                }
+                if (distance[next] == -1) {
+                    distance[next] = distance[current] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static WorldPos walkable(Random random) {
+        while (true) {
+            int map = 1 + random.nextInt(MAPS);
+            int x = 1 + random.nextInt(SIZE - 1);
+            int y = 1 + random.nextInt(SIZE - 1);
+            if (!world[map].isBlocked(x, y) && world[map].getTileExit(x, y) == null) {
+                return new WorldPos(x, y, map);
+            }
+        }
+    }
+
+    private static int state(int map, int x, int y) {
+        return map * SIZE * SIZE + x * SIZE + y;
+    }
+
+    private static int number(int i, int j) {
+        return i < 0 || j < 0 || i >= SIDE || j >= SIDE ? 0 : j * SIDE + i + 1;
+    }
+}
@@ -0,0 +1,138 @@
+package world;
+
+import com.esotericsoftware.minlog.Log;
+import component.position.WorldPos;
+import shared.model.map.Map;
+import shared.util.MapHelper.Dir;
+import shared.util.WorldTopology;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Random;
+
+import static shared.util.MapHelper.*;
+
+/**
+ * Aca medimos cuanto cuesta calcular la distancia entre posiciones de mapas vecinos (incluyendo esquinas), comparando
+ * el calculo que hacia MapHelper.isNear recorriendo los vecinos contra {@link WorldTopology}.
+ * El mundo es una grilla sintetica de mapas, asi no hace falta cargar los json.
+ * <p>
+ * Ejecutar desde {@link #main(String[])}
+ */
+public class WorldTopologyBenchmark {
+
+    private static final int SIDE = 17;
+    private static final int MAPS = SIDE * SIDE;
+    private static final int PAIRS = 4096;
+    private static final int ROUNDS = 500;
+
+    private static final Map[] world = new Map[MAPS + 1];
+
+    public static void main(String[] args) {
+        for (int i = 0; i < SIDE; i++) {
+            for (int j = 0; j < SIDE; j++) {
+                Map map = new Map();
+                map.setNeighbours(number(i - 1, j), number(i, j - 1), number(i + 1, j), number(i, j + 1));
+                world[number(i, j)] = map;
+            }
+        }
+        WorldTopology topology = WorldTopology.build(i -> i > 0 && i <= MAPS ? world[i] : null, MAPS);
+
+        Random random = new Random(MAPS);
+        WorldPos[] from = new WorldPos[PAIRS];
+        WorldPos[] to = new WorldPos[PAIRS];
+        int mismatches = 0;
+        for (int p = 0; p < PAIRS; p++) {
+            int i = 1 + random.nextInt(SIDE - 2);
+            int j = 1 + random.nextInt(SIDE - 2);
+            from[p] = new WorldPos(tile(random, LEFT_BORDER_TILE, RIGHT_BORDER_TILE), tile(random, TOP_BORDER_TILE, BOTTOM_BORDER_TILE), number(i, j));
+            int di = random.nextInt(3) - 1;
+            int dj = random.nextInt(3) - 1;
+            to[p] = new WorldPos(tile(random, LEFT_BORDER_TILE, RIGHT_BORDER_TILE), tile(random, TOP_BORDER_TILE, BOTTOM_BORDER_TILE), number(i + di, j + dj));
+            if (from[p].map != to[p].map && legacy(from[p], to[p]) != topology.getDistance(from[p], to[p])) {
+                mismatches++;
+            }
+        }
+        Log.info("WorldTopologyBenchmark", "Distancias distintas (esquinas que el calculo anterior no resolvia): " + mismatches + " de " + PAIRS);
+
+        for (int warmup = 0; warmup < 2; warmup++) {
+            long sum = 0;
+            long start = System.nanoTime();
+            for (int r = 0; r < ROUNDS; r++) {
+                for (int p = 0; p < PAIRS; p++) {
+                    sum += from[p].map == to[p].map ? 0 : legacy(from[p], to[p]);
+                }
+            }
+            double legacy = finish(start, sum);
+            sum = 0;
+            start = System.nanoTime();
+            for (int r = 0; r < ROUNDS; r++) {
+                for (int p = 0; p < PAIRS; p++) {
+                    sum += topology.getDistance(from[p], to[p]);
+                }
+            }
+            double precomputed = finish(start, sum);
+            Log.info("WorldTopologyBenchmark", String.format("Costo por par (ns): vecinos %8.1f | topologia %6.1f", legacy, precomputed));
+        }
+    }
+
+    private static int number(int i, int j) {
+        return i < 0 || j < 0 || i >= SIDE || j >= SIDE ? 0 : 1 + j * SIDE + i;
+    }
+
+    private static int tile(Random random, int min, int max) {
+        return min + random.nextInt(max - min + 1);
+    }
+
+    private static double finish(long start, long sum) {
+        double elapsed = (double) (System.nanoTime() - start) / (ROUNDS * PAIRS);
+        // usamos el resultado para que el JIT no descarte el trabajo
+        Log.debug("WorldTopologyBenchmark", "sum: " + sum);
+        return elapsed;
+    }
+
+    // calculo que usaba MapHelper.isNear
+
+    private static int legacy(WorldPos pos, WorldPos target) {
+        int mapTarget = target.map;
+        Map map = world[pos.map];
+        Optional<Dir> dirTo = Arrays.stream(Dir.values()).filter(dir -> map.getNeighbour(dir) == mapTarget).findFirst();
+        return dirTo.map(dir -> distanceToTarget(pos, dir, target)).orElse(legacyThreeMaps(pos, target));
+    }
+
+    private static int legacyThreeMaps(WorldPos pos, WorldPos target) {
+        Map map = world[pos.map];
+        Map targetMap = world[target.map];
+        Dir horizontalDir = null;
+        int leftMap = map.getNeighbour(Dir.LEFT);
+        int rightMap = map.getNeighbour(Dir.RIGHT);
+        if (leftMap > 0) {
+            if (leftMap == targetMap.getNeighbour(Dir.DOWN) || leftMap == targetMap.getNeighbour(Dir.UP)) {
+                horizontalDir = Dir.LEFT;
+            }
+        } else if (rightMap > 0) {
+            if (rightMap == targetMap.getNeighbour(Dir.DOWN) || rightMap == targetMap.getNeighbour(Dir.UP)) {
+                horizontalDir = Dir.RIGHT;
+            }
+        }
+        if (horizontalDir != null) {
+            WorldPos intermediatePos = new WorldPos(target.x, pos.y, map.getNeighbour(horizontalDir));
+            return legacy(pos, intermediatePos) + legacy(intermediatePos, target);
+        }
+        return -1;
+    }
+
+    private static int distanceToTarget(WorldPos pos, Dir dir, WorldPos target) {
+        switch (dir) {
+            case UP:
+                return Math.abs(pos.y - TOP_BORDER_TILE) + Math.abs(BOTTOM_BORDER_TILE - target.y) + Math.abs(pos.x - target.x);
+            case DOWN:
+                return Math.abs(BOTTOM_BORDER_TILE - pos.y) + Math.abs(target.y - TOP_BORDER_TILE) + Math.abs(pos.x - target.x);
+            case LEFT:
+                return Math.abs(pos.x - LEFT_BORDER_TILE) + Math.abs(RIGHT_BORDER_TILE - target.x) + Math.abs(pos.y - target.y);
+            case RIGHT:
+                return Math.abs(RIGHT_BORDER_TILE - pos.x) + Math.abs(target.x - LEFT_BORDER_TILE) + Math.abs(pos.y - target.y);
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,223 @@
+package shared.model.loaders;
+
+import com.badlogic.gdx.Files;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import shared.model.map.Map;
+import shared.model.map.WorldPosition;
+import shared.util.MapHelper.Dir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary map file, read straight from a memory mapped file.
+ * <p>
+ * Header (32 bytes): magic, version, width, height, flags, neighbours (left, up, right, down, -1 if none), number of
+ * tile exits and where the tiles and the exits start. Then one fixed size record per tile, column by column (x, then y), so tile (x, y)
+ * is at {@code tilesOffset + (x * height + y) * TILE_STRIDE}. Tile exits are few, they go in a table after the tiles.
+ * The name goes last.
+ * Reading fills the flat arrays of {@link Map} without creating tile objects.
+ * <p>
+ * Tile record (16 bytes): flags (present, blocked, exit), trigger (unsigned byte), the 4 graphic layers, objIndex, objCount and
+ * npcIndex as unsigned shorts. charIndex is not saved, it's only used in runtime.
+ */
+public class BinaryMapFormat {
+
+    public static final int MAGIC = 0x464D4150; // FMAP
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+    public static final int TILE_STRIDE = 16;
+    public static final int EXIT_STRIDE = 8;
+
+    // tile flags
+    private static final int PRESENT = 1;
+    private static final int BLOCKED = 1 << 1;
+    private static final int EXIT = 1 << 2;
+    // map flags
+    private static final int SECURE_ZONE = 1;
+
+    private static final int NO_NAME = -1;
+    private static final int MAX_VALUE = 0xFFFF;
+
+    private BinaryMapFormat() {
+    }
+
+    /**
+     * Map the file in memory (or read it if it is not in the file system, like inside a jar) and read it
+     */
+    public static Map load(FileHandle file) {
+        if (file.type() != Files.FileType.Classpath && file.file().exists()) {
+            try (FileChannel channel = FileChannel.open(file.file().toPath(), StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                return read(buffer);
+            } catch (IOException e) {
+                throw new GdxRuntimeException("Failed to map " + file, e);
+            }
+        }
+        return read(ByteBuffer.wrap(file.readBytes()));
+    }
+
+    public static Map read(ByteBuffer buffer) {
+        if (buffer.getInt(0) != MAGIC) {
+            throw new GdxRuntimeException("Not a map file");
+        }
+        short version = buffer.getShort(4);
+        if (version != VERSION) {
+            throw new GdxRuntimeException("Unsupported map version " + version);
+        }
+        int width = unsigned(buffer, 6);
+        int height = unsigned(buffer, 8);
+        int flags = buffer.get(10);
+        int exits = buffer.getInt(20);
+        int tilesOffset = buffer.getInt(24);
+        int exitsOffset = buffer.getInt(28);
+
+        Map map = new Map(width, height);
+        map.setSecureZone((flags & SECURE_ZONE) != 0);
+        map.setNeighbours(buffer.getShort(12), buffer.getShort(14), buffer.getShort(16), buffer.getShort(18));
+
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                int record = tilesOffset + (x * height + y) * TILE_STRIDE;
+                int tileFlags = buffer.get(record);
+                if ((tileFlags & PRESENT) == 0) {
+                    continue;
+                }
+                map.createTile(x, y);
+                for (int layer = 0; layer < Map.LAYERS; layer++) {
+                    map.setGraphic(x, y, layer, unsigned(buffer, record + 2 + layer * 2));
+                }
+                map.setBlocked(x, y, (tileFlags & BLOCKED) != 0);
+                map.setTrigger(x, y, buffer.get(record + 1) & 0xFF);
+                map.setObjIndex(x, y, unsigned(buffer, record + 10));
+                map.setObjCount(x, y, unsigned(buffer, record + 12));
+                map.setNpcIndex(x, y, unsigned(buffer, record + 14));
+            }
+        }
+
+        for (int i = 0; i < exits; i++) {
+            int record = exitsOffset + i * EXIT_STRIDE;
+            int index = buffer.getInt(record);
+            WorldPosition exit = new WorldPosition(unsigned(buffer, record + 4), buffer.get(record + 6) & 0xFF, buffer.get(record + 7) & 0xFF);
+            map.setTileExit(index / height, index % height, exit);
+        }
+
+        int nameOffset = exitsOffset + exits * EXIT_STRIDE;
+        int nameLength = buffer.getShort(nameOffset);
+        if (nameLength != NO_NAME) {
+            byte[] name = new byte[nameLength];
+            ByteBuffer view = buffer.duplicate();
+            view.position(nameOffset + 2);
+            view.get(name);
+            map.setName(new String(name, StandardCharsets.UTF_8));
+        }
+        return map;
+    }
+
+    /**
+     * @throws IllegalArgumentException if some value doesn't fit the format
+     */
+    public static ByteBuffer write(Map map) {
+        int width = map.getWidth();
+        int height = map.getHeight();
+        int exits = 0;
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                if (map.hasTile(x, y) && map.getTileExit(x, y) != null) {
+                    exits++;
+                }
+            }
+        }
+        byte[] name = map.getName() == null ? null : map.getName().getBytes(StandardCharsets.UTF_8);
+        int tilesOffset = HEADER_SIZE;
+        int exitsOffset = tilesOffset + width * height * TILE_STRIDE;
+        int size = exitsOffset + exits * EXIT_STRIDE + 2 + (name == null ? 0 : name.length);
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort(checked(width, "width"));
+        buffer.putShort(checked(height, "height"));
+        buffer.put((byte) (map.isSecureZone() ? SECURE_ZONE : 0));
+        buffer.put((byte) 0);
+        buffer.putShort(neighbour(map, Dir.LEFT));
+        buffer.putShort(neighbour(map, Dir.UP));
+        buffer.putShort(neighbour(map, Dir.RIGHT));
+        buffer.putShort(neighbour(map, Dir.DOWN));
+        buffer.putInt(exits);
+        buffer.putInt(tilesOffset);
+        buffer.putInt(exitsOffset);
+
+        int exit = 0;
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                if (!map.hasTile(x, y)) {
+                    continue;
+                }
+                int record = tilesOffset + (x * height + y) * TILE_STRIDE;
+                WorldPosition tileExit = map.getTileExit(x, y);
+                int flags = PRESENT | (map.isBlocked(x, y) ? BLOCKED : 0) | (tileExit != null ? EXIT : 0);
+                int trigger = map.getTrigger(x, y);
+                if (trigger < 0 || trigger > 0xFF) {
+                    throw new IllegalArgumentException("Trigger out of range: " + trigger);
+                }
+                buffer.put(record, (byte) flags);
+                buffer.put(record + 1, (byte) trigger);
+                for (int layer = 0; layer < Map.LAYERS; layer++) {
+                    buffer.putShort(record + 2 + layer * 2, checked(map.getGraphic(x, y, layer), "graphic"));
+                }
+                buffer.putShort(record + 10, checked(map.getObjIndex(x, y), "objIndex"));
+                buffer.putShort(record + 12, checked(map.getObjCount(x, y), "objCount"));
+                buffer.putShort(record + 14, checked(map.getNpcIndex(x, y), "npcIndex"));
+                if (tileExit != null) {
+                    int exitRecord = exitsOffset + exit++ * EXIT_STRIDE;
+                    if (tileExit.getX() < 0 || tileExit.getX() > 0xFF || tileExit.getY() < 0 || tileExit.getY() > 0xFF) {
+                        throw new IllegalArgumentException("Tile exit out of range: " + tileExit);
+                    }
+                    buffer.putInt(exitRecord, x * height + y);
+                    buffer.putShort(exitRecord + 4, checked(tileExit.getMap(), "tile exit map"));
+                    buffer.put(exitRecord + 6, (byte) tileExit.getX());
+                    buffer.put(exitRecord + 7, (byte) tileExit.getY());
+                }
+            }
+        }
+
+        buffer.position(exitsOffset + exits * EXIT_STRIDE);
+        if (name == null) {
+            buffer.putShort((short) NO_NAME);
+        } else {
+            if (name.length > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("Name too long: " + map.getName());
+            }
+            buffer.putShort((short) name.length);
+            buffer.put(name);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    // -1 when there is no neighbour
+    private static short neighbour(Map map, Dir dir) {
+        int neighbour = map.getNeighbour(dir);
+        if (neighbour < Short.MIN_VALUE || neighbour > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("neighbour out of range: " + neighbour);
+        }
+        return (short) neighbour;
+    }
+
+    private static int unsigned(ByteBuffer buffer, int index) {
+        return buffer.getShort(index) & MAX_VALUE;
+    }
+
+    private static short checked(int value, String what) {
+        if (value < 0 || value > MAX_VALUE) {
+            throw new IllegalArgumentException(what + " out of range: " + value);
+        }
+        return (short) value;
+    }
+}
@@ -0,0 +1,66 @@
+package shared.model.loaders;
+
+import com.esotericsoftware.minlog.Log;
+import shared.model.map.Map;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Loads a range of maps concurrently on a fixed number of threads, logging how long each map took and the progress.
+ * A map that fails to load is logged and skipped, so one broken file doesn't stop the rest.
+ */
+public class ParallelMapLoader {
+
+    private final int threads;
+
+    public ParallelMapLoader() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    public ParallelMapLoader(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @param loader   loads one map
+     * @param consumer receives each loaded map with its number, called from the loader threads
+     * @return completes once every map was loaded or failed
+     */
+    public CompletableFuture<Void> load(int first, int last, IntFunction<Map> loader, ObjIntConsumer<Map> consumer) {
+        int total = last - first + 1;
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "map-loader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        long start = System.currentTimeMillis();
+        AtomicInteger done = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        CompletableFuture<?>[] futures = new CompletableFuture[total];
+        for (int i = first; i <= last; i++) {
+            int number = i;
+            futures[i - first] = CompletableFuture.runAsync(() -> {
+                long mapStart = System.currentTimeMillis();
+                try {
+                    consumer.accept(loader.apply(number), number);
+                    Log.info("Maps", String.format("Map %d loaded in %dms (%d/%d)", number,
+                            System.currentTimeMillis() - mapStart, done.incrementAndGet(), total));
+                } catch (RuntimeException e) {
+                    failed.incrementAndGet();
+                    Log.error("Maps", "Failed to load map " + number + " (" + done.incrementAndGet() + "/" + total + ")", e);
+                }
+            }, pool);
+        }
+        return CompletableFuture.allOf(futures).whenComplete((result, error) -> {
+            pool.shutdown();
+            Log.info("Maps", String.format("%d maps loaded in %dms using %d threads, %d failed",
+                    total - failed.get(), System.currentTimeMillis() - start, threads, failed.get()));
+        });
+    }
+}
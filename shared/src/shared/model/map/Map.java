@@ -1,98 +1,327 @@
-package shared.model.map;
-
-import shared.util.MapHelper.Dir;
-
-public class Map {
-
-    public static final int MAX_MAP_SIZE_WIDTH = 100;
-    public static final int MIN_MAP_SIZE_WIDTH = 1;
-    public static final int MAX_MAP_SIZE_HEIGHT = 100;
-    public static final int MIN_MAP_SIZE_HEIGHT = 1;
-    public static final int TILE_BUFFER_SIZE = 7;
-    private static final int LEFT = 0;
-    private static final int UP = 1;
-    private static final int RIGHT = 2;
-    private static final int DOWN = 3;
-    protected Tile tiles[][];
-    private boolean secureZone;
-    private int[] neighbours = new int[4];
-    private String name;
-
-    public Map() {
-        this.tiles = new Tile[MAX_MAP_SIZE_WIDTH][MAX_MAP_SIZE_HEIGHT];
-    }
-
-    public Map(int width, int height) {
-        this.tiles = new Tile[width][height];
-    }
-
-    public Tile[][] getTiles() {
-        return tiles;
-    }
-
-    public Tile getTile(int x, int y) {
-        return this.tiles[x][y];
-    }
-
-    public void setTile(int x, int y, Tile tile) {
-        this.tiles[x][y] = tile;
-    }
-
-    public int getWidth() {
-        return tiles.length;
-    }
-
-    public int getHeight() {
-        return tiles[0].length;
-    }
-
-    public void setNeighbours(int left, int up, int right, int down) {
-        setNeighbour(LEFT, left);
-        setNeighbour(UP, up);
-        setNeighbour(RIGHT, right);
-        setNeighbour(DOWN, down);
-    }
-
-    public void setNeighbour(int dir, int id) {
-        neighbours[dir] = id;
-    }
-
-    public int getNeighbour(Dir dir) {
-        int n = 0;
-        switch (dir) {
-            case LEFT:
-                n = LEFT;
-                break;
-            case DOWN:
-                n = DOWN;
-                break;
-            case RIGHT:
-                n = RIGHT;
-                break;
-            case UP:
-                n = UP;
-                break;
-        }
-        return neighbours[n];
-    }
-
-    public boolean isSecureZone() {
-        return secureZone;
-    }
-
-    public void setSecureZone(boolean secureZone) {
-        this.secureZone = secureZone;
-    }
-
-    public int[] getNeighbours() {
-        return neighbours;
-    }
-
-    public String getName() {
-        return name;
-    }
-
-    public void setName(String name) {
-        this.name = name;
-    }
-}
+package shared.model.map;
+
+import com.badlogic.gdx.utils.IntIntMap;
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.Json;
+import com.badlogic.gdx.utils.JsonValue;
+import shared.util.MapHelper.Dir;
+
+import java.util.BitSet;
+
+/**
+ * Tiles are stored by field instead of by tile: one flat array per graphic layer (index {@code x * height + y}), bit sets
+ * for existing and blocked tiles, and sparse tables for the values few tiles have (exits, objects, npcs).
+ * {@link #getTile(int, int)} builds a {@link Tile} copy, and changes to it must be written back with
+ * {@link #setTile(int, int, Tile)}. Hot paths should use the accessors by position.
+ * The json keeps the tiles matrix format.
+ */
+public class Map implements Json.Serializable {
+
+    public static final int MAX_MAP_SIZE_WIDTH = 100;
+    public static final int MIN_MAP_SIZE_WIDTH = 1;
+    public static final int MAX_MAP_SIZE_HEIGHT = 100;
+    public static final int MIN_MAP_SIZE_HEIGHT = 1;
+    public static final int TILE_BUFFER_SIZE = 7;
+    public static final int LAYERS = 4;
+    // triggers are unsigned shorts, like in the original .map files
+    public static final int MAX_TRIGGER = 0xFFFF;
+    private static final int LEFT = 0;
+    private static final int UP = 1;
+    private static final int RIGHT = 2;
+    private static final int DOWN = 3;
+
+    private int width;
+    private int height;
+    // upper layers are mostly empty, they are created with the first graphic
+    private int[][] graphics;
+    private short[] triggers;
+    private BitSet tiles;
+    private BitSet blocked;
+    private IntMap<WorldPosition> tileExits;
+    private IntIntMap charIndexes;
+    private IntIntMap objIndexes;
+    private IntIntMap objCounts;
+    private IntIntMap npcIndexes;
+    private boolean secureZone;
+    private int[] neighbours = new int[4];
+    private String name;
+
+    public Map() {
+        this(MAX_MAP_SIZE_WIDTH, MAX_MAP_SIZE_HEIGHT);
+    }
+
+    public Map(int width, int height) {
+        allocate(width, height);
+    }
+
+    private void allocate(int width, int height) {
+        this.width = width;
+        this.height = height;
+        int size = width * height;
+        graphics = new int[LAYERS][];
+        graphics[0] = new int[size];
+        triggers = new short[size];
+        tiles = new BitSet(size);
+        blocked = new BitSet(size);
+        tileExits = new IntMap<>();
+        charIndexes = new IntIntMap();
+        objIndexes = new IntIntMap();
+        objCounts = new IntIntMap();
+        npcIndexes = new IntIntMap();
+    }
+
+    private int index(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            throw new ArrayIndexOutOfBoundsException("Tile " + x + ", " + y + " out of map " + width + "x" + height);
+        }
+        return x * height + y;
+    }
+
+    /**
+     * @return a copy of the tile, or null if there is no tile
+     */
+    public Tile getTile(int x, int y) {
+        int index = index(x, y);
+        if (!tiles.get(index)) {
+            return null;
+        }
+        int[] graphic = new int[LAYERS];
+        for (int layer = 0; layer < LAYERS; layer++) {
+            graphic[layer] = getGraphic(index, layer);
+        }
+        return new Tile(graphic, charIndexes.get(index, 0), objCounts.get(index, 0), objIndexes.get(index, 0),
+                npcIndexes.get(index, 0), tileExits.get(index), blocked.get(index), triggers[index] & MAX_TRIGGER);
+    }
+
+    /**
+     * @param tile values to store, or null to remove the tile
+     */
+    public void setTile(int x, int y, Tile tile) {
+        int index = index(x, y);
+        tiles.set(index, tile != null);
+        for (int layer = 0; layer < LAYERS; layer++) {
+            setGraphic(index, layer, tile == null ? 0 : tile.getGraphic(layer));
+        }
+        blocked.set(index, tile != null && tile.isBlocked());
+        triggers[index] = tile == null ? 0 : checkedTrigger(tile.getTrigger());
+        put(tileExits, index, tile == null ? null : tile.getTileExit());
+        put(charIndexes, index, tile == null ? 0 : tile.getCharIndex());
+        put(objIndexes, index, tile == null ? 0 : tile.getObjIndex());
+        put(objCounts, index, tile == null ? 0 : tile.getObjCount());
+        put(npcIndexes, index, tile == null ? 0 : tile.getNpcIndex());
+    }
+
+    public boolean hasTile(int x, int y) {
+        return tiles.get(index(x, y));
+    }
+
+    /**
+     * Create an empty tile if there is none
+     */
+    public void createTile(int x, int y) {
+        tiles.set(index(x, y));
+    }
+
+    /**
+     * @return true if there is no tile or it is blocked
+     */
+    public boolean isBlocked(int x, int y) {
+        int index = index(x, y);
+        return !tiles.get(index) || blocked.get(index);
+    }
+
+    public void setBlocked(int x, int y, boolean value) {
+        blocked.set(index(x, y), value);
+    }
+
+    public int getGraphic(int x, int y, int layer) {
+        return getGraphic(index(x, y), layer);
+    }
+
+    public void setGraphic(int x, int y, int layer, int graphic) {
+        setGraphic(index(x, y), layer, graphic);
+    }
+
+    private int getGraphic(int index, int layer) {
+        int[] graphic = graphics[layer];
+        return graphic == null ? 0 : graphic[index];
+    }
+
+    private void setGraphic(int index, int layer, int value) {
+        if (graphics[layer] == null) {
+            if (value == 0) {
+                return;
+            }
+            graphics[layer] = new int[width * height];
+        }
+        graphics[layer][index] = value;
+    }
+
+    public WorldPosition getTileExit(int x, int y) {
+        return tileExits.get(index(x, y));
+    }
+
+    public void setTileExit(int x, int y, WorldPosition tileExit) {
+        put(tileExits, index(x, y), tileExit);
+    }
+
+    public int getTrigger(int x, int y) {
+        return triggers[index(x, y)] & MAX_TRIGGER;
+    }
+
+    public void setTrigger(int x, int y, int trigger) {
+        triggers[index(x, y)] = checkedTrigger(trigger);
+    }
+
+    public int getCharIndex(int x, int y) {
+        return charIndexes.get(index(x, y), 0);
+    }
+
+    public void setCharIndex(int x, int y, int charIndex) {
+        put(charIndexes, index(x, y), charIndex);
+    }
+
+    public int getObjIndex(int x, int y) {
+        return objIndexes.get(index(x, y), 0);
+    }
+
+    public void setObjIndex(int x, int y, int objIndex) {
+        put(objIndexes, index(x, y), objIndex);
+    }
+
+    public int getObjCount(int x, int y) {
+        return objCounts.get(index(x, y), 0);
+    }
+
+    public void setObjCount(int x, int y, int objCount) {
+        put(objCounts, index(x, y), objCount);
+    }
+
+    public int getNpcIndex(int x, int y) {
+        return npcIndexes.get(index(x, y), 0);
+    }
+
+    public void setNpcIndex(int x, int y, int npcIndex) {
+        put(npcIndexes, index(x, y), npcIndex);
+    }
+
+    private static short checkedTrigger(int trigger) {
+        if (trigger < 0 || trigger > MAX_TRIGGER) {
+            throw new IllegalArgumentException("Trigger out of range: " + trigger);
+        }
+        return (short) trigger;
+    }
+
+    private static void put(IntIntMap values, int index, int value) {
+        if (value == 0) {
+            values.remove(index, 0);
+        } else {
+            values.put(index, value);
+        }
+    }
+
+    private static void put(IntMap<WorldPosition> values, int index, WorldPosition value) {
+        if (value == null) {
+            values.remove(index);
+        } else {
+            values.put(index, value);
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void setNeighbours(int left, int up, int right, int down) {
+        setNeighbour(LEFT, left);
+        setNeighbour(UP, up);
+        setNeighbour(RIGHT, right);
+        setNeighbour(DOWN, down);
+    }
+
+    public void setNeighbour(int dir, int id) {
+        neighbours[dir] = id;
+    }
+
+    public int getNeighbour(Dir dir) {
+        int n = 0;
+        switch (dir) {
+            case LEFT:
+                n = LEFT;
+                break;
+            case DOWN:
+                n = DOWN;
+                break;
+            case RIGHT:
+                n = RIGHT;
+                break;
+            case UP:
+                n = UP;
+                break;
+        }
+        return neighbours[n];
+    }
+
+    public boolean isSecureZone() {
+        return secureZone;
+    }
+
+    public void setSecureZone(boolean secureZone) {
+        this.secureZone = secureZone;
+    }
+
+    public int[] getNeighbours() {
+        return neighbours;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public void write(Json json) {
+        Tile[][] matrix = new Tile[width][height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                matrix[x][y] = getTile(x, y);
+            }
+        }
+        json.writeValue("tiles", matrix);
+        json.writeValue("secureZone", secureZone);
+        json.writeValue("neighbours", neighbours);
+        json.writeValue("name", name);
+    }
+
+    @Override
+    public void read(Json json, JsonValue jsonData) {
+        Tile[][] matrix = json.readValue("tiles", Tile[][].class, jsonData);
+        if (matrix != null && matrix.length > 0) {
+            int columns = 0;
+            for (Tile[] column : matrix) {
+                columns = Math.max(columns, column == null ? 0 : column.length);
+            }
+            allocate(matrix.length, columns);
+            for (int x = 0; x < matrix.length; x++) {
+                for (int y = 0; matrix[x] != null && y < matrix[x].length; y++) {
+                    if (matrix[x][y] != null) {
+                        setTile(x, y, matrix[x][y]);
+                    }
+                }
+            }
+        }
+        secureZone = jsonData.getBoolean("secureZone", false);
+        JsonValue neighboursValue = jsonData.get("neighbours");
+        if (neighboursValue != null && neighboursValue.isArray()) {
+            neighbours = neighboursValue.asIntArray();
+        }
+        name = jsonData.getString("name", null);
+    }
+}
@@ -21,7 +21,6 @@ import component.entity.combat.EvasionPower;
 import component.entity.npc.*;
 import component.entity.world.CombatMessage;
 import component.entity.world.Dialog;
-import component.entity.world.Footprint;
 import component.entity.world.Ground;
 import component.graphic.Effect;
 import component.graphic.EffectBuilder;
@@ -63,7 +62,11 @@ import shared.network.inventory.ItemActionRequest;
 import shared.network.movement.MovementNotification;
 import shared.network.movement.MovementRequest;
 import shared.network.movement.MovementResponse;
+import shared.network.notifications.ComponentDelta;
+import shared.network.notifications.Datagram;
+import shared.network.notifications.EncodedMessage;
 import shared.network.notifications.EntityUpdate;
+import shared.network.notifications.Frame;
 import shared.network.notifications.RemoveEntity;
 import shared.network.time.TimeSyncRequest;
 import shared.network.time.TimeSyncResponse;
@@ -108,6 +111,12 @@ public class NetworkDictionary extends MarshalDictionary {
                 // Game Notifications
                 EntityUpdate.class,
                 EntityUpdate[].class,
+                Frame.class,
+                EncodedMessage.class,
+                Datagram.class,
+                ComponentDelta.class,
+                ComponentDelta[].class,
+                Object[].class,
                 EntityUpdateBuilder.class,
                 RemoveEntity.class,
                 MovementNotification.class,
@@ -269,7 +278,6 @@ public class NetworkDictionary extends MarshalDictionary {
                 Constitution.class,
                 Hit.class,
                 Armor.class,
-                Footprint.class,
                 AttackAnimation.class,
                 Buff.class,
                 AIMovement.class,
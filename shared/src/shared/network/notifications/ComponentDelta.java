@@ -0,0 +1,247 @@
+package shared.network.notifications;
+
+import com.artemis.Component;
+import com.esotericsoftware.kryo.DefaultSerializer;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import shared.network.serialization.ComponentTypes;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Changed fields of a component: bit i of the mask is set when field i changed, and values has the new value of each
+ * changed field in order. Only components made of plain value fields (primitives, boxed, strings and enums) can be
+ * sent this way, see {@link #supports(Class)}.
+ * On the wire it is the component class, the mask and the raw values, since both sides know the type of each field.
+ */
+@DefaultSerializer(ComponentDelta.ComponentDeltaSerializer.class)
+public class ComponentDelta {
+
+    private static final int MAX_FIELDS = Integer.SIZE;
+    private static final Field[] NOT_SUPPORTED = new Field[0];
+    private static final Map<Class<?>, Field[]> FIELDS = new ConcurrentHashMap<>();
+
+    public Class<? extends Component> type;
+    public int mask;
+    public Object[] values;
+
+    public ComponentDelta() {
+    }
+
+    public ComponentDelta(Class<? extends Component> type, int mask, Object[] values) {
+        this.type = type;
+        this.mask = mask;
+        this.values = values;
+    }
+
+    public static boolean supports(Class<? extends Component> type) {
+        return fields(type) != NOT_SUPPORTED;
+    }
+
+    /**
+     * @return the fields of current that differ from baseline, or null if nothing changed
+     */
+    public static ComponentDelta diff(Component baseline, Component current) {
+        Field[] fields = fields(current.getClass());
+        int mask = 0;
+        List<Object> values = new ArrayList<>();
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                Object value = fields[i].get(current);
+                if (!Objects.equals(fields[i].get(baseline), value)) {
+                    mask |= 1 << i;
+                    values.add(value);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        return mask == 0 ? null : new ComponentDelta(current.getClass(), mask, values.toArray());
+    }
+
+    /**
+     * @return a new component with the same field values
+     */
+    public static <T extends Component> T copy(T component) {
+        try {
+            Constructor<? extends Component> constructor = component.getClass().getDeclaredConstructor();
+            constructor.setAccessible(true);
+            T copy = (T) constructor.newInstance();
+            for (Field field : fields(component.getClass())) {
+                field.set(copy, field.get(component));
+            }
+            return copy;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Write the changed fields in the component
+     */
+    public void apply(Component component) {
+        Field[] fields = fields(type);
+        try {
+            int value = 0;
+            for (int i = 0; i < fields.length; i++) {
+                if ((mask & (1 << i)) != 0) {
+                    fields[i].set(component, values[value++]);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Field[] fields(Class<?> type) {
+        return FIELDS.computeIfAbsent(type, ComponentDelta::findFields);
+    }
+
+    private static Field[] findFields(Class<?> type) {
+        try {
+            type.getDeclaredConstructor();
+        } catch (NoSuchMethodException e) {
+            return NOT_SUPPORTED;
+        }
+        List<Field> fields = new ArrayList<>();
+        for (Class<?> current = type; current != null && current != Component.class; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) {
+                    continue;
+                }
+                if (Modifier.isFinal(modifiers) || !isValue(field.getType())) {
+                    return NOT_SUPPORTED;
+                }
+                field.setAccessible(true);
+                fields.add(field);
+            }
+        }
+        if (fields.isEmpty() || fields.size() > MAX_FIELDS) {
+            return NOT_SUPPORTED;
+        }
+        // same order in server and client
+        fields.sort(Comparator.comparing((Field field) -> field.getDeclaringClass().getName()).thenComparing(Field::getName));
+        return fields.toArray(new Field[0]);
+    }
+
+    private static boolean isValue(Class<?> type) {
+        return type.isPrimitive() || type.isEnum() || type == String.class || type == Integer.class
+                || type == Long.class || type == Float.class || type == Double.class || type == Short.class
+                || type == Byte.class || type == Boolean.class || type == Character.class;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ComponentDelta that = (ComponentDelta) o;
+        return mask == that.mask && type == that.type && Arrays.equals(values, that.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * type.hashCode() + mask) + Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        return "ComponentDelta{" +
+                "type=" + type.getSimpleName() +
+                ", mask=" + Integer.toBinaryString(mask) +
+                ", values=" + Arrays.toString(values) +
+                '}';
+    }
+
+    public static class ComponentDeltaSerializer extends Serializer<ComponentDelta> {
+
+        private final ComponentTypes types;
+
+        public ComponentDeltaSerializer() {
+            this(null);
+        }
+
+        /**
+         * @param types compact ids for the component class, see {@link shared.network.serialization.NetworkSerializers}
+         */
+        public ComponentDeltaSerializer(ComponentTypes types) {
+            this.types = types;
+        }
+
+        @Override
+        public void write(Kryo kryo, Output output, ComponentDelta delta) {
+            if (types == null) {
+                kryo.writeClass(output, delta.type);
+            } else {
+                types.write(output, delta.type);
+            }
+            output.writeVarInt(delta.mask, true);
+            Field[] fields = fields(delta.type);
+            int value = 0;
+            for (int i = 0; i < fields.length; i++) {
+                if ((delta.mask & (1 << i)) != 0) {
+                    writeValue(kryo, output, fields[i].getType(), delta.values[value++]);
+                }
+            }
+        }
+
+        @Override
+        public ComponentDelta read(Kryo kryo, Input input, Class<ComponentDelta> type) {
+            Class<? extends Component> componentType = types == null ? kryo.readClass(input).getType() : types.read(input);
+            int mask = input.readVarInt(true);
+            Field[] fields = fields(componentType);
+            Object[] values = new Object[Integer.bitCount(mask)];
+            int value = 0;
+            for (int i = 0; i < fields.length; i++) {
+                if ((mask & (1 << i)) != 0) {
+                    values[value++] = readValue(kryo, input, fields[i].getType());
+                }
+            }
+            return new ComponentDelta(componentType, mask, values);
+        }
+
+        private static void writeValue(Kryo kryo, Output output, Class<?> type, Object value) {
+            if (type == int.class) {
+                output.writeVarInt((Integer) value, false);
+            } else if (type == long.class) {
+                output.writeVarLong((Long) value, false);
+            } else if (type == float.class) {
+                output.writeFloat((Float) value);
+            } else if (type == boolean.class) {
+                output.writeBoolean((Boolean) value);
+            } else if (type.isPrimitive()) {
+                kryo.writeObject(output, value);
+            } else {
+                kryo.writeObjectOrNull(output, value, type);
+            }
+        }
+
+        private static Object readValue(Kryo kryo, Input input, Class<?> type) {
+            if (type == int.class) {
+                return input.readVarInt(false);
+            } else if (type == long.class) {
+                return input.readVarLong(false);
+            } else if (type == float.class) {
+                return input.readFloat();
+            } else if (type == boolean.class) {
+                return input.readBoolean();
+            } else if (type.isPrimitive()) {
+                return kryo.readObject(input, boxed(type));
+            }
+            return kryo.readObjectOrNull(input, type);
+        }
+
+        private static Class<?> boxed(Class<?> type) {
+            if (type == double.class) return Double.class;
+            if (type == short.class) return Short.class;
+            if (type == byte.class) return Byte.class;
+            return Character.class;
+        }
+    }
+}
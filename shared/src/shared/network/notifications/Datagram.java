@@ -0,0 +1,108 @@
+package shared.network.notifications;
+
+import component.entity.character.states.Heading;
+import component.position.WorldPosOffsets;
+import shared.network.movement.MovementNotification;
+
+import java.util.Arrays;
+
+/**
+ * Updates sent over UDP: they may be lost, duplicated or arrive out of order. Each one replaces the previous state
+ * (a position or a heading), so the client only applies a message if no newer datagram already brought the same kind of
+ * update for the same entity, see {@link #key(Object)}.
+ * Sequence numbers grow per connection.
+ */
+public class Datagram {
+
+    public static final long NO_KEY = -1;
+
+    // kinds of update, state updates combine the components they carry
+    private static final int MOVEMENT = 0;
+    private static final int HEADING = 1;
+    private static final int OFFSETS = 2;
+
+    public int sequence;
+    public Object[] messages;
+
+    public Datagram() {
+    }
+
+    public Datagram(int sequence, Object[] messages) {
+        this.sequence = sequence;
+        this.messages = messages;
+    }
+
+    /**
+     * @return true if the message can travel in a datagram
+     */
+    public static boolean isUnreliable(Object message) {
+        return key(message) != NO_KEY;
+    }
+
+    /**
+     * Messages with the same key supersede each other.
+     *
+     * @return entity and kind of update, or {@link #NO_KEY} if the message must be sent reliably
+     */
+    public static long key(Object message) {
+        if (message instanceof MovementNotification) {
+            return key(((MovementNotification) message).getPlayerId(), MOVEMENT);
+        }
+        if (message instanceof EntityUpdate && !(message instanceof RemoveEntity)) {
+            EntityUpdate update = (EntityUpdate) message;
+            if (update.entityId == EntityUpdate.NO_ENTITY || update.components == null || update.components.length == 0
+                    || update.deltas != null || (update.toRemove != null && update.toRemove.length > 0)) {
+                return NO_KEY;
+            }
+            int kind = 0;
+            for (Object component : update.components) {
+                if (component instanceof Heading) {
+                    kind |= HEADING;
+                } else if (component instanceof WorldPosOffsets) {
+                    kind |= OFFSETS;
+                } else {
+                    return NO_KEY;
+                }
+            }
+            return key(update.entityId, kind);
+        }
+        return NO_KEY;
+    }
+
+    private static long key(int entity, int kind) {
+        return ((long) entity << 2) | kind;
+    }
+
+    /**
+     * @return network id of the entity the key belongs to
+     */
+    public static int entity(long key) {
+        return (int) (key >> 2);
+    }
+
+    /**
+     * @return every key of the entity, one per kind of update
+     */
+    public static long[] keys(int entity) {
+        long[] keys = new long[(HEADING | OFFSETS) + 1];
+        for (int kind = 0; kind < keys.length; kind++) {
+            keys[kind] = key(entity, kind);
+        }
+        return keys;
+    }
+
+    /**
+     * @return true if sequence a was sent after b, even if the counter wrapped around
+     */
+    public static boolean isNewer(int a, int b) {
+        return a - b > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "Datagram{" +
+                "sequence=" + sequence +
+                ", messages=" + Arrays.toString(messages) +
+                '}';
+    }
+}
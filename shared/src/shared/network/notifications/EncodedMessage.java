@@ -0,0 +1,53 @@
+package shared.network.notifications;
+
+import com.badlogic.gdx.utils.Pool;
+import com.esotericsoftware.kryo.DefaultSerializer;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * A message already serialized by kryo (class and object), so the same bytes can be written to many connections.
+ * It is written as is and read back as the original message, the receiver never sees this class.
+ */
+@DefaultSerializer(EncodedMessage.EncodedMessageSerializer.class)
+public class EncodedMessage implements Pool.Poolable {
+
+    public byte[] bytes = new byte[256];
+    public int length;
+
+    public void set(byte[] source, int length) {
+        if (bytes.length < length) {
+            bytes = new byte[Integer.highestOneBit(length) << 1];
+        }
+        System.arraycopy(source, 0, bytes, 0, length);
+        this.length = length;
+    }
+
+    @Override
+    public void reset() {
+        length = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "EncodedMessage{" +
+                "length=" + length +
+                '}';
+    }
+
+    public static class EncodedMessageSerializer extends Serializer<Object> {
+
+        @Override
+        public void write(Kryo kryo, Output output, Object object) {
+            EncodedMessage message = (EncodedMessage) object;
+            output.writeBytes(message.bytes, 0, message.length);
+        }
+
+        @Override
+        public Object read(Kryo kryo, Input input, Class<Object> type) {
+            return kryo.readClassAndObject(input);
+        }
+    }
+}
@@ -13,6 +13,8 @@ public class EntityUpdate implements INotification {
     public int entityId;
     public Component[] components;
     public Class<? extends Component>[] toRemove;
+    // changed fields of components the client already has
+    public ComponentDelta[] deltas;
 
     public EntityUpdate() {
     }
@@ -38,6 +40,7 @@ public class EntityUpdate implements INotification {
                 "entityId=" + entityId +
                 ", components=" + Arrays.toString(components) +
                 ", toRemove=" + Arrays.toString(toRemove) +
+                ", deltas=" + Arrays.toString(deltas) +
                 '}';
     }
 }
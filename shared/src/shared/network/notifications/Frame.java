@@ -0,0 +1,26 @@
+package shared.network.notifications;
+
+import java.util.Arrays;
+
+/**
+ * Everything the server has for one connection in one tick (updates, notifications and responses), sent as a single
+ * packet. The client processes the messages in order.
+ */
+public class Frame {
+
+    public Object[] messages;
+
+    public Frame() {
+    }
+
+    public Frame(Object[] messages) {
+        this.messages = messages;
+    }
+
+    @Override
+    public String toString() {
+        return "Frame{" +
+                "messages=" + Arrays.toString(messages) +
+                '}';
+    }
+}
@@ -0,0 +1,60 @@
+package shared.network.serialization;
+
+import com.artemis.Component;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectIntMap;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Registration;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Small ids for the component classes registered in kryo, numbered in registration order so they match in server and
+ * client. A component written with its id takes a single byte instead of the kryo registration id.
+ * The table is built the first time it is used, once the dictionary is registered.
+ */
+public class ComponentTypes {
+
+    private static final int MAX_REGISTRATION_ID = 1024;
+    // 0 means the class goes after it as a regular kryo class
+    private static final int UNKNOWN = 0;
+
+    private final Kryo kryo;
+    private Array<Class<? extends Component>> types;
+    private ObjectIntMap<Class<?>> ids;
+
+    public ComponentTypes(Kryo kryo) {
+        this.kryo = kryo;
+    }
+
+    public void write(Output output, Class<? extends Component> type) {
+        int id = ids().get(type, UNKNOWN);
+        output.writeVarInt(id, true);
+        if (id == UNKNOWN) {
+            kryo.writeClass(output, type);
+        }
+    }
+
+    public Class<? extends Component> read(Input input) {
+        int id = input.readVarInt(true);
+        if (id == UNKNOWN) {
+            return kryo.readClass(input).getType();
+        }
+        return types.get(id - 1);
+    }
+
+    private synchronized ObjectIntMap<Class<?>> ids() {
+        if (ids == null) {
+            types = new Array<>();
+            ids = new ObjectIntMap<>();
+            for (int id = 0; id < MAX_REGISTRATION_ID; id++) {
+                Registration registration = kryo.getClassResolver().getRegistration(id);
+                if (registration != null && Component.class.isAssignableFrom(registration.getType())) {
+                    types.add(registration.getType());
+                    ids.put(registration.getType(), types.size);
+                }
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,23 @@
+package shared.network.serialization;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import component.movement.Destination;
+import component.position.WorldPos;
+
+public class DestinationSerializer extends Serializer<Destination> {
+
+    @Override
+    public void write(Kryo kryo, Output output, Destination destination) {
+        kryo.writeObjectOrNull(output, destination.pos, WorldPos.class);
+        output.writeVarInt(destination.dir, true);
+    }
+
+    @Override
+    public Destination read(Kryo kryo, Input input, Class<Destination> type) {
+        WorldPos pos = kryo.readObjectOrNull(input, WorldPos.class);
+        return new Destination(pos, input.readVarInt(true));
+    }
+}
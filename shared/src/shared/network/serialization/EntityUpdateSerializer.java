@@ -0,0 +1,78 @@
+package shared.network.serialization;
+
+import com.artemis.Component;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import shared.network.notifications.ComponentDelta;
+import shared.network.notifications.EntityUpdate;
+
+/**
+ * Entity id, then components, components to remove and deltas. Each array is its length + 1 (0 for null) and every
+ * component class goes as a {@link ComponentTypes} id.
+ */
+public class EntityUpdateSerializer extends Serializer<EntityUpdate> {
+
+    private final ComponentTypes types;
+
+    public EntityUpdateSerializer(ComponentTypes types) {
+        this.types = types;
+    }
+
+    @Override
+    public void write(Kryo kryo, Output output, EntityUpdate update) {
+        // NO_ENTITY is -1
+        output.writeVarInt(update.entityId + 1, true);
+        writeLength(output, update.components);
+        if (update.components != null) {
+            for (Component component : update.components) {
+                types.write(output, component.getClass());
+                kryo.writeObject(output, component);
+            }
+        }
+        writeLength(output, update.toRemove);
+        if (update.toRemove != null) {
+            for (Class<? extends Component> type : update.toRemove) {
+                types.write(output, type);
+            }
+        }
+        writeLength(output, update.deltas);
+        if (update.deltas != null) {
+            for (ComponentDelta delta : update.deltas) {
+                kryo.writeObject(output, delta);
+            }
+        }
+    }
+
+    @Override
+    public EntityUpdate read(Kryo kryo, Input input, Class<EntityUpdate> type) {
+        EntityUpdate update = new EntityUpdate(input.readVarInt(true) - 1);
+        int components = input.readVarInt(true) - 1;
+        if (components >= 0) {
+            update.components = new Component[components];
+            for (int i = 0; i < components; i++) {
+                update.components[i] = kryo.readObject(input, types.read(input));
+            }
+        }
+        int toRemove = input.readVarInt(true) - 1;
+        if (toRemove >= 0) {
+            update.toRemove = new Class[toRemove];
+            for (int i = 0; i < toRemove; i++) {
+                update.toRemove[i] = types.read(input);
+            }
+        }
+        int deltas = input.readVarInt(true) - 1;
+        if (deltas >= 0) {
+            update.deltas = new ComponentDelta[deltas];
+            for (int i = 0; i < deltas; i++) {
+                update.deltas[i] = kryo.readObject(input, ComponentDelta.class);
+            }
+        }
+        return update;
+    }
+
+    private static void writeLength(Output output, Object[] array) {
+        output.writeVarInt(array == null ? 0 : array.length + 1, true);
+    }
+}
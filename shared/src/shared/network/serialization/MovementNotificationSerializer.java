@@ -0,0 +1,23 @@
+package shared.network.serialization;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import component.movement.Destination;
+import shared.network.movement.MovementNotification;
+
+public class MovementNotificationSerializer extends Serializer<MovementNotification> {
+
+    @Override
+    public void write(Kryo kryo, Output output, MovementNotification notification) {
+        output.writeVarInt(notification.getPlayerId(), true);
+        kryo.writeObjectOrNull(output, notification.getDestination(), Destination.class);
+    }
+
+    @Override
+    public MovementNotification read(Kryo kryo, Input input, Class<MovementNotification> type) {
+        int playerId = input.readVarInt(true);
+        return new MovementNotification(playerId, kryo.readObjectOrNull(input, Destination.class));
+    }
+}
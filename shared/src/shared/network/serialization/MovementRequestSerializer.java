@@ -0,0 +1,27 @@
+package shared.network.serialization;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import component.position.WorldPos;
+import shared.network.movement.MovementRequest;
+
+public class MovementRequestSerializer extends Serializer<MovementRequest> {
+
+    @Override
+    public void write(Kryo kryo, Output output, MovementRequest request) {
+        output.writeVarInt(request.requestNumber, true);
+        kryo.writeObjectOrNull(output, request.predicted, WorldPos.class);
+        output.writeVarInt(request.movement, true);
+        output.writeBoolean(request.valid);
+    }
+
+    @Override
+    public MovementRequest read(Kryo kryo, Input input, Class<MovementRequest> type) {
+        int requestNumber = input.readVarInt(true);
+        WorldPos predicted = kryo.readObjectOrNull(input, WorldPos.class);
+        int movement = input.readVarInt(true);
+        return new MovementRequest(requestNumber, predicted, movement, input.readBoolean());
+    }
+}
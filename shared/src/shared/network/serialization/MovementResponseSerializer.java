@@ -0,0 +1,23 @@
+package shared.network.serialization;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import component.position.WorldPos;
+import shared.network.movement.MovementResponse;
+
+public class MovementResponseSerializer extends Serializer<MovementResponse> {
+
+    @Override
+    public void write(Kryo kryo, Output output, MovementResponse response) {
+        output.writeVarInt(response.requestNumber, true);
+        kryo.writeObjectOrNull(output, response.destination, WorldPos.class);
+    }
+
+    @Override
+    public MovementResponse read(Kryo kryo, Input input, Class<MovementResponse> type) {
+        int requestNumber = input.readVarInt(true);
+        return new MovementResponse(requestNumber, kryo.readObjectOrNull(input, WorldPos.class));
+    }
+}
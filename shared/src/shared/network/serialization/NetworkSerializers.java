@@ -0,0 +1,64 @@
+package shared.network.serialization;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import component.entity.character.status.*;
+import component.movement.Destination;
+import component.position.WorldPos;
+import shared.network.movement.MovementNotification;
+import shared.network.movement.MovementRequest;
+import shared.network.movement.MovementResponse;
+import shared.network.notifications.ComponentDelta;
+import shared.network.notifications.EntityUpdate;
+import shared.network.notifications.RemoveEntity;
+
+/**
+ * Hand written serializers for the messages sent the most, instead of kryo's FieldSerializer.
+ * Both endpoints must install them, before or after registering the dictionary.
+ */
+public class NetworkSerializers {
+
+    private NetworkSerializers() {
+    }
+
+    public static void install(Kryo kryo) {
+        ComponentTypes types = new ComponentTypes(kryo);
+        // default serializers match subclasses, so RemoveEntity goes before EntityUpdate
+        set(kryo, RemoveEntity.class, new RemoveEntitySerializer());
+        set(kryo, EntityUpdate.class, new EntityUpdateSerializer(types));
+        set(kryo, ComponentDelta.class, new ComponentDelta.ComponentDeltaSerializer(types));
+        set(kryo, MovementNotification.class, new MovementNotificationSerializer());
+        set(kryo, MovementRequest.class, new MovementRequestSerializer());
+        set(kryo, MovementResponse.class, new MovementResponseSerializer());
+        set(kryo, WorldPos.class, new WorldPosSerializer());
+        set(kryo, Destination.class, new DestinationSerializer());
+        set(kryo, Health.class, new StatusSerializer<>(Health::new, health -> health.min, health -> health.max, (health, min, max) -> {
+            health.min = min;
+            health.max = max;
+        }));
+        set(kryo, Mana.class, new StatusSerializer<>(Mana::new, mana -> mana.min, mana -> mana.max, (mana, min, max) -> {
+            mana.min = min;
+            mana.max = max;
+        }));
+        set(kryo, Stamina.class, new StatusSerializer<>(Stamina::new, stamina -> stamina.min, stamina -> stamina.max, (stamina, min, max) -> {
+            stamina.min = min;
+            stamina.max = max;
+        }));
+        set(kryo, Hungry.class, new StatusSerializer<>(Hungry::new, hungry -> hungry.min, hungry -> hungry.max, (hungry, min, max) -> {
+            hungry.min = min;
+            hungry.max = max;
+        }));
+        set(kryo, Thirst.class, new StatusSerializer<>(Thirst::new, thirst -> thirst.min, thirst -> thirst.max, (thirst, min, max) -> {
+            thirst.min = min;
+            thirst.max = max;
+        }));
+    }
+
+    private static <T> void set(Kryo kryo, Class<T> type, Serializer<T> serializer) {
+        // used when the dictionary registers the class later
+        kryo.addDefaultSerializer(type, serializer);
+        if (kryo.getClassResolver().getRegistration(type) != null) {
+            kryo.register(type, serializer);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package shared.network.serialization;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import shared.network.notifications.RemoveEntity;
+
+public class RemoveEntitySerializer extends Serializer<RemoveEntity> {
+
+    @Override
+    public void write(Kryo kryo, Output output, RemoveEntity remove) {
+        output.writeVarInt(remove.entityId, true);
+    }
+
+    @Override
+    public RemoveEntity read(Kryo kryo, Input input, Class<RemoveEntity> type) {
+        return new RemoveEntity(input.readVarInt(true));
+    }
+}
@@ -0,0 +1,46 @@
+package shared.network.serialization;
+
+import com.artemis.Component;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Status components are a min and a max value (health, mana, stamina, hungry, thirst).
+ */
+public class StatusSerializer<T extends Component> extends Serializer<T> {
+
+    private final Supplier<T> factory;
+    private final ToIntFunction<T> min;
+    private final ToIntFunction<T> max;
+    private final Setter<T> setter;
+
+    public StatusSerializer(Supplier<T> factory, ToIntFunction<T> min, ToIntFunction<T> max, Setter<T> setter) {
+        this.factory = factory;
+        this.min = min;
+        this.max = max;
+        this.setter = setter;
+    }
+
+    @Override
+    public void write(Kryo kryo, Output output, T status) {
+        output.writeVarInt(min.applyAsInt(status), true);
+        output.writeVarInt(max.applyAsInt(status), true);
+    }
+
+    @Override
+    public T read(Kryo kryo, Input input, Class<T> type) {
+        T status = factory.get();
+        setter.set(status, input.readVarInt(true), input.readVarInt(true));
+        return status;
+    }
+
+    @FunctionalInterface
+    public interface Setter<T> {
+        void set(T status, int min, int max);
+    }
+}
@@ -0,0 +1,25 @@
+package shared.network.serialization;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import component.position.WorldPos;
+
+public class WorldPosSerializer extends Serializer<WorldPos> {
+
+    @Override
+    public void write(Kryo kryo, Output output, WorldPos pos) {
+        output.writeVarInt(pos.map, true);
+        output.writeVarInt(pos.x, true);
+        output.writeVarInt(pos.y, true);
+    }
+
+    @Override
+    public WorldPos read(Kryo kryo, Input input, Class<WorldPos> type) {
+        int map = input.readVarInt(true);
+        int x = input.readVarInt(true);
+        int y = input.readVarInt(true);
+        return new WorldPos(x, y, map);
+    }
+}
@@ -8,13 +8,15 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import component.position.WorldPos;
+import shared.model.loaders.BinaryMapFormat;
+import shared.model.loaders.ParallelMapLoader;
 import shared.model.map.Map;
 import shared.model.map.Tile;
+import shared.model.map.WorldPosition;
 
-import java.util.Arrays;
 import java.util.HashSet;
-import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
@@ -29,17 +31,20 @@ import java.util.concurrent.TimeUnit;
 
 public class MapHelper {
 
-    private static final int NEAR_MAX_DISTNACE = 20;
-    private static final int BOTTOM_BORDER_TILE = 93; 
-    private static final int TOP_BORDER_TILE = 8;   
-    private static final int LEFT_BORDER_TILE = 10;
-    private static final int RIGHT_BORDER_TILE = 91;
+    public static final int NEAR_MAX_DISTNACE = 20;
+    public static final int BOTTOM_BORDER_TILE = 93; 
+    public static final int TOP_BORDER_TILE = 8;   
+    public static final int LEFT_BORDER_TILE = 10;
+    public static final int RIGHT_BORDER_TILE = 91;
 
     private static final int MAX_MAPS = 290; 
 
-    private static final AOJson JSON = new AOJson();
+    // Json caches reflection data without synchronization, so each loader thread has its own
+    private static final ThreadLocal<AOJson> JSON = ThreadLocal.withInitial(AOJson::new);
     private static MapHelper instance;
     private LoadingCache<Integer, Map> maps;
+    private volatile WorldTopology topology;
+    private volatile CompletableFuture<Void> ready;
 
     private MapHelper() {
     }
@@ -59,7 +64,7 @@ public class MapHelper {
         return cacheBuilder
                 .build(new CacheLoader<Integer, Map>() {
                     public Map load(Integer key) {
-                        return getMapFromJson(key);
+                        return loadMap(key);
                     }
                 });
     }
@@ -72,20 +77,47 @@ public class MapHelper {
         return instance;
     }
 
+    /**
+     * Binary maps (see {@link BinaryMapFormat}) are much faster to load, json is used if the map was not converted.
+     */
+    private static Map loadMap(int i) {
+        FileHandle binary = Gdx.files.internal(SharedResources.MAPS_FOLDER + "Map" + i + SharedResources.BINARY_MAP_EXT);
+        if (binary.exists()) {
+            return BinaryMapFormat.load(binary);
+        }
+        return getMapFromJson(i);
+    }
+
     private static Map getMapFromJson(int i) {
         FileHandle mapPath = Gdx.files.internal(SharedResources.MAPS_FOLDER + "Map" + i + SharedResources.JSON_EXT);
-        return JSON.fromJson(Map.class, mapPath);
+        return JSON.get().fromJson(Map.class, mapPath);
     }
 
     public static Tile getTile(Map map, WorldPos pos) {
-        if (pos.x > 0 && pos.x < map.getWidth()) {
-            if (pos.y > 0 && pos.y < map.getHeight()) {
-                return map.getTile(pos.x, pos.y);
-            }
+        if (isInside(map, pos.x, pos.y)) {
+            return map.getTile(pos.x, pos.y);
         }
         return null;
     }
 
+    public static boolean hasTile(Map map, WorldPos pos) {
+        return isInside(map, pos.x, pos.y) && map.hasTile(pos.x, pos.y);
+    }
+
+    /**
+     * @return the tile exit, or null if there is none or the position is out of the map
+     */
+    public static WorldPosition getTileExit(Map map, WorldPos pos) {
+        if (isInside(map, pos.x, pos.y)) {
+            return map.getTileExit(pos.x, pos.y);
+        }
+        return null;
+    }
+
+    private static boolean isInside(Map map, int x, int y) {
+        return x > 0 && x < map.getWidth() && y > 0 && y < map.getHeight();
+    }
+
     public Map getMap(int i) {
         return maps.getUnchecked(i);
     }
@@ -115,8 +147,7 @@ public class MapHelper {
     }
 
     public boolean isBlocked(Map map, int x, int y) {
-        Tile tile = getTile(map, new WorldPos(x, y, 0));
-        return tile == null || tile.isBlocked();
+        return !isInside(map, x, y) || map.isBlocked(x, y);
     }
 
     public boolean hasEntity(Set<Integer> entities, WorldPos pos) {
@@ -125,7 +156,6 @@ public class MapHelper {
                 .stream()
                 .map(E::E)
                 .filter(e -> !e.hasObject())
-                .filter(e -> !e.hasFootprint())
                 .filter(E::hasWorldPos)
                 .anyMatch(entity -> {
                     boolean samePos = pos.equals(entity.getWorldPos());
@@ -134,23 +164,28 @@ public class MapHelper {
                 });
     }
 
-    public boolean isObjTileBusy(Set<Integer> entities, WorldPos pos) {
-        Set<Integer> copy = new HashSet<>(entities);
-        return copy
-                .stream()
-                .map(E::E)
-                .filter(E::hasObject)
-                .anyMatch(entity -> entity.hasWorldPos() && pos.equals(entity.getWorldPos()));
+    /**
+     * Initialize maps, loading them in parallel (see {@link ParallelMapLoader}). Calling it again returns the same
+     * future.
+     *
+     * @return completes once every map and the world topology are loaded
+     */
+    public synchronized CompletableFuture<Void> loadAll() {
+        if (ready == null) {
+            Log.info("Server initialization", "Loading maps...");
+            ready = new ParallelMapLoader()
+                    .load(1, MAX_MAPS, MapHelper::loadMap, (map, number) -> maps.put(number, map))
+                    .thenRun(this::getTopology);
+        }
+        return ready;
     }
 
     /**
-     * Initialize maps.
+     * @return true once {@link #loadAll()} finished
      */
-    public void loadAll() {
-        Log.info("Server initialization", "Loading maps...");
-        for (int i = 1; i <= MAX_MAPS; i++) {
-            maps.getUnchecked(i);
-        }
+    public boolean isReady() {
+        CompletableFuture<Void> loaded = ready;
+        return loaded != null && loaded.isDone() && !loaded.isCompletedExceptionally();
     }
 
 //    @Deprecated
@@ -168,8 +203,7 @@ public class MapHelper {
 //    }
 
     public boolean hasTileExit(Map map, WorldPos expectedPos) {
-        Tile tile = map.getTile(expectedPos.x, expectedPos.y);
-        return tile != null && tile.getTileExit() != null;
+        return map.getTileExit(expectedPos.x, expectedPos.y) != null;
     }
 
     public boolean isNear(WorldPos pos1, WorldPos pos2) {
@@ -179,65 +213,18 @@ public class MapHelper {
         if (pos1.map == pos2.map) {
             return Math.abs(pos1.x - pos2.x) + Math.abs(pos1.y - pos2.y) < NEAR_MAX_DISTNACE;
         }
-        // get distance from pos1 to pos2
-        int distance = getDistanceBetweenMaps(pos1, pos2);
-
+        int distance = getTopology().getDistance(pos1, pos2);
         return distance >= 0 && distance < NEAR_MAX_DISTNACE;
     }
 
-    private int getDistanceBetweenMaps(WorldPos pos, WorldPos target) {
-        int mapTarget = target.map;
-        int mapNumber = pos.map;
-        Map map = maps.getIfPresent(mapNumber);
-        Optional<Dir> dirTo = Arrays.stream(Dir.values()).filter(dir -> getMap(dir, map) == mapTarget).findFirst();
-        return dirTo.map(dir -> getDistanceToTarget(pos, dir, target)).orElse(getDistanceBetweenThreeMaps(pos, target));
-    }
-
-    private Integer getDistanceBetweenThreeMaps(WorldPos pos, WorldPos target) {
-        if (hasMap(target.map) && hasMap(pos.map)) {
-            Map map = maps.getUnchecked(pos.map);
-            int mapTarget = target.map;
-            Dir horizontalDir = null;
-            Map targetMap = maps.getUnchecked(mapTarget);
-            int leftMap = getMap(Dir.LEFT, map);
-            int rightMap = getMap(Dir.RIGHT, map);
-            if (leftMap > 0) {
-                if (leftMap == getMap(Dir.DOWN, targetMap)) {
-                    horizontalDir = Dir.LEFT;
-                } else if (leftMap == getMap(Dir.UP, targetMap)) {
-                    horizontalDir = Dir.LEFT;
-                }
-            } else if (rightMap > 0) {
-                if (rightMap == getMap(Dir.DOWN, targetMap)) {
-                    horizontalDir = Dir.RIGHT;
-                } else if (rightMap == getMap(Dir.UP, targetMap)) {
-                    horizontalDir = Dir.RIGHT;
-                }
-            }
-            if (horizontalDir != null) {
-                WorldPos intermediatePos = getIntermediatePos(pos, getMap(horizontalDir, map), target);
-                return getDistanceBetweenMaps(pos, intermediatePos) + getDistanceBetweenMaps(intermediatePos, target);
-            }
-        }
-        return -1;
-    }
-
-    private WorldPos getIntermediatePos(WorldPos pos, int map, WorldPos target) {
-        return new WorldPos(target.x, pos.y, map);
-    }
-
-    private int getDistanceToTarget(WorldPos pos, Dir dir, WorldPos target) {
-        switch (dir) {
-            case UP:
-                return Math.abs(pos.y - TOP_BORDER_TILE) + Math.abs(BOTTOM_BORDER_TILE - target.y) + Math.abs(pos.x - target.x);
-            case DOWN:
-                return Math.abs(BOTTOM_BORDER_TILE - pos.y) + Math.abs(target.y - TOP_BORDER_TILE) + Math.abs(pos.x - target.x);
-            case LEFT:
-                return Math.abs(pos.x - LEFT_BORDER_TILE) + Math.abs(RIGHT_BORDER_TILE - target.x) + Math.abs(pos.y - target.y);
-            case RIGHT:
-                return Math.abs(RIGHT_BORDER_TILE - pos.x) + Math.abs(target.x - LEFT_BORDER_TILE) + Math.abs(pos.y - target.y);
+    /**
+     * @return position of every map in the world, built the first time it is needed (loads all maps)
+     */
+    public WorldTopology getTopology() {
+        if (topology == null) {
+            topology = WorldTopology.build(this::getMap, MAX_MAPS);
         }
-        return -1;
+        return topology;
     }
 
     public int getMap(Dir dir, Map map) {
@@ -9,6 +9,7 @@ public class SharedResources {
     public static final String LANGUAGES_FOLDER = "lang/";
     public static final String SPELLS_FILE = "spells";
     public static final String JSON_EXT = ".json";
+    public static final String BINARY_MAP_EXT = ".bin";
     public static final String LANGUAGES_EXT = ".properties";
     public static final String SPELLS_JSON_FILE = SPELLS_FOLDER + SPELLS_FILE + JSON_EXT;
 
@@ -0,0 +1,116 @@
+package shared.util;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.esotericsoftware.minlog.Log;
+import component.position.WorldPos;
+import shared.model.map.Map;
+import shared.util.MapHelper.Dir;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Layout of the world: every map gets an offset in a global coordinate frame, following the neighbours of each map and
+ * trimming the border tiles shared between them ({@link MapHelper#LEFT_BORDER_TILE}, {@link MapHelper#RIGHT_BORDER_TILE},
+ * {@link MapHelper#TOP_BORDER_TILE}, {@link MapHelper#BOTTOM_BORDER_TILE}).
+ * Maps reachable through neighbours share a region, and the distance between two positions of the same region is a
+ * couple of subtractions.
+ */
+public class WorldTopology {
+
+    public static final int MAP_WIDTH = MapHelper.RIGHT_BORDER_TILE - MapHelper.LEFT_BORDER_TILE;
+    public static final int MAP_HEIGHT = MapHelper.BOTTOM_BORDER_TILE - MapHelper.TOP_BORDER_TILE;
+    private static final int NO_REGION = -1;
+
+    private final int[] offsetX;
+    private final int[] offsetY;
+    private final int[] region;
+
+    private WorldTopology(int maxMaps) {
+        offsetX = new int[maxMaps + 1];
+        offsetY = new int[maxMaps + 1];
+        region = new int[maxMaps + 1];
+        Arrays.fill(region, NO_REGION);
+    }
+
+    /**
+     * Walk the neighbours of every map once, from 1 to maxMaps.
+     *
+     * @param maps returns the map for a number, or null if it doesn't exist
+     */
+    public static WorldTopology build(IntFunction<Map> maps, int maxMaps) {
+        WorldTopology topology = new WorldTopology(maxMaps);
+        IntArray queue = new IntArray();
+        int regions = 0;
+        for (int start = 1; start <= maxMaps; start++) {
+            if (topology.region[start] != NO_REGION || maps.apply(start) == null) {
+                continue;
+            }
+            topology.place(start, regions, 0, 0);
+            queue.add(start);
+            while (queue.size > 0) {
+                int current = queue.pop();
+                Map map = maps.apply(current);
+                int x = topology.offsetX[current];
+                int y = topology.offsetY[current];
+                topology.visit(maps, queue, map.getNeighbour(Dir.LEFT), regions, x - MAP_WIDTH, y);
+                topology.visit(maps, queue, map.getNeighbour(Dir.RIGHT), regions, x + MAP_WIDTH, y);
+                topology.visit(maps, queue, map.getNeighbour(Dir.UP), regions, x, y - MAP_HEIGHT);
+                topology.visit(maps, queue, map.getNeighbour(Dir.DOWN), regions, x, y + MAP_HEIGHT);
+            }
+            regions++;
+        }
+        Log.info("World topology", regions + " regions");
+        return topology;
+    }
+
+    private void visit(IntFunction<Map> maps, IntArray queue, int neighbour, int currentRegion, int x, int y) {
+        if (!contains(neighbour)) {
+            return;
+        }
+        if (region[neighbour] == NO_REGION) {
+            if (maps.apply(neighbour) != null) {
+                place(neighbour, currentRegion, x, y);
+                queue.add(neighbour);
+            }
+        } else if (offsetX[neighbour] != x || offsetY[neighbour] != y) {
+            Log.warn("World topology", "Map " + neighbour + " neighbours don't match its position in the world");
+        }
+    }
+
+    private void place(int map, int mapRegion, int x, int y) {
+        region[map] = mapRegion;
+        offsetX[map] = x;
+        offsetY[map] = y;
+    }
+
+    private boolean contains(int map) {
+        return map > 0 && map < region.length;
+    }
+
+    public boolean isConnected(int map1, int map2) {
+        return contains(map1) && contains(map2) && region[map1] != NO_REGION && region[map1] == region[map2];
+    }
+
+    public int getGlobalX(int map, int x) {
+        return offsetX[map] + x;
+    }
+
+    public int getGlobalY(int map, int y) {
+        return offsetY[map] + y;
+    }
+
+    /**
+     * @return manhattan distance in tiles, or -1 if the maps are not connected
+     */
+    public int getDistance(WorldPos pos1, WorldPos pos2) {
+        if (pos1.map == pos2.map) {
+            return Math.abs(pos1.x - pos2.x) + Math.abs(pos1.y - pos2.y);
+        }
+        if (!isConnected(pos1.map, pos2.map)) {
+            return -1;
+        }
+        return Math.abs(getGlobalX(pos1.map, pos1.x) - getGlobalX(pos2.map, pos2.x))
+                + Math.abs(getGlobalY(pos1.map, pos1.y) - getGlobalY(pos2.map, pos2.y));
+    }
+}